@@ -1,5 +1,8 @@
 package enigma;
 
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
 
 /** An alphabet of encodable characters.  Provides a mapping from characters
  *  to and from indices into the alphabet.
@@ -12,7 +15,23 @@ class Alphabet {
     /** A new alphabet containing CHARS. The K-th character has index
      *  K (numbering from 0). No character may be duplicated. */
     Alphabet(String chars) {
+        this(chars, 0);
+    }
+
+    /** A new alphabet containing CHARS, written as HEXDIGITS hexadecimal
+     *  digits each if HEXDIGITS > 0. */
+    private Alphabet(String chars, int hexDigits) {
         _chars = chars;
+        _hexDigits = hexDigits;
+        int last = 0;
+        for (int i = 0; i < chars.length(); i += 1) {
+            last = Math.max(last, chars.charAt(i));
+        }
+        _index = new char[last + 1];
+        Arrays.fill(_index, NONE);
+        for (int i = chars.length() - 1; i >= 0; i -= 1) {
+            _index[chars.charAt(i)] = (char) i;
+        }
     }
 
     /** A default alphabet of all upper-case characters. */
@@ -20,6 +39,68 @@ class Alphabet {
         this("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
     }
 
+    /** Return the alphabet of the 16**DIGITS characters (char) 0 up to
+     *  16**DIGITS - 1, in which character C has index C and is written
+     *  as DIGITS hexadecimal digits, 1 <= DIGITS <= 4. */
+    static Alphabet hex(int digits) {
+        char[] chars = new char[1 << (4 * digits)];
+        for (int i = 0; i < chars.length; i += 1) {
+            chars[i] = (char) i;
+        }
+        return new Alphabet(new String(chars), digits);
+    }
+
+    /** Return the alphabet of all byte values, in which byte B is the
+     *  character (char) B, with index B. */
+    static Alphabet bytes() {
+        return hex(2);
+    }
+
+    /** Returns true iff I am the alphabet of all byte values. */
+    boolean isBytes() {
+        return _hexDigits == 2;
+    }
+
+    /** Return the number of hexadecimal digits in which each of my
+     *  characters is written, or 0 if they are written as themselves. */
+    int hexDigits() {
+        return _hexDigits;
+    }
+
+    /** Return TEXT, a string of my characters as written in a
+     *  configuration or settings line, as characters.  This is TEXT
+     *  itself, except in an alphabet made by hex, whose characters are
+     *  written in hexadecimal. */
+    String decode(String text) {
+        if (_hexDigits == 0) {
+            return text;
+        }
+        if (text.length() % _hexDigits != 0) {
+            throw error("wrong number of hexadecimal digits in %s", text);
+        }
+        char[] result = new char[text.length() / _hexDigits];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = (char) hexAt(text, i * _hexDigits);
+        }
+        return new String(result);
+    }
+
+    /** Return the index of the character written in hexadecimal at
+     *  position POS of TEXT, in an alphabet made by hex. */
+    int hexAt(CharSequence text, int pos) {
+        int result = 0;
+        for (int i = pos; i < pos + _hexDigits; i += 1) {
+            int digit =
+                i < text.length() ? Character.digit(text.charAt(i), 16) : -1;
+            if (digit < 0) {
+                throw error("bad hexadecimal digits at %d in %s", pos,
+                            text);
+            }
+            result = result * 16 + digit;
+        }
+        return result;
+    }
+
     /** Returns the size of the alphabet. */
     int size() {
         return _chars.length();
@@ -27,7 +108,7 @@ class Alphabet {
 
     /** Returns true if CH is in this alphabet. */
     boolean contains(char ch) {
-        return _chars.contains(Character.toString(ch));
+        return toInt(ch) >= 0;
     }
 
     /** Returns character number INDEX in the alphabet, where
@@ -39,7 +120,21 @@ class Alphabet {
     /** Returns the index of character CH which must be in
      *  the alphabet. This is the inverse of toChar(). */
     int toInt(char ch) {
-        return _chars.indexOf(Character.toString(ch));
+        if (ch >= _index.length) {
+            return -1;
+        }
+        char k = _index[ch];
+        return k == NONE && size() <= NONE ? -1 : k;
     }
 
+    /** Marks a character absent from _index.  Only an alphabet of every
+     *  character has an index this large. */
+    private static final char NONE = Character.MAX_VALUE;
+
+    /** Index of each character up to my largest, or NONE. */
+    private final char[] _index;
+
+    /** Digits per character in hexadecimal notation, or 0. */
+    private final int _hexDigits;
+
 }
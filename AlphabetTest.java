@@ -38,5 +38,30 @@ public class AlphabetTest {
         assertFalse(test.contains('9'));
     }
 
-}
+    @Test
+    public void testBytes() {
+        Alphabet test = Alphabet.bytes();
+        assertEquals(256, test.size());
+        assertTrue(test.isBytes());
+        assertFalse(new Alphabet("ABCD").isBytes());
+        assertEquals(0x41, test.toInt('A'));
+        assertEquals(-1, test.toInt('\u0100'));
+        assertEquals("\u0000A\u00ff", test.decode("0041fF"));
+        assertEquals("0041", new Alphabet("014").decode("0041"));
+    }
 
+    @Test
+    public void testHex() {
+        Alphabet test = Alphabet.hex(4);
+        assertEquals(65536, test.size());
+        assertEquals(4, test.hexDigits());
+        assertEquals(0xffff, test.toInt('\uffff'));
+        assertEquals('\u1234', test.toChar(0x1234));
+        assertTrue(test.contains('\uffff'));
+        assertFalse(new Alphabet("ABC").contains('\uffff'));
+        assertEquals("\u00ff\u1234", test.decode("00ff1234"));
+        assertEquals(3, Alphabet.hex(3).hexDigits());
+        assertEquals(4096, Alphabet.hex(3).size());
+    }
+
+}
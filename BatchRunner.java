@@ -0,0 +1,150 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static enigma.EnigmaException.*;
+
+/** Runs many jobs in one JVM, each as `java enigma.Main CONFIG INPUT
+ *  OUTPUT` would.  A manifest lists one job per line as three
+ *  whitespace-separated file names, CONFIG INPUT OUTPUT; blank lines and
+ *  lines starting with '#' are ignored.  Each distinct configuration file
+ *  is read once, all jobs share one KeystreamCache, and jobs run on a
+ *  fixed number of threads.  A failing job does not stop the others; its
+ *  error is reported on the standard error as Main would, prefixed by
+ *  the job's line in the manifest.
+ *  @author Flynn"TheFox"Gray
+ */
+class BatchRunner {
+
+    /** A runner using THREADS threads. */
+    BatchRunner(int threads) {
+        _threads = threads;
+        _keystreams = Main.newKeystreamCache();
+    }
+
+    /** Return the keystream cache shared by all jobs. */
+    KeystreamCache keystreams() {
+        return _keystreams;
+    }
+
+    /** Return a summary of the settings cache of each configuration
+     *  read, one line per configuration file. */
+    String settingsStats() {
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<String, Configuration> entry
+                 : _configurations.entrySet()) {
+            result.append(String.format("%s: %s%n", entry.getKey(),
+                                        entry.getValue().settingsCache()
+                                        .stats()));
+        }
+        return result.toString();
+    }
+
+    /** Run every job in MANIFEST and return the number that failed. */
+    int run(Scanner manifest) {
+        ArrayList<String[]> jobs = new ArrayList<>();
+        ArrayList<Integer> lines = new ArrayList<>();
+        for (int line = 1; manifest.hasNextLine(); line += 1) {
+            String text = manifest.nextLine().trim();
+            if (text.isEmpty() || text.startsWith("#")) {
+                continue;
+            }
+            String[] job = text.split("\\s+");
+            if (job.length != 3) {
+                throw error("manifest line %d: expected CONFIG INPUT OUTPUT",
+                            line);
+            }
+            jobs.add(job);
+            lines.add(line);
+        }
+
+        for (String[] job : jobs) {
+            if (!_configurations.containsKey(job[0])
+                && !_configErrors.containsKey(job[0])) {
+                readConfiguration(job[0]);
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(_threads);
+        List<Future<String>> results = new ArrayList<>();
+        for (String[] job : jobs) {
+            Configuration config = _configurations.get(job[0]);
+            String configError = _configErrors.get(job[0]);
+            results.add(pool.submit(() -> config == null ? configError
+                                    : runJob(config, job)));
+        }
+        int failed = 0;
+        try {
+            for (int i = 0; i < results.size(); i += 1) {
+                String message = results.get(i).get();
+                if (message != null) {
+                    failed += 1;
+                    System.err.printf("Error: job at line %d (%s): %s%n",
+                                      lines.get(i),
+                                      String.join(" ", jobs.get(i)), message);
+                }
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw error("batch interrupted: %s", excp);
+        } finally {
+            pool.shutdown();
+        }
+        return failed;
+    }
+
+    /** Read the configuration file named NAME into _configurations, or
+     *  the message of the error reading it into _configErrors. */
+    private void readConfiguration(String name) {
+        try (Scanner config = Main.getInput(name)) {
+            _configurations.put(name, Configuration.read(config));
+        } catch (EnigmaException excp) {
+            _configErrors.put(name, excp.getMessage());
+        }
+    }
+
+    /** Run JOB with configuration CONFIG, and return null if it succeeds
+     *  or else its error message. */
+    private String runJob(Configuration config, String[] job) {
+        Scanner input = null;
+        PrintStream output = null;
+        try {
+            input = Main.getInput(job[1]);
+            output = Main.getOutput(job[2]);
+            new Main(config, input, output, _keystreams).process();
+            return null;
+        } catch (EnigmaException excp) {
+            return excp.getMessage();
+        } catch (RuntimeException excp) {
+            return "uncaught exception: " + excp;
+        } finally {
+            if (input != null) {
+                input.close();
+            }
+            if (output != null) {
+                output.close();
+            }
+        }
+    }
+
+    /** Number of threads running jobs. */
+    private final int _threads;
+    /** Keystreams shared by all jobs. */
+    private final KeystreamCache _keystreams;
+    /** The Configuration of each configuration file read, in order of
+     *  first use. */
+    private final LinkedHashMap<String, Configuration> _configurations =
+        new LinkedHashMap<>();
+    /** The error message of each configuration file that could not be
+     *  read. */
+    private final HashMap<String, String> _configErrors = new HashMap<>();
+}
@@ -0,0 +1,111 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Scanner;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the BatchRunner class.
+ *  @author Flynn"TheFox"Gray
+ */
+public class BatchRunnerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** An input file's contents. */
+    private static final String INPUT =
+        "* B Beta I II III AAAA (AQ) (EP)\nHELLO WORLD\n";
+
+    /** The output of INPUT. */
+    private static final String OUTPUT = "IHBDQ QMTQZ";
+
+    /** Run the manifest MANIFEST with a runner of THREADS threads,
+     *  asserting that FAILED jobs fail, and return what it prints on
+     *  the standard error. */
+    private static String run(String manifest, int threads, int failed) {
+        PrintStream err = System.err;
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(errors, true));
+        try {
+            BatchRunner runner = new BatchRunner(threads);
+            assertEquals(failed, runner.run(new Scanner(manifest)));
+        } finally {
+            System.setErr(err);
+        }
+        return errors.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testFailedJobs() throws IOException {
+        Path dir = Files.createTempDirectory("enigma-batch");
+        String good = dir.resolve("good.conf").toString();
+        String bad = dir.resolve("bad.conf").toString();
+        String input = dir.resolve("input").toString();
+        Files.writeString(dir.resolve("good.conf"), NAVAL_CONFIG);
+        Files.writeString(dir.resolve("bad.conf"), "ABC\n 5 3\n I MQ (AB\n");
+        Files.writeString(dir.resolve("input"), INPUT);
+        Path[] out = new Path[5];
+        StringBuilder manifest = new StringBuilder("# jobs\n");
+        String[] configs = { good, bad, good, good, good };
+        for (int i = 0; i < out.length; i += 1) {
+            out[i] = dir.resolve("out" + i);
+            manifest.append(String.format("%s %s %s%n", configs[i],
+                                          i == 2 ? input + ".missing" : input,
+                                          out[i]));
+        }
+        String errors = run(manifest.toString(), 3, 2);
+        String[] lines = errors.split("\\R");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("Error: job at line 3 (" + bad));
+        assertTrue(lines[1].startsWith("Error: job at line 4 (" + good));
+        assertTrue(lines[1].endsWith("could not open " + input
+                                     + ".missing"));
+        for (int i : new int[] { 0, 3, 4 }) {
+            assertEquals(OUTPUT, Files.readString(out[i]).trim());
+        }
+    }
+
+    @Test
+    public void testOrder() throws IOException {
+        Path dir = Files.createTempDirectory("enigma-batch");
+        String config = dir.resolve("good.conf").toString();
+        Files.writeString(dir.resolve("good.conf"), NAVAL_CONFIG);
+        StringBuilder manifest = new StringBuilder();
+        for (int i = 0; i < 20; i += 1) {
+            manifest.append(String.format("%s %s %s%n", config,
+                                          dir.resolve("missing" + i),
+                                          dir.resolve("out" + i)));
+        }
+        String[] lines = run(manifest.toString(), 4, 20).split("\\R");
+        assertEquals(20, lines.length);
+        for (int i = 0; i < 20; i += 1) {
+            assertTrue(lines[i].startsWith("Error: job at line "
+                                           + (i + 1) + " "));
+        }
+    }
+
+    @Test
+    public void testBadManifest() {
+        try {
+            new BatchRunner(1).run(new Scanner("a b c\na b\n"));
+            fail("manifest line of two words accepted");
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage().startsWith("manifest line 2"));
+        }
+    }
+}
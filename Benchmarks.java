@@ -0,0 +1,421 @@
+package enigma;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Scanner;
+
+/** Timings of the conversion paths, run as
+ *  `java enigma.Benchmarks [NAME...]`.  Each named benchmark (or every
+ *  benchmark, if none is named) prints one line per case on the
+ *  standard output.
+ *  @author Flynn"TheFox"Gray
+ */
+public final class Benchmarks {
+
+    /** Run the benchmarks named in ARGS, or all of them. */
+    public static void main(String... args) {
+        boolean all = args.length == 0;
+        for (String name : args) {
+            if (!contains(NAMES, name)) {
+                System.err.printf("Error: no benchmark named %s%n", name);
+                System.exit(1);
+            }
+        }
+        if (all || contains(args, "alphabets")) {
+            alphabets();
+        }
+        if (all || contains(args, "engines")) {
+            engines();
+        }
+        if (all || contains(args, "plugboard")) {
+            plugboard();
+        }
+        if (all || contains(args, "interactive")) {
+            interactive();
+        }
+        if (all || contains(args, "rekey")) {
+            rekey();
+        }
+    }
+
+    /** Return true iff NAMES contains NAME. */
+    private static boolean contains(String[] names, String name) {
+        for (String n : names) {
+            if (n.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Time reading a configuration, setting up a machine and converting
+     *  with it, for alphabets of each of ALPHABET_SIZES. */
+    static void alphabets() {
+        System.out.printf("%8s %12s %12s %10s%n", "symbols", "config ms",
+                          "setup ms", "ns/char");
+        for (int size : ALPHABET_SIZES) {
+            String config = randomConfiguration(size, new Random(size));
+            long t0 = System.nanoTime();
+            Configuration configuration =
+                Configuration.read(new Scanner(config));
+            long t1 = System.nanoTime();
+            Machine machine = configuration.newMachine();
+            machine.setKeystreamCache(
+                new KeystreamCache(Main.KEYSTREAM_CACHE_BYTES));
+            Main.setUp(machine, settings(configuration.alphabet()));
+            long t2 = System.nanoTime();
+
+            int[] chars = new int[CONVERTED];
+            Random random = new Random(1);
+            for (int i = 0; i < chars.length; i += 1) {
+                chars[i] = random.nextInt(size);
+            }
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round += 1) {
+                long start = System.nanoTime();
+                machine.convert(chars, 0, chars.length);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("%8d %12.1f %12.1f %10.2f%n", size,
+                              (t1 - t0) / 1e6, (t2 - t1) / 1e6,
+                              (double) best / CONVERTED);
+        }
+    }
+
+    /** Time converting messages of each of MESSAGE_LENGTHS characters,
+     *  each after its own settings line, with each EngineKind, for
+     *  alphabets of each of ENGINE_SIZES. */
+    static void engines() {
+        System.out.printf("%8s %8s", "symbols", "length");
+        for (EngineKind kind : EngineKind.values()) {
+            System.out.printf(" %12s", kind);
+        }
+        System.out.printf("  (ns/char)%n");
+        for (int size : ENGINE_SIZES) {
+            Configuration configuration = Configuration.read(new Scanner(
+                randomConfiguration(size, new Random(size))));
+            String[] settings = settings(configuration.alphabet());
+            for (int length : MESSAGE_LENGTHS) {
+                System.out.printf("%8d %8d", size, length);
+                int[] chars = new int[length];
+                for (EngineKind kind : EngineKind.values()) {
+                    Machine machine = configuration.newMachine();
+                    machine.setKeystreamCache(
+                        new KeystreamCache(Main.KEYSTREAM_CACHE_BYTES));
+                    machine.setEngine(kind);
+                    int messages = Math.max(1, ENGINE_CONVERTED / length);
+                    long best = Long.MAX_VALUE;
+                    for (int round = 0; round < ROUNDS; round += 1) {
+                        long start = System.nanoTime();
+                        for (int m = 0; m < messages; m += 1) {
+                            Main.setUp(machine, settings);
+                            machine.convert(chars, 0, length);
+                        }
+                        best = Math.min(best, System.nanoTime() - start);
+                    }
+                    System.out.printf(" %12.2f",
+                                      (double) best / messages / length);
+                }
+                System.out.println();
+            }
+        }
+    }
+
+    /** Time trying one plugboard swap on messages of each of
+     *  MESSAGE_LENGTHS characters, by decrypting and scoring the whole
+     *  message again and by a PlugboardSearch. */
+    static void plugboard() {
+        System.out.printf("%8s %14s %14s  (ns/trial)%n", "length",
+                          "full", "incremental");
+        Configuration configuration = Configuration.read(new Scanner(
+            randomConfiguration(LETTERS.length(), new Random(1))));
+        Alphabet alphabet = configuration.alphabet();
+        String[] settings = settings(alphabet);
+        Random random = new Random(2);
+        for (int length : MESSAGE_LENGTHS) {
+            int[] cipher = new int[length];
+            for (int i = 0; i < length; i += 1) {
+                cipher[i] = random.nextInt(alphabet.size());
+            }
+            double[] weights =
+                PlugboardSearch.weights(cipher, alphabet.size(), 2);
+            Machine machine = configuration.newMachine();
+            Main.setUp(machine, settings);
+            PlugboardSearch search =
+                new PlugboardSearch(machine, cipher, weights, 2);
+            int trials = Math.max(1, ENGINE_CONVERTED / length);
+            int[] plain = new int[length];
+            long full = Long.MAX_VALUE, incremental = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round += 1) {
+                long start = System.nanoTime();
+                for (int t = 0; t < trials; t += 1) {
+                    search.swap(t % alphabet.size(), (t * 7 + 3)
+                                % alphabet.size());
+                    search.undo();
+                }
+                incremental =
+                    Math.min(incremental, System.nanoTime() - start);
+                start = System.nanoTime();
+                for (int t = 0; t < trials; t += 1) {
+                    Main.setUp(machine, settings);
+                    machine.setPlugboard(new Permutation(
+                        search.cycles(alphabet), alphabet));
+                    System.arraycopy(cipher, 0, plain, 0, length);
+                    machine.convert(plain, 0, length);
+                    double score = 0;
+                    for (int j = 0; j + 1 < length; j += 1) {
+                        score += weights[plain[j] * alphabet.size()
+                                         + plain[j + 1]];
+                    }
+                    _sink += score;
+                }
+                full = Math.min(full, System.nanoTime() - start);
+            }
+            System.out.printf("%8d %14.1f %14.1f%n", length,
+                              (double) full / trials,
+                              (double) incremental / trials / 2);
+        }
+    }
+
+    /** Time each of KEYSTROKES characters typed one at a time into a
+     *  Teletype whose output is discarded, with a line ending after
+     *  every LINE of them, once to warm up and once to measure.  Print
+     *  percentiles of the latency of a keystroke and the bytes allocated
+     *  per keystroke, where the JVM reports them. */
+    static void interactive() {
+        Configuration configuration = Configuration.read(new Scanner(
+            randomConfiguration(LETTERS.length(), new Random(3))));
+        Machine machine = configuration.newMachine();
+        machine.setKeystreamCache(
+            new KeystreamCache(Main.KEYSTREAM_CACHE_BYTES));
+        Teletype teletype =
+            new Teletype(machine, InputStream.nullInputStream(),
+                         OutputStream.nullOutputStream(),
+                         Charset.defaultCharset());
+        char[] settings = (String.join(" ", settings(
+            configuration.alphabet())) + "\n").toCharArray();
+        teletype.type(settings, 0, settings.length);
+        char[] key = new char[1];
+        long[] nanos = new long[KEYSTROKES];
+        Random random = new Random(4);
+        long allocated = 0;
+        for (int round = 0; round < 2; round += 1) {
+            allocated = allocatedBytes();
+            for (int i = 0; i < KEYSTROKES; i += 1) {
+                key[0] = i % (LINE + 1) == LINE ? '\n'
+                    : LETTERS.charAt(random.nextInt(LETTERS.length()));
+                long start = System.nanoTime();
+                teletype.type(key, 0, 1);
+                nanos[i] = System.nanoTime() - start;
+            }
+            allocated = allocatedBytes() - allocated;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%10s %10s %10s %10s %10s%n", "p50 us", "p99 us",
+                          "p99.9 us", "max us", "bytes/key");
+        System.out.printf("%10.2f %10.2f %10.2f %10.2f %10s%n",
+                          nanos[KEYSTROKES / 2] / 1e3,
+                          nanos[KEYSTROKES / 100 * 99] / 1e3,
+                          nanos[KEYSTROKES / 1000 * 999] / 1e3,
+                          nanos[KEYSTROKES - 1] / 1e3,
+                          allocated < 0 ? "?" : String.format(
+                              "%.2f", (double) allocated / KEYSTROKES));
+    }
+
+    /** Time setting up a machine with each of KEYS keys in turn, REKEYS
+     *  times, by Machine.rekey and by settings lines (all found in the
+     *  machine's SettingsCache once warmed up).  Print the rekeys per
+     *  second and the bytes allocated per rekey, where the JVM reports
+     *  them. */
+    static void rekey() {
+        Configuration configuration = Configuration.read(new Scanner(
+            randomConfiguration(LETTERS.length(), new Random(5))));
+        Machine machine = configuration.newMachine();
+        Random random = new Random(6);
+        int[][] rotors = new int[KEYS][];
+        int[][] positions = new int[KEYS][];
+        int[][] plugboards = new int[KEYS][];
+        String[] lines = new String[KEYS];
+        for (int i = 0; i < KEYS; i += 1) {
+            int[] order = shuffle(4, random);
+            String[] names = { "U", "F", "R" + (order[0] + 1),
+                               "R" + (order[1] + 1), "R" + (order[2] + 1),
+                               "R" + (order[3] + 1) };
+            rotors[i] = new int[names.length];
+            for (int k = 0; k < names.length; k += 1) {
+                rotors[i][k] = machine.rotorIndex(names[k]);
+            }
+            positions[i] = new int[names.length - 1];
+            StringBuilder line = new StringBuilder("* ")
+                .append(String.join(" ", names)).append(' ');
+            for (int k = 0; k < positions[i].length; k += 1) {
+                positions[i][k] = random.nextInt(LETTERS.length());
+                line.append(LETTERS.charAt(positions[i][k]));
+            }
+            plugboards[i] = Arrays.copyOf(
+                shuffle(LETTERS.length(), random), 20);
+            for (int k = 0; k < plugboards[i].length; k += 2) {
+                line.append(" (")
+                    .append(LETTERS.charAt(plugboards[i][k]))
+                    .append(LETTERS.charAt(plugboards[i][k + 1]))
+                    .append(')');
+            }
+            lines[i] = line.toString();
+        }
+        System.out.printf("%10s %14s %12s%n", "path", "rekeys/s",
+                          "bytes/rekey");
+        for (int path = 0; path < 2; path += 1) {
+            long best = Long.MAX_VALUE, allocated = 0;
+            for (int round = 0; round < ROUNDS; round += 1) {
+                allocated = allocatedBytes();
+                long start = System.nanoTime();
+                for (int n = 0; n < REKEYS; n += 1) {
+                    int i = n % KEYS;
+                    if (path == 0) {
+                        machine.rekey(rotors[i], positions[i],
+                                      plugboards[i]);
+                    } else {
+                        Main.setUp(machine, lines[i]);
+                    }
+                }
+                best = Math.min(best, System.nanoTime() - start);
+                allocated = allocatedBytes() - allocated;
+            }
+            System.out.printf("%10s %14.0f %12s%n",
+                              path == 0 ? "rekey" : "settings",
+                              REKEYS * 1e9 / best,
+                              allocated < 0 ? "?" : String.format(
+                                  "%.2f", (double) allocated / REKEYS));
+        }
+    }
+
+    /** Return the number of bytes the current thread has allocated so
+     *  far, or a negative number if the JVM does not tell. */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean)
+                .getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    /** Return the text of a configuration over an alphabet of SIZE
+     *  symbols, with four moving rotors, a fixed rotor and a reflector
+     *  whose wirings are drawn from RANDOM.  SIZE is 26 or a power of
+     *  16. */
+    static String randomConfiguration(int size, Random random) {
+        int digits = size == LETTERS.length()
+            ? 0 : Integer.numberOfTrailingZeros(size) / 4;
+        StringBuilder config = new StringBuilder();
+        if (digits == 0) {
+            config.append(LETTERS);
+        } else {
+            config.append("0x").append("0".repeat(digits)).append("-0x")
+                .append("f".repeat(digits));
+        }
+        config.append("\n 6 4\n");
+        for (int r = 1; r <= 4; r += 1) {
+            config.append(" R").append(r).append(" M");
+            symbol(config, random.nextInt(size), digits);
+            config.append(" (");
+            for (int k : shuffle(size, random)) {
+                symbol(config, k, digits);
+            }
+            config.append(")\n");
+        }
+        config.append(" F N (");
+        for (int k : shuffle(size, random)) {
+            symbol(config, k, digits);
+        }
+        config.append(")\n U R");
+        int[] pairs = shuffle(size, random);
+        for (int i = 0; i < size; i += 2) {
+            config.append(" (");
+            symbol(config, pairs[i], digits);
+            symbol(config, pairs[i + 1], digits);
+            config.append(')');
+        }
+        return config.append('\n').toString();
+    }
+
+    /** Return a settings line for the machines of randomConfiguration
+     *  over ALPHABET, split into words. */
+    static String[] settings(Alphabet alphabet) {
+        StringBuilder setting = new StringBuilder();
+        StringBuilder plugboard = new StringBuilder("(");
+        int digits = alphabet.hexDigits();
+        for (int k = 0; k < 5; k += 1) {
+            symbol(setting, k * 3, digits);
+        }
+        symbol(plugboard, 1, digits);
+        symbol(plugboard, 2, digits);
+        plugboard.append(')');
+        return new String[] { "*", "U", "F", "R1", "R2", "R3", "R4",
+                              setting.toString(), plugboard.toString() };
+    }
+
+    /** Append to OUT the symbol with index K, written as DIGITS
+     *  hexadecimal digits, or as a letter if DIGITS is 0. */
+    private static void symbol(StringBuilder out, int k, int digits) {
+        if (digits == 0) {
+            out.append(LETTERS.charAt(k));
+        } else {
+            String hex = Integer.toHexString(k);
+            out.append("0".repeat(digits - hex.length())).append(hex);
+        }
+    }
+
+    /** Return 0 .. N-1 in an order drawn from RANDOM. */
+    private static int[] shuffle(int n, Random random) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = i;
+        }
+        for (int i = n - 1; i > 0; i -= 1) {
+            int j = random.nextInt(i + 1);
+            int t = result[i];
+            result[i] = result[j];
+            result[j] = t;
+        }
+        return result;
+    }
+
+    /** Names of the benchmarks. */
+    private static final String[] NAMES = {
+        "alphabets", "engines", "plugboard", "interactive", "rekey"
+    };
+    /** Alphabet sizes timed by alphabets. */
+    static final int[] ALPHABET_SIZES = { 26, 256, 4096, 65536 };
+    /** Alphabet sizes timed by engines. */
+    static final int[] ENGINE_SIZES = { 26, 256, 4096 };
+    /** Message lengths timed by engines. */
+    static final int[] MESSAGE_LENGTHS = { 8, 64, 1024, 1 << 16 };
+    /** The letters, an alphabet of 26 symbols. */
+    private static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    /** Number of characters converted per round. */
+    private static final int CONVERTED = 1 << 21;
+    /** Number of characters converted per round by engines. */
+    private static final int ENGINE_CONVERTED = 1 << 17;
+    /** Number of keystrokes timed by interactive. */
+    private static final int KEYSTROKES = 200_000;
+    /** Number of characters typed on a line by interactive. */
+    private static final int LINE = 60;
+    /** Number of distinct keys cycled through by rekey. */
+    private static final int KEYS = 1024;
+    /** Number of rekeys timed per round by rekey. */
+    private static final int REKEYS = 1 << 21;
+    /** Number of rounds timed, of which the fastest is reported. */
+    private static final int ROUNDS = 5;
+    /** Results computed only to be timed, kept so they are computed. */
+    private static double _sink;
+
+    /** Not instantiable. */
+    private Benchmarks() {
+    }
+}
@@ -0,0 +1,191 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+import static enigma.EnigmaException.*;
+
+/** A sidecar index of an output file of Main, allowing any range of its
+ *  characters to be decrypted without processing what precedes it.  The
+ *  index is a text file starting with HEADER, followed by lines
+ *
+ *      S <char index> <settings line>
+ *      C <char index> <byte offset> <rotor settings>
+ *
+ *  where character indices count the converted characters of the whole
+ *  output (not spaces or line breaks).  An S line records a settings
+ *  ("*") line that took effect before character <char index>; a C line
+ *  records that character <char index> starts at <byte offset> of the
+ *  output and was converted with the rotors (not counting the reflector)
+ *  at <rotor settings>, before advancing.  An index being written
+ *  keeps nothing in memory.
+ *  @author Flynn"TheFox"Gray
+ */
+class CheckpointIndex {
+
+    /** First line of every index. */
+    static final String HEADER = "enigma-index 1";
+
+    /** A checkpoint: character CHARINDEX, at BYTEOFFSET in the output,
+     *  converted from rotor settings POSITIONS. */
+    static class Checkpoint {
+        /** A checkpoint of CHARINDEX at BYTEOFFSET with POSITIONS. */
+        Checkpoint(long charIndex, long byteOffset, String positions) {
+            _charIndex = charIndex;
+            _byteOffset = byteOffset;
+            _positions = positions;
+        }
+
+        /** Return my character index. */
+        long charIndex() {
+            return _charIndex;
+        }
+
+        /** Return my byte offset in the output. */
+        long byteOffset() {
+            return _byteOffset;
+        }
+
+        /** Return the rotor settings, as for Machine.setRotors. */
+        String positions() {
+            return _positions;
+        }
+
+        /** Character index. */
+        private final long _charIndex;
+        /** Byte offset. */
+        private final long _byteOffset;
+        /** Rotor settings. */
+        private final String _positions;
+    }
+
+    /** An index written to OUT as it is built, with a checkpoint every
+     *  INTERVAL characters. */
+    CheckpointIndex(PrintStream out, int interval) {
+        _out = out;
+        _interval = interval;
+        _out.println(HEADER);
+    }
+
+    /** An index read back, or built without being written. */
+    private CheckpointIndex() {
+        _out = null;
+        _interval = 0;
+    }
+
+    /** Return the index read from IN. */
+    static CheckpointIndex read(Scanner in) {
+        CheckpointIndex result = new CheckpointIndex();
+        try {
+            if (!in.nextLine().equals(HEADER)) {
+                throw error("not a checkpoint index");
+            }
+            while (in.hasNext()) {
+                String kind = in.next();
+                long charIndex = in.nextLong();
+                if (kind.equals("S")) {
+                    result.section(charIndex, in.nextLine().trim());
+                } else if (kind.equals("C")) {
+                    result.checkpoint(
+                        new Checkpoint(charIndex, in.nextLong(), in.next()));
+                } else {
+                    throw error("bad checkpoint index entry: %s", kind);
+                }
+            }
+        } catch (NoSuchElementException excp) {
+            throw error("checkpoint index truncated");
+        }
+        return result;
+    }
+
+    /** Return the number of characters between checkpoints. */
+    int interval() {
+        return _interval;
+    }
+
+    /** Return true iff a checkpoint is due at character CHARINDEX. */
+    boolean due(long charIndex) {
+        return charIndex % _interval == 0;
+    }
+
+    /** Record that SETTINGS took effect before character CHARINDEX. */
+    void section(long charIndex, String settings) {
+        if (_out != null) {
+            _out.printf("S %d %s%n", charIndex, settings);
+        } else {
+            _sectionStarts.add(charIndex);
+            _sections.add(settings);
+        }
+    }
+
+    /** Record CHECKPOINT. */
+    void checkpoint(Checkpoint checkpoint) {
+        if (_out != null) {
+            _out.printf("C %d %d %s%n", checkpoint.charIndex(),
+                        checkpoint.byteOffset(), checkpoint.positions());
+        } else {
+            _checkpoints.add(checkpoint);
+        }
+    }
+
+    /** Return the last checkpoint at or before character CHARINDEX. */
+    Checkpoint checkpointBefore(long charIndex) {
+        int lo = 0, hi = _checkpoints.size() - 1;
+        Checkpoint result = null;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (_checkpoints.get(mid).charIndex() <= charIndex) {
+                result = _checkpoints.get(mid);
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (result == null) {
+            throw error("no checkpoint before character %d", charIndex);
+        }
+        return result;
+    }
+
+    /** Return the number of settings lines recorded. */
+    int numSections() {
+        return _sections.size();
+    }
+
+    /** Return the character index at which settings line K took effect. */
+    long sectionStart(int k) {
+        return _sectionStarts.get(k);
+    }
+
+    /** Return settings line K. */
+    String section(int k) {
+        return _sections.get(k);
+    }
+
+    /** Return the index of the last settings line in effect at character
+     *  CHARINDEX, or -1 if there is none. */
+    int sectionAt(long charIndex) {
+        int result = -1;
+        for (int k = 0; k < _sections.size(); k += 1) {
+            if (_sectionStarts.get(k) <= charIndex) {
+                result = k;
+            } else {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /** Where entries are written, or null. */
+    private final PrintStream _out;
+    /** Characters between checkpoints. */
+    private final int _interval;
+    /** Character index at which each settings line took effect. */
+    private final ArrayList<Long> _sectionStarts = new ArrayList<>();
+    /** The settings lines, in order. */
+    private final ArrayList<String> _sections = new ArrayList<>();
+    /** The checkpoints, in order. */
+    private final ArrayList<Checkpoint> _checkpoints = new ArrayList<>();
+}
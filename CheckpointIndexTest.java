@@ -0,0 +1,55 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Scanner;
+
+/** The suite of all JUnit tests for the CheckpointIndex class.
+ *  @author Flynn"TheFox"Gray
+ */
+public class CheckpointIndexTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testWriteAndRead() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CheckpointIndex written =
+            new CheckpointIndex(new PrintStream(bytes), 10);
+        assertTrue(written.due(20));
+        assertFalse(written.due(21));
+        written.section(0, "* B Beta III IV I AXLE (YF) (HZ)");
+        written.checkpoint(new CheckpointIndex.Checkpoint(0, 0, "AXLE"));
+        written.checkpoint(new CheckpointIndex.Checkpoint(10, 12, "AXLO"));
+        written.section(15, "* B Beta I II III AAAA");
+        written.checkpoint(new CheckpointIndex.Checkpoint(20, 26, "AAAF"));
+
+        CheckpointIndex index =
+            CheckpointIndex.read(new Scanner(bytes.toString()));
+        assertEquals(2, index.numSections());
+        assertEquals("* B Beta III IV I AXLE (YF) (HZ)", index.section(0));
+        assertEquals(15, index.sectionStart(1));
+        assertEquals(0, index.checkpointBefore(9).charIndex());
+        assertEquals(12, index.checkpointBefore(10).byteOffset());
+        assertEquals("AXLO", index.checkpointBefore(19).positions());
+        assertEquals(0, index.sectionAt(14));
+        assertEquals(1, index.sectionAt(15));
+        assertEquals(1, index.sectionAt(index.checkpointBefore(25)
+                                        .charIndex()));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadHeader() {
+        CheckpointIndex.read(new Scanner("not an index\nC 0 0 AAAA\n"));
+    }
+
+}
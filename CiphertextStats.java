@@ -0,0 +1,503 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static enigma.EnigmaException.*;
+
+/** Traffic statistics over files of ciphertext such as Main writes, run
+ *  as `java enigma.CiphertextStats [--config=CONFIG] [--ngram=N]
+ *  [--positions=P] [--top=K] [--threads=T] FILE...`.  A line starting
+ *  with '*' begins a new message; every other character in the alphabet
+ *  (of CONFIG, or the upper-case letters) belongs to the current
+ *  message, and all other characters, such as the spaces between groups
+ *  of five, are ignored.  Reports the frequency of each character, the
+ *  index of coincidence, the K (default 20) commonest N-grams (default
+ *  2) within messages and, for each of the first P (default 0)
+ *  positions of a message, the number of characters there and their
+ *  index of coincidence.
+ *
+ *  Files are read as a stream, one after another, and cut into blocks
+ *  of at most BLOCK characters of one message, of which only a few are
+ *  held at a time.  T threads (default, one per processor) count the
+ *  blocks into counters of their own, which are merged at the end.
+ *  @author Flynn"TheFox"Gray
+ */
+public final class CiphertextStats {
+
+    /** Print the statistics of the files named in ARGS, as described
+     *  above. */
+    public static void main(String... args) {
+        try {
+            Alphabet alphabet = new Alphabet();
+            int ngram = 2, positions = 0, top = TOP;
+            int threads = Runtime.getRuntime().availableProcessors();
+            List<String> files = new ArrayList<>();
+            for (String arg : args) {
+                String value = arg.substring(arg.indexOf('=') + 1);
+                if (arg.startsWith("--config=")) {
+                    try (Scanner config = Main.getInput(value)) {
+                        alphabet = Configuration.read(config).alphabet();
+                    }
+                } else if (arg.startsWith("--ngram=")) {
+                    ngram = number(value);
+                } else if (arg.startsWith("--positions=")) {
+                    positions = number(value);
+                } else if (arg.startsWith("--top=")) {
+                    top = number(value);
+                } else if (arg.startsWith("--threads=")) {
+                    threads = number(value);
+                } else if (arg.startsWith("--")) {
+                    throw error("unknown option %s", arg);
+                } else {
+                    files.add(arg);
+                }
+            }
+            if (files.isEmpty() || ngram < 1 || threads < 1) {
+                throw error("Usage: java enigma.CiphertextStats "
+                            + "[--config=CONFIG] [--ngram=N] "
+                            + "[--positions=P] [--top=K] [--threads=T] "
+                            + "FILE...");
+            }
+            CiphertextStats stats =
+                new CiphertextStats(alphabet, ngram, positions, threads);
+            Iterable<Reader> inputs =
+                files.stream().map(CiphertextStats::open)::iterator;
+            System.out.print(stats.analyze(inputs).report(top));
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return the non-negative decimal number TEXT. */
+    private static int number(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException excp) {
+            throw error("bad number: %s", text);
+        }
+    }
+
+    /** Return a Reader of the file named NAME. */
+    private static Reader open(String name) {
+        try {
+            return Files.newBufferedReader(Paths.get(name),
+                                           Charset.defaultCharset());
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Statistics over ALPHABET of N-grams and of the first POSITIONS
+     *  positions of each message, counted by THREADS threads. */
+    CiphertextStats(Alphabet alphabet, int n, int positions, int threads) {
+        _alphabet = alphabet;
+        _n = n;
+        _numPositions = positions;
+        _threads = threads;
+        long ngrams = 1;
+        for (int i = 0; i < n; i += 1) {
+            ngrams *= alphabet.size();
+            if (ngrams > MAX_NGRAMS) {
+                throw error("too many %d-grams over %d characters to count",
+                            n, alphabet.size());
+            }
+        }
+        _numNgrams = (int) ngrams;
+    }
+
+    /** Return the statistics of the messages in INPUTS, read in order and
+     *  then closed. */
+    Counts analyze(Iterable<Reader> inputs) {
+        BlockingQueue<Block> queue = new ArrayBlockingQueue<>(2 * _threads);
+        ExecutorService pool = Executors.newFixedThreadPool(_threads);
+        List<Future<Counts>> workers = new ArrayList<>();
+        for (int t = 0; t < _threads; t += 1) {
+            workers.add(pool.submit(() -> count(queue)));
+        }
+        Counts result = new Counts();
+        try {
+            try {
+                Splitter splitter = new Splitter(queue, result);
+                for (Reader input : inputs) {
+                    try (Reader in = input) {
+                        splitter.read(in);
+                    } catch (IOException excp) {
+                        throw error("could not read input");
+                    }
+                    result._files += 1;
+                }
+            } finally {
+                for (int t = 0; t < _threads; t += 1) {
+                    queue.put(Block.END);
+                }
+            }
+            for (Future<Counts> worker : workers) {
+                result.merge(worker.get());
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw error("statistics interrupted: %s", excp);
+        } finally {
+            pool.shutdown();
+        }
+        return result;
+    }
+
+    /** Count the blocks taken from QUEUE, up to Block.END, into counters of
+     *  my own, and return them. */
+    private Counts count(BlockingQueue<Block> queue)
+        throws InterruptedException {
+        Counts counts = new Counts();
+        int size = _alphabet.size();
+        int window = _numNgrams / size;
+        while (true) {
+            Block block = queue.take();
+            if (block == Block.END) {
+                return counts;
+            }
+            char[] chars = block._chars;
+            int ngram = 0;
+            for (int i = 0; i < block._length; i += 1) {
+                int c = chars[i];
+                ngram = ngram % window * size + c;
+                if (i + 1 >= _n) {
+                    counts._ngrams[ngram] += 1;
+                }
+                if (i < block._overlap) {
+                    continue;
+                }
+                counts._letters[c] += 1;
+                long pos = block._start + i - block._overlap;
+                if (pos < _numPositions) {
+                    counts._positions[(int) pos * size + c] += 1;
+                }
+            }
+        }
+    }
+
+    /** Return the index of coincidence of the LENGTH counts in COUNTS
+     *  starting at FROM: the probability that two distinct characters
+     *  drawn from them are the same. */
+    static double coincidence(long[] counts, int from, int length) {
+        long total = 0;
+        double pairs = 0;
+        for (int i = from; i < from + length; i += 1) {
+            total += counts[i];
+            pairs += (double) counts[i] * (counts[i] - 1);
+        }
+        return total < 2 ? 0 : pairs / ((double) total * (total - 1));
+    }
+
+    /** A run of at most BLOCK characters, as indices into the alphabet, of
+     *  one message. */
+    private static class Block {
+        /** The LENGTH characters CHARS, of which the first OVERLAP repeat
+         *  the end of the previous block of the same message and only
+         *  start N-grams, and the next is at position START of its
+         *  message. */
+        Block(char[] chars, int length, int overlap, long start) {
+            _chars = chars;
+            _length = length;
+            _overlap = overlap;
+            _start = start;
+        }
+
+        /** Marks the end of the blocks. */
+        static final Block END = new Block(new char[0], 0, 0, 0);
+
+        /** The characters. */
+        private final char[] _chars;
+        /** Number of characters. */
+        private final int _length;
+        /** Number of leading characters that only start N-grams. */
+        private final int _overlap;
+        /** Position in its message of _chars[_overlap]. */
+        private final long _start;
+    }
+
+    /** Cuts the messages read into Blocks and queues them. */
+    private class Splitter {
+        /** A Splitter queueing blocks onto QUEUE and counting messages
+         *  into TOTALS. */
+        Splitter(BlockingQueue<Block> queue, Counts totals) {
+            _queue = queue;
+            _totals = totals;
+            _chars = new char[BLOCK];
+        }
+
+        /** Read and queue the messages in IN.  IN starts a new line and a
+         *  new message. */
+        void read(Reader in) throws IOException, InterruptedException {
+            char[] buf = new char[BLOCK];
+            boolean lineStart = true, settings = false;
+            endMessage();
+            for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                for (int i = 0; i < n; i += 1) {
+                    char ch = buf[i];
+                    if (ch == '\n' || ch == '\r') {
+                        lineStart = true;
+                        settings = false;
+                        continue;
+                    }
+                    if (lineStart && ch == '*') {
+                        endMessage();
+                        settings = true;
+                    }
+                    lineStart = false;
+                    int c = settings ? -1 : _alphabet.toInt(ch);
+                    if (c >= 0) {
+                        if (_length == BLOCK) {
+                            flush(true);
+                        }
+                        _chars[_length] = (char) c;
+                        _length += 1;
+                    }
+                }
+            }
+            endMessage();
+        }
+
+        /** Queue what remains of the current message and start a new
+         *  one. */
+        private void endMessage() throws InterruptedException {
+            flush(false);
+            if (_messageLength > 0) {
+                _totals._messages += 1;
+                _totals._longest = Math.max(_totals._longest,
+                                            _messageLength);
+            }
+            _messageLength = 0;
+            _length = _overlap = 0;
+        }
+
+        /** Queue the current block, if it has any characters of its own,
+         *  and start the next, which continues the same message iff
+         *  MORE. */
+        private void flush(boolean more) throws InterruptedException {
+            if (_length == _overlap) {
+                return;
+            }
+            _queue.put(new Block(_chars, _length, _overlap,
+                                 _messageLength));
+            _messageLength += _length - _overlap;
+            char[] next = new char[BLOCK];
+            _overlap = more ? Math.min(_n - 1, _length) : 0;
+            System.arraycopy(_chars, _length - _overlap, next, 0, _overlap);
+            _chars = next;
+            _length = _overlap;
+        }
+
+        /** Where blocks go. */
+        private final BlockingQueue<Block> _queue;
+        /** Where messages are counted. */
+        private final Counts _totals;
+        /** Characters of the current block. */
+        private char[] _chars;
+        /** Number of characters in _chars. */
+        private int _length;
+        /** Number of leading characters of _chars that only start
+         *  N-grams. */
+        private int _overlap;
+        /** Number of characters of the current message already queued. */
+        private long _messageLength;
+    }
+
+    /** Statistics of a set of messages. */
+    class Counts {
+
+        /** Return the number of times the character with index C
+         *  occurs. */
+        long letters(int c) {
+            return _letters[c];
+        }
+
+        /** Return the total number of characters. */
+        long chars() {
+            long total = 0;
+            for (long count : _letters) {
+                total += count;
+            }
+            return total;
+        }
+
+        /** Return the number of messages. */
+        long messages() {
+            return _messages;
+        }
+
+        /** Return the number of times the N-gram of the characters whose
+         *  indices are the digits of K, in base alphabet size, occurs. */
+        long ngrams(int k) {
+            return _ngrams[k];
+        }
+
+        /** Return the number of messages with a character at position
+         *  POS holding the character with index C. */
+        long positions(int pos, int c) {
+            return _positions[pos * _alphabet.size() + c];
+        }
+
+        /** Return the index of coincidence of all characters. */
+        double coincidence() {
+            return CiphertextStats.coincidence(_letters, 0, _letters.length);
+        }
+
+        /** Return the index of coincidence of the characters at position
+         *  POS of their messages. */
+        double coincidence(int pos) {
+            int size = _alphabet.size();
+            return CiphertextStats.coincidence(_positions, pos * size, size);
+        }
+
+        /** Add OTHER's counts to mine. */
+        void merge(Counts other) {
+            add(_letters, other._letters);
+            add(_ngrams, other._ngrams);
+            add(_positions, other._positions);
+            _messages += other._messages;
+            _files += other._files;
+            _longest = Math.max(_longest, other._longest);
+        }
+
+        /** Add each of FROM to the corresponding element of TO. */
+        private void add(long[] to, long[] from) {
+            for (int i = 0; i < to.length; i += 1) {
+                to[i] += from[i];
+            }
+        }
+
+        /** Return a report of my statistics, listing the TOP commonest
+         *  N-grams. */
+        String report(int top) {
+            StringBuilder out = new StringBuilder();
+            int size = _alphabet.size();
+            long chars = chars();
+            out.append(String.format("files: %d, messages: %d, "
+                                     + "characters: %d, longest: %d%n",
+                                     _files, _messages, chars, _longest));
+            out.append(String.format("index of coincidence: %.5f "
+                                     + "(%.3f x random)%n", coincidence(),
+                                     coincidence() * size));
+            out.append(String.format("%-6s %12s %8s%n", "char", "count",
+                                     "%"));
+            for (int c = 0; c < size; c += 1) {
+                out.append(String.format("%-6s %12d %8.3f%n", symbol(c),
+                                         _letters[c],
+                                         percent(_letters[c], chars)));
+            }
+            long total = 0;
+            for (long count : _ngrams) {
+                total += count;
+            }
+            out.append(String.format("%d commonest %d-grams of %d:%n",
+                                     Math.min(top, _ngrams.length), _n,
+                                     total));
+            for (int k : commonest(_ngrams, top)) {
+                StringBuilder gram = new StringBuilder();
+                for (int i = 0, rest = k; i < _n; i += 1, rest /= size) {
+                    gram.insert(0, symbol(rest % size));
+                }
+                out.append(String.format("%-12s %12d %8.3f%n", gram,
+                                         _ngrams[k],
+                                         percent(_ngrams[k], total)));
+            }
+            if (_positions.length > 0) {
+                out.append(String.format("%-8s %12s %10s%n", "position",
+                                         "chars", "coincidence"));
+            }
+            for (int pos = 0; pos * size < _positions.length; pos += 1) {
+                long count = 0;
+                for (int c = 0; c < size; c += 1) {
+                    count += positions(pos, c);
+                }
+                out.append(String.format("%-8d %12d %10.5f%n", pos, count,
+                                         coincidence(pos)));
+            }
+            return out.toString();
+        }
+
+        /** Return the character with index C as it is written. */
+        private String symbol(int c) {
+            int digits = _alphabet.hexDigits();
+            return digits == 0 ? String.valueOf(_alphabet.toChar(c))
+                : String.format("%0" + digits + "x", c);
+        }
+
+        /** Counts of each character. */
+        private final long[] _letters = new long[_alphabet.size()];
+        /** Counts of each N-gram, by the number whose digits in base
+         *  alphabet size are its characters. */
+        private final long[] _ngrams = new long[_numNgrams];
+        /** Counts of each character at each of the first _positions
+         *  positions, by position * alphabet size + character. */
+        private final long[] _positions =
+            new long[_numPositions * _alphabet.size()];
+        /** Numbers of messages and files. */
+        private long _messages, _files;
+        /** Length of the longest message. */
+        private long _longest;
+    }
+
+    /** Return COUNT as a percentage of TOTAL. */
+    private static double percent(long count, long total) {
+        return total == 0 ? 0 : 100.0 * count / total;
+    }
+
+    /** Return the indices of the at most TOP largest of COUNTS that are
+     *  not 0, largest first. */
+    private static int[] commonest(long[] counts, int top) {
+        int[] result = new int[top];
+        int n = 0;
+        for (int k = 0; k < counts.length; k += 1) {
+            if (counts[k] == 0) {
+                continue;
+            } else if (n == top) {
+                if (top == 0 || counts[k] <= counts[result[top - 1]]) {
+                    continue;
+                }
+                n -= 1;
+            }
+            int i = n;
+            n += 1;
+            for (; i > 0 && counts[result[i - 1]] < counts[k]; i -= 1) {
+                result[i] = result[i - 1];
+            }
+            result[i] = k;
+        }
+        int[] trimmed = new int[n];
+        System.arraycopy(result, 0, trimmed, 0, n);
+        return trimmed;
+    }
+
+    /** Largest number of characters in a block. */
+    static final int BLOCK = 1 << 16;
+    /** Most distinct N-grams counted. */
+    static final int MAX_NGRAMS = 1 << 20;
+    /** Default number of N-grams reported. */
+    static final int TOP = 20;
+
+    /** The alphabet of the ciphertext. */
+    private final Alphabet _alphabet;
+    /** Length of the N-grams counted. */
+    private final int _n;
+    /** Number of distinct N-grams. */
+    private final int _numNgrams;
+    /** Number of leading positions of each message counted. */
+    private final int _numPositions;
+    /** Number of counting threads. */
+    private final int _threads;
+}
@@ -0,0 +1,119 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the CiphertextStats class.
+ *  @author Flynn"TheFox"Gray
+ */
+public class CiphertextStatsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return messages of random letters drawn from RANDOM, with the
+     *  lengths LENGTHS. */
+    private static List<String> messages(Random random, int... lengths) {
+        List<String> result = new ArrayList<>();
+        for (int length : lengths) {
+            StringBuilder msg = new StringBuilder();
+            for (int i = 0; i < length; i += 1) {
+                msg.append(UPPER_STRING.charAt(random.nextInt(26)));
+            }
+            result.add(msg.toString());
+        }
+        return result;
+    }
+
+    /** Return MESSAGES as Main would write them, each after a settings
+     *  line, in lines of groups of five. */
+    private static String ciphertext(List<String> messages) {
+        StringBuilder out = new StringBuilder();
+        for (String msg : messages) {
+            out.append("* B Beta I II III AAAA (AQ)\n");
+            for (int i = 0; i < msg.length(); i += 1) {
+                out.append(msg.charAt(i));
+                out.append(i % 50 == 49 ? "\n" : i % 5 == 4 ? " " : "");
+            }
+            out.append("\n\n");
+        }
+        return out.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSameAsDirect() {
+        List<String> msgs =
+            messages(new Random(5), 30, 0, 1, 200000, 7, 70000, 3);
+        long[] letters = new long[26];
+        long[] bigrams = new long[26 * 26];
+        long[] column = new long[26];
+        for (String msg : msgs) {
+            for (int i = 0; i < msg.length(); i += 1) {
+                int c = msg.charAt(i) - 'A';
+                letters[c] += 1;
+                if (i > 0) {
+                    bigrams[(msg.charAt(i - 1) - 'A') * 26 + c] += 1;
+                }
+                if (i == 2) {
+                    column[c] += 1;
+                }
+            }
+        }
+        String text = ciphertext(msgs);
+        for (int threads : new int[] { 1, 4 }) {
+            CiphertextStats stats =
+                new CiphertextStats(UPPER, 2, 5, threads);
+            List<Reader> inputs = new ArrayList<>();
+            inputs.add(new StringReader(text));
+            inputs.add(new StringReader("ABC DE\nF\n* \nGH"));
+            CiphertextStats.Counts counts = stats.analyze(inputs);
+            assertEquals(8, counts.messages());
+            assertEquals(letters[0] + 1, counts.letters(0));
+            assertEquals(letters[7] + 1, counts.letters(7));
+            assertEquals(letters[25], counts.letters(25));
+            assertEquals(bigrams[1] + 1, counts.ngrams(1));
+            assertEquals(bigrams[26 * 3 + 4] + 1, counts.ngrams(26 * 3 + 4));
+            assertEquals(bigrams[26 * 5 + 6], counts.ngrams(26 * 5 + 6));
+            assertEquals(column[2] + 1, counts.positions(2, 2));
+            assertEquals(column[4], counts.positions(2, 4));
+            assertEquals(0, counts.positions(4, 6));
+        }
+    }
+
+    @Test
+    public void testCoincidence() {
+        assertEquals(0.0, CiphertextStats.coincidence(new long[] { 1 }, 0,
+                                                      1), 1e-9);
+        assertEquals(1.0 / 3, CiphertextStats.coincidence(
+            new long[] { 9, 2, 2 }, 1, 2), 1e-9);
+        CiphertextStats stats = new CiphertextStats(UPPER, 1, 0, 2);
+        List<Reader> inputs = new ArrayList<>();
+        inputs.add(new StringReader("AAAAA BBBBB\n"));
+        CiphertextStats.Counts counts = stats.analyze(inputs);
+        assertEquals(4.0 / 9, counts.coincidence(), 1e-9);
+        assertEquals(10, counts.chars());
+        assertTrue(counts.report(3).startsWith(
+            "files: 1, messages: 1, characters: 10, longest: 10"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testTooManyNgrams() {
+        new CiphertextStats(UPPER, 5, 0, 1);
+    }
+
+}
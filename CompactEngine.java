@@ -0,0 +1,192 @@
+package enigma;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** An Engine for alphabets of at most MAX_SIZE characters that keeps
+ *  everything its inner loop reads in one byte array: the rotor
+ *  settings, whether each slot moves, each slot's notches and its
+ *  forward and inverse tables, and a table of remainders.  Each table is
+ *  stored twice over, so that a rotor at setting S maps C to
+ *  MOD[T[C + S] + N - S] (N being the alphabet size), with no wrapping
+ *  tests.  For a 256-character alphabet and six slots the array holds
+ *  about 8 KiB, well within a first-level data cache.  The tables are
+ *  laid out once for each distinct RotorCore, and each new engine starts
+ *  from a copy.
+ *  @author Flynn"TheFox"Gray
+ */
+class CompactEngine extends Engine {
+
+    /** Largest alphabet whose indices fit in a byte. */
+    static final int MAX_SIZE = 256;
+
+    /** An engine for CORE, whose alphabet has at most MAX_SIZE
+     *  characters. */
+    CompactEngine(RotorCore core) {
+        if (core.size() > MAX_SIZE) {
+            throw new IllegalArgumentException("alphabet too large");
+        }
+        _size = core.size();
+        _numRotors = core.numRotors();
+        _moves = _numRotors;
+        _mod = 2 * _numRotors;
+        _slots = _mod + 2 * _size;
+        byte[] arena;
+        synchronized (ARENAS) {
+            arena = ARENAS.get(core);
+        }
+        if (arena == null) {
+            arena = arena(core);
+            synchronized (ARENAS) {
+                byte[] other = ARENAS.putIfAbsent(core, arena);
+                if (other != null) {
+                    arena = other;
+                }
+            }
+        }
+        _arena = arena.clone();
+    }
+
+    /** Return the number of arenas kept for copying. */
+    static int arenas() {
+        synchronized (ARENAS) {
+            return ARENAS.size();
+        }
+    }
+
+    /** Return the arena of an engine for CORE, with every setting 0. */
+    private static byte[] arena(RotorCore core) {
+        int n = core.size(), numRotors = core.numRotors();
+        int mod = 2 * numRotors, slots = mod + 2 * n;
+        byte[] result = new byte[slots + numRotors * SLOT * n];
+        for (int x = 0; x < 2 * n; x += 1) {
+            result[mod + x] = (byte) (x % n);
+        }
+        for (int k = 0; k < numRotors; k += 1) {
+            result[numRotors + k] = (byte) (core.rotates(k) ? 1 : 0);
+            int base = slots + k * SLOT * n;
+            int[] forward = core.forward(k), inverse = core.inverse(k);
+            for (int x = 0; x < 2 * n; x += 1) {
+                result[base + x] = (byte) forward[x % n];
+                result[base + 2 * n + x] = (byte) inverse[x % n];
+            }
+            for (int p = 0; p < n; p += 1) {
+                result[base + 4 * n + p] = (byte) (core.atNotch(k, p) ? 1 : 0);
+            }
+        }
+        return result;
+    }
+
+    /** Return the number of bytes in my arena. */
+    int bytes() {
+        return _arena.length;
+    }
+
+    @Override
+    void setPositions(int[] pos) {
+        for (int k = 0; k < _numRotors; k += 1) {
+            _arena[k] = (byte) pos[k];
+        }
+    }
+
+    @Override
+    void getPositions(int[] pos) {
+        for (int k = 0; k < _numRotors; k += 1) {
+            pos[k] = _arena[k] & BYTE;
+        }
+    }
+
+    @Override
+    int convert(int c) {
+        step();
+        return substitute(c);
+    }
+
+    @Override
+    void convert(int[] chars, int from, int to) {
+        for (int i = from; i < to; i += 1) {
+            step();
+            chars[i] = substitute(chars[i]);
+        }
+    }
+
+    /** Advance my settings as RotorCore.step does. */
+    private void step() {
+        byte[] a = _arena;
+        int last = _numRotors - 1;
+        int stride = SLOT * _size, notches = _slots + 4 * _size;
+        boolean fastRotorTurnedAlready = false;
+        for (int k = 1; k < last; k += 1) {
+            if (a[_moves + k] != 0
+                && a[notches + (k + 1) * stride + (a[k + 1] & BYTE)] != 0) {
+                advance(k);
+                advance(k + 1);
+                if (k + 1 == last) {
+                    fastRotorTurnedAlready = true;
+                }
+                k += 1;
+            }
+        }
+        if (!fastRotorTurnedAlready) {
+            advance(last);
+        }
+    }
+
+    /** Advance the setting of slot K one position, if that rotor
+     *  moves. */
+    private void advance(int k) {
+        if (_arena[_moves + k] != 0) {
+            int p = (_arena[k] & BYTE) + 1;
+            _arena[k] = (byte) (p == _size ? 0 : p);
+        }
+    }
+
+    /** Return the result of passing C through my rotors at their current
+     *  settings, forward to the reflector and back. */
+    private int substitute(int c) {
+        byte[] a = _arena;
+        int n = _size, mod = _mod + n, stride = SLOT * n;
+        int base = _slots + (_numRotors - 1) * stride;
+        for (int k = _numRotors - 1; k >= 0; k -= 1, base -= stride) {
+            int s = a[k] & BYTE;
+            c = a[mod + (a[base + c + s] & BYTE) - s] & BYTE;
+        }
+        base = _slots + stride + 2 * n;
+        for (int k = 1; k < _numRotors; k += 1, base += stride) {
+            int s = a[k] & BYTE;
+            c = a[mod + (a[base + c + s] & BYTE) - s] & BYTE;
+        }
+        return c;
+    }
+
+    /** Bytes per alphabet character in each slot's part of the arena:
+     *  two copies of the forward table, two of the inverse, and one
+     *  notch flag. */
+    private static final int SLOT = 5;
+    /** Mask taking a byte as unsigned. */
+    private static final int BYTE = 0xff;
+    /** Most arenas kept for copying. */
+    static final int MAX_ARENAS = 32;
+
+    /** Arena of each of the MAX_ARENAS RotorCores an engine has most
+     *  recently been made for, which each new engine copies. */
+    private static final Map<RotorCore, byte[]> ARENAS =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<RotorCore, byte[]> eldest) {
+                return size() > MAX_ARENAS;
+            }
+        };
+
+    /** Size of my alphabet. */
+    private final int _size;
+    /** Number of rotor slots. */
+    private final int _numRotors;
+    /** The settings of the slots (at 0), whether each slot moves (at
+     *  _moves), X % _size for X below 2 * _size (at _mod), and then each
+     *  slot's tables (from _slots on, SLOT * _size bytes each). */
+    private final byte[] _arena;
+    /** Offsets in _arena. */
+    private final int _moves, _mod, _slots;
+}
@@ -0,0 +1,100 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.Scanner;
+
+/** The suite of all JUnit tests for the CompactEngine class.
+ *  @author Flynn"TheFox"Gray
+ */
+public class CompactEngineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return the RotorCore of a machine of a random configuration over
+     *  SIZE characters, drawn from RANDOM. */
+    private static RotorCore core(int size, Random random) {
+        Configuration config = Configuration.read(new Scanner(
+            Benchmarks.randomConfiguration(size, random)));
+        Machine machine = config.newMachine();
+        Main.setUp(machine, Benchmarks.settings(config.alphabet()));
+        return RotorCore.compile(machine.slots());
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSameAsCore() {
+        for (int size : new int[] { 26, 256 }) {
+            Random random = new Random(size);
+            RotorCore core = core(size, random);
+            for (int trial = 0; trial < 20; trial += 1) {
+                int[] pos = new int[core.numRotors()];
+                for (int k = 0; k < pos.length; k += 1) {
+                    pos[k] = random.nextInt(size);
+                }
+                Engine expected = new CoreEngine(core);
+                Engine compact = new CompactEngine(core);
+                expected.setPositions(pos);
+                compact.setPositions(pos);
+                int[] chars = new int[1000], copy = new int[1000];
+                for (int i = 0; i < chars.length; i += 1) {
+                    chars[i] = copy[i] = random.nextInt(size);
+                }
+                expected.convert(chars, 0, 500);
+                compact.convert(copy, 0, 500);
+                for (int i = 500; i < chars.length; i += 1) {
+                    assertEquals(expected.convert(chars[i]),
+                                 compact.convert(copy[i]));
+                }
+                assertArrayEquals(chars, copy);
+                int[] want = new int[pos.length], got = new int[pos.length];
+                expected.getPositions(want);
+                compact.getPositions(got);
+                assertArrayEquals(want, got);
+            }
+        }
+    }
+
+    @Test
+    public void testArenasBounded() {
+        Random random = new Random(44);
+        RotorCore first = core(26, random);
+        CompactEngine engine = new CompactEngine(first);
+        for (int i = 0; i < 2 * CompactEngine.MAX_ARENAS; i += 1) {
+            new CompactEngine(core(26, random));
+        }
+        assertTrue(CompactEngine.arenas() <= CompactEngine.MAX_ARENAS);
+        Engine expected = new CoreEngine(first);
+        Engine again = new CompactEngine(first);
+        int[] pos = new int[first.numRotors()];
+        expected.setPositions(pos);
+        again.setPositions(pos);
+        engine.setPositions(pos);
+        for (int c = 0; c < 26; c += 1) {
+            int want = expected.convert(c);
+            assertEquals(want, again.convert(c));
+            assertEquals(want, engine.convert(c));
+        }
+    }
+
+    @Test
+    public void testSize() {
+        CompactEngine engine = new CompactEngine(core(256, new Random(1)));
+        assertEquals(6 + 6 + 2 * 256 + 6 * 5 * 256, engine.bytes());
+        try {
+            new CompactEngine(core(4096, new Random(1)));
+            fail("4096-character alphabet accepted");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static enigma.EnigmaException.*;
+
+/** A set of configuration files, each kept loaded as a Configuration
+ *  and reloaded whenever the file changes.  A background thread watches
+ *  the files' directories with a WatchService, reads and checks each
+ *  changed file completely, and only then publishes the new
+ *  Configuration in place of the old one.  A changed file is read only
+ *  once its size, modification time and identity have stayed the same
+ *  for SETTLE_MILLIS, and is published only if they are still the same
+ *  after reading it, so that a file being rewritten in place is not
+ *  published while part-written; the write that changed it meanwhile
+ *  causes another reload.  get never blocks: it
+ *  returns whichever version was last published, so machines already
+ *  built from the old version carry on with it while new machines use
+ *  the new one.  A file that fails to load leaves the last good version
+ *  in place.  Files are best replaced by renaming a complete new file
+ *  over them, so that a half-written file is never read.
+ *  @author Flynn"TheFox"Gray
+ */
+class ConfigRegistry {
+
+    /** Time, in milliseconds, that a changed file must stay unchanged
+     *  before it is read. */
+    static final long SETTLE_MILLIS = 100;
+
+    /** An empty registry, not yet watching. */
+    ConfigRegistry() {
+        try {
+            _watcher = FileSystems.getDefault().newWatchService();
+        } catch (IOException excp) {
+            throw error("could not watch configuration files");
+        }
+    }
+
+    /** Load the configuration file FILE, if not already loaded, watch it
+     *  for changes, and return its current Configuration. */
+    synchronized Configuration load(Path file) {
+        Path path = file.toAbsolutePath().normalize();
+        Version current = _versions.get(path);
+        if (current != null) {
+            return current._config;
+        }
+        Configuration config = read(path);
+        Path dir = path.getParent();
+        if (_dirs.add(dir)) {
+            try {
+                dir.register(_watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                             StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (IOException excp) {
+                _dirs.remove(dir);
+                throw error("could not watch %s", dir);
+            }
+        }
+        _versions.put(path, new Version(config, 1));
+        return config;
+    }
+
+    /** Return the Configuration last published for the file FILE, or null
+     *  if it has not been loaded.  Never blocks. */
+    Configuration get(Path file) {
+        Version current = _versions.get(file.toAbsolutePath().normalize());
+        return current == null ? null : current._config;
+    }
+
+    /** Return the number of versions of FILE published so far, or 0 if it
+     *  has not been loaded. */
+    long version(Path file) {
+        Version current = _versions.get(file.toAbsolutePath().normalize());
+        return current == null ? 0 : current._number;
+    }
+
+    /** Start watching for changes in the background. */
+    void start() {
+        _thread = new Thread(this::watch, "enigma-config-watcher");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    /** Stop watching. */
+    void close() {
+        try {
+            _watcher.close();
+            if (_thread != null) {
+                _thread.join();
+            }
+        } catch (IOException excp) {
+            throw error("could not stop watching configuration files");
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("could not stop watching configuration files");
+        }
+    }
+
+    /** Return a one-line summary of my counters. */
+    String stats() {
+        return String.format("config registry: %d files, %d reloads, "
+                             + "%d failed reloads", _versions.size(),
+                             _reloads.get(), _failures.get());
+    }
+
+    /** Reload changed files until _watcher is closed. */
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = _watcher.take();
+            } catch (ClosedWatchServiceException
+                     | InterruptedException excp) {
+                return;
+            }
+            Path dir = (Path) key.watchable();
+            Set<Path> changed = new HashSet<>();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.context() instanceof Path) {
+                    changed.add(dir.resolve((Path) event.context()));
+                }
+            }
+            key.reset();
+            for (Path path : changed) {
+                if (_versions.containsKey(path) && !reload(path)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Read PATH afresh, once it has settled, and publish it as its next
+     *  version, unless it cannot be read or changes meanwhile.  Return
+     *  false iff interrupted. */
+    private boolean reload(Path path) {
+        String stamp = stamp(path);
+        try {
+            Thread.sleep(SETTLE_MILLIS);
+        } catch (InterruptedException excp) {
+            return false;
+        }
+        if (stamp == null || !stamp.equals(stamp(path))) {
+            return true;
+        }
+        Configuration config;
+        try {
+            config = read(path);
+        } catch (RuntimeException excp) {
+            _failures.incrementAndGet();
+            return true;
+        }
+        if (!stamp.equals(stamp(path))) {
+            return true;
+        }
+        Version old = _versions.get(path);
+        _versions.put(path, new Version(config, old._number + 1));
+        _reloads.incrementAndGet();
+        return true;
+    }
+
+    /** Return a summary of the size, modification time and identity of
+     *  the file PATH, or null if it cannot be read. */
+    private static String stamp(Path path) {
+        try {
+            BasicFileAttributes attrs =
+                Files.readAttributes(path, BasicFileAttributes.class);
+            return attrs.size() + " " + attrs.lastModifiedTime() + " "
+                + attrs.fileKey();
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** Return the Configuration in the file PATH. */
+    private static Configuration read(Path path) {
+        try (Scanner in = Main.getInput(path.toString())) {
+            return Configuration.read(in);
+        }
+    }
+
+    /** One published version of a configuration file. */
+    private static class Version {
+        /** Version NUMBER, holding CONFIG. */
+        Version(Configuration config, long number) {
+            _config = config;
+            _number = number;
+        }
+
+        /** The configuration. */
+        private final Configuration _config;
+        /** Number of this version, from 1. */
+        private final long _number;
+    }
+
+    /** Current version of each loaded file, by absolute path. */
+    private final Map<Path, Version> _versions = new ConcurrentHashMap<>();
+    /** Directories registered with _watcher. */
+    private final Set<Path> _dirs = new HashSet<>();
+    /** Watcher of the files' directories. */
+    private final WatchService _watcher;
+    /** Thread running watch, or null. */
+    private Thread _thread;
+    /** Number of versions published by reloading. */
+    private final AtomicLong _reloads = new AtomicLong();
+    /** Number of reloads that failed. */
+    private final AtomicLong _failures = new AtomicLong();
+}
@@ -0,0 +1,134 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the ConfigRegistry class.
+ *  @author Flynn"TheFox"Gray
+ */
+public class ConfigRegistryTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Replace FILE by one containing TEXT, by renaming. */
+    private static void replace(Path file, String text) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".new");
+        Files.writeString(temp, text);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Wait until REGISTRY has published at least VERSION versions of
+     *  FILE. */
+    private static void await(ConfigRegistry registry, Path file,
+                              long version) throws InterruptedException {
+        while (registry.version(file) < version) {
+            Thread.sleep(10);
+        }
+    }
+
+    /** The test configuration with rotor II renamed to NAME. */
+    private static String renamed(String name) {
+        return NAVAL_CONFIG.replace(" II ME", " " + name + " ME");
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testReload() throws Exception {
+        Path file = Files.createTempDirectory("enigma-registry")
+            .resolve("enigma.conf");
+        Files.writeString(file, NAVAL_CONFIG);
+        ConfigRegistry registry = new ConfigRegistry();
+        Configuration first = registry.load(file);
+        assertSame(first, registry.get(file));
+        assertEquals(1, registry.version(file));
+        registry.start();
+        try {
+            Machine old = first.newMachine();
+            Main.setUp(old, "* B Beta I II III AAAA");
+
+            replace(file, renamed("Two"));
+            await(registry, file, 2);
+            Configuration second = registry.get(file);
+            assertNotSame(first, second);
+            Main.setUp(second.newMachine(), "* B Beta I Two III AAAA");
+            assertEquals("ILBDA", old.convert("HELLO"));
+
+            replace(file, "ABC\n 5");
+            replace(file, renamed("Deux"));
+            await(registry, file, 3);
+            Main.setUp(registry.get(file).newMachine(),
+                       "* B Beta I Deux III AAAA");
+            assertTrue(registry.stats().startsWith("config registry: 1 files"));
+        } finally {
+            registry.close();
+        }
+    }
+
+    @Test
+    public void testRewrittenInPlace() throws Exception {
+        Path file = Files.createTempDirectory("enigma-registry")
+            .resolve("enigma.conf");
+        Files.writeString(file, NAVAL_CONFIG);
+        ConfigRegistry registry = new ConfigRegistry();
+        registry.load(file);
+        registry.start();
+        try {
+            String full = renamed("Two");
+            Files.writeString(file, full.substring(0, full.indexOf(" IV ")));
+            Thread.sleep(ConfigRegistry.SETTLE_MILLIS / 5);
+            Files.writeString(file, full);
+            await(registry, file, 2);
+            Thread.sleep(3 * ConfigRegistry.SETTLE_MILLIS);
+            assertEquals(2, registry.version(file));
+            Main.setUp(registry.get(file).newMachine(),
+                       "* B Beta I Two III AAAA");
+        } finally {
+            registry.close();
+        }
+    }
+
+    @Test
+    public void testServerSwitchesAtSettingsLines() throws Exception {
+        Path file = Files.createTempDirectory("enigma-registry")
+            .resolve("enigma.conf");
+        Files.writeString(file, NAVAL_CONFIG);
+        ConfigRegistry registry = new ConfigRegistry();
+        registry.load(file);
+        registry.start();
+        try {
+            EnigmaServer.Session session =
+                new EnigmaServer.Session(() -> registry.get(file), null);
+            assertEquals("ILBDA\n", EnigmaServer.process(
+                             session, "* B Beta I II III AAAA\nHELLO"));
+            replace(file, renamed("Two"));
+            await(registry, file, 2);
+            assertNotEquals("ILBDA\n",
+                            EnigmaServer.process(session, "HELLO"));
+            try {
+                EnigmaServer.process(session, "* B Beta I II III AAAA");
+                fail("old rotor name accepted after reload");
+            } catch (EnigmaException excp) {
+                assertEquals("Bad rotor name", excp.getMessage());
+            }
+            assertEquals("ILBDA\n", EnigmaServer.process(
+                             session, "* B Beta I Two III AAAA\nHELLO"));
+        } finally {
+            registry.close();
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static enigma.EnigmaException.*;
+
+/** A machine configuration as read from a configuration file: the
+ *  alphabet, the numbers of rotor slots and pawls, and the description
+ *  of every available rotor.  A Configuration is immutable and may
+ *  build any number of independent machines.  The rotors' permutations
+ *  are built once, when the Configuration is made, and shared by all
+ *  its machines, and by every other Configuration with the same rotor
+ *  over the same alphabet: alphabets and permutations are interned
+ *  while any Configuration refers to them.
+ *  @author Flynn"TheFox"Gray
+ */
+class Configuration {
+
+    /** The alphabet line of a configuration over all byte values, in
+     *  which notches, cycles and settings write each character as two
+     *  hexadecimal digits. */
+    static final String BYTES = "0x00-0xff";
+
+    /** Pattern of the alphabet line of a configuration over an alphabet
+     *  made by Alphabet.hex, such as BYTES or "0x0000-0xffff". */
+    static final Pattern HEX_ALPHABET =
+        Pattern.compile("0x(0{1,4})-0x(f{1,4})");
+
+    /** The description of one available rotor. */
+    static class RotorSpec {
+        /** A rotor named NAME of kind TYPE ('M', 'N' or 'R') with
+         *  NOTCHES and permutation CYCLES. */
+        RotorSpec(String name, char type, String notches, String cycles) {
+            _name = name;
+            _type = type;
+            _notches = notches;
+            _cycles = cycles;
+        }
+
+        /** Return my name. */
+        String name() {
+            return _name;
+        }
+
+        /** Return my kind: 'M' (moving), 'N' (fixed) or anything else
+         *  (reflector). */
+        char type() {
+            return _type;
+        }
+
+        /** Return my notches. */
+        String notches() {
+            return _notches;
+        }
+
+        /** Return my permutation in cycle notation. */
+        String cycles() {
+            return _cycles;
+        }
+
+        /** Return my permutation over ALPHABET, with its tables built.
+         *  Equal cycles over the same ALPHABET give the same shared
+         *  Permutation for as long as something refers to it. */
+        Permutation permutation(Alphabet alphabet) {
+            return PERMUTATIONS.intern(
+                Arrays.asList(alphabet, _cycles.replaceAll("\\s", "")),
+                () -> {
+                    Permutation perm = new Permutation(_cycles, alphabet);
+                    perm.forwardTable();
+                    perm.inverseTable();
+                    return perm;
+                });
+        }
+
+        /** Return a new Rotor as I describe, over the alphabet of PERM,
+         *  which must be my permutation(). */
+        Rotor build(Permutation perm) {
+            if (_type == 'M') {
+                return new MovingRotor(_name, perm,
+                                       perm.alphabet().decode(_notches));
+            } else if (_type == 'N') {
+                return new FixedRotor(_name, perm);
+            } else {
+                return new Reflector(_name, perm);
+            }
+        }
+
+        /** Rotor name. */
+        private final String _name;
+        /** Rotor kind. */
+        private final char _type;
+        /** Notches. */
+        private final String _notches;
+        /** Cycles. */
+        private final String _cycles;
+    }
+
+    /** A configuration over ALPHABET with NUMROTORS slots, NUMPAWLS pawls
+     *  and the rotors described by ROTORS. */
+    Configuration(Alphabet alphabet, int numRotors, int numPawls,
+                  List<RotorSpec> rotors) {
+        _alphabet = alphabet;
+        _numRotors = numRotors;
+        _numPawls = numPawls;
+        _rotors = new ArrayList<>(rotors);
+        _permutations = new ArrayList<>();
+        for (RotorSpec spec : _rotors) {
+            _permutations.add(spec.permutation(alphabet));
+        }
+        _settings = new SettingsCache(SETTINGS_CACHE_LINES);
+        _engines = new EngineSelector();
+    }
+
+    /** Return the configuration read from CONFIG, in the format of a
+     *  configuration file.  An alphabet line matching HEX_ALPHABET, with
+     *  D digits on each side, stands for Alphabet.hex(D). */
+    static Configuration read(Scanner config) {
+        try {
+            String chars = config.nextLine();
+            Matcher hex = HEX_ALPHABET.matcher(chars.trim());
+            Alphabet alphabet;
+            if (hex.matches()
+                && hex.group(1).length() == hex.group(2).length()) {
+                int digits = hex.group(1).length();
+                alphabet = ALPHABETS.intern(Arrays.asList(digits, ""),
+                                            () -> Alphabet.hex(digits));
+            } else {
+                alphabet = ALPHABETS.intern(Arrays.asList(0, chars),
+                                            () -> new Alphabet(chars));
+            }
+            int numRotors = config.nextInt();
+            int numPawls = config.nextInt();
+            ArrayList<RotorSpec> rotors = new ArrayList<>();
+            while (config.hasNext()) {
+                rotors.add(readRotor(config));
+            }
+            return new Configuration(alphabet, numRotors, numPawls, rotors);
+        } catch (NoSuchElementException excp) {
+            throw error("configuration file truncated");
+        }
+    }
+
+    /** Return a rotor description, read from CONFIG. */
+    private static RotorSpec readRotor(Scanner config) {
+        try {
+            String name = config.next();
+            String typeAndNotches = config.next();
+            char rotorType = typeAndNotches.charAt(0);
+            String notches = typeAndNotches.substring(1);
+            StringBuilder permcycles = new StringBuilder();
+            while (config.hasNext("\\(.*\\)")) {
+                permcycles.append(config.next()).append(' ');
+            }
+            return new RotorSpec(name, rotorType, notches,
+                                 permcycles.toString());
+        } catch (NoSuchElementException excp) {
+            throw error("bad rotor description");
+        }
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number of pawls. */
+    int numPawls() {
+        return _numPawls;
+    }
+
+    /** Return the descriptions of the available rotors. */
+    List<RotorSpec> rotors() {
+        return _rotors;
+    }
+
+    /** Return the settings lines cache shared by my machines. */
+    SettingsCache settingsCache() {
+        return _settings;
+    }
+
+    /** Return the chooser of engines shared by my machines. */
+    EngineSelector engineSelector() {
+        return _engines;
+    }
+
+    /** Return a new machine as I describe, with rotors of its own, that
+     *  sets up settings lines through my settingsCache() and chooses
+     *  engines with my engineSelector(). */
+    Machine newMachine() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        for (int i = 0; i < _rotors.size(); i += 1) {
+            rotors.add(_rotors.get(i).build(_permutations.get(i)));
+        }
+        Machine result =
+            new Machine<>(_alphabet, _numRotors, _numPawls, rotors);
+        result.setSettingsCache(_settings);
+        result.setEngineSelector(_engines);
+        return result;
+    }
+
+    /** Alphabets read by read, keyed by their number of hexadecimal
+     *  digits and their characters (if not hexadecimal). */
+    private static final Interner<List<Object>, Alphabet> ALPHABETS =
+        new Interner<>();
+
+    /** Permutations of rotors, keyed by alphabet and cycles without
+     *  whitespace, shared by all Configurations (alphabets being
+     *  compared by identity, as those read by read are themselves
+     *  shared). */
+    private static final Interner<List<Object>, Permutation> PERMUTATIONS =
+        new Interner<>();
+
+    /** Most settings lines held by a settingsCache(). */
+    static final int SETTINGS_CACHE_LINES = 1024;
+
+    /** Alphabet. */
+    private final Alphabet _alphabet;
+    /** Number of rotor slots. */
+    private final int _numRotors;
+    /** Number of pawls. */
+    private final int _numPawls;
+    /** Available rotors. */
+    private final ArrayList<RotorSpec> _rotors;
+    /** The permutation of each of _rotors, shared by my machines. */
+    private final ArrayList<Permutation> _permutations;
+    /** Settings lines already checked for my machines. */
+    private final SettingsCache _settings;
+    /** Chooser of engines for my machines. */
+    private final EngineSelector _engines;
+}
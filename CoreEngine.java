@@ -0,0 +1,34 @@
+package enigma;
+
+/** An Engine that walks the tables of a RotorCore.
+ *  @author Flynn"TheFox"Gray
+ */
+class CoreEngine extends Engine {
+
+    /** An engine for CORE. */
+    CoreEngine(RotorCore core) {
+        _core = core;
+        _pos = new int[core.numRotors()];
+    }
+
+    @Override
+    void setPositions(int[] pos) {
+        System.arraycopy(pos, 0, _pos, 0, _pos.length);
+    }
+
+    @Override
+    void getPositions(int[] pos) {
+        System.arraycopy(_pos, 0, pos, 0, _pos.length);
+    }
+
+    @Override
+    int convert(int c) {
+        _core.step(_pos);
+        return _core.convert(c, _pos);
+    }
+
+    /** My compiled rotors. */
+    private final RotorCore _core;
+    /** My rotor settings. */
+    private final int[] _pos;
+}
@@ -0,0 +1,30 @@
+package enigma;
+
+/** The rotor stepping and substitution of a Machine, taken over from its
+ *  Rotor objects while in use.  An Engine keeps its own copy of the rotor
+ *  settings; the Machine copies them back to its rotors when needed.
+ *  Every Engine produces exactly the results of Machine's own rotor walk.
+ *  @author Flynn"TheFox"Gray
+ */
+abstract class Engine {
+
+    /** Set my rotor settings, from the reflector to the fast rotor, to
+     *  POS. */
+    abstract void setPositions(int[] pos);
+
+    /** Store my rotor settings, from the reflector to the fast rotor,
+     *  into POS. */
+    abstract void getPositions(int[] pos);
+
+    /** Advance my rotors and return the result of passing C (an index
+     *  into the alphabet) through them and back from the reflector. */
+    abstract int convert(int c);
+
+    /** Replace each of CHARS[FROM .. TO-1] by convert() of it, in order. */
+    void convert(int[] chars, int from, int to) {
+        for (int i = from; i < to; i += 1) {
+            chars[i] = convert(chars[i]);
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** The ways a Machine can convert characters, all with the same results.
+ *  @author Flynn"TheFox"Gray
+ */
+enum EngineKind {
+    /** Choose one of the others for each message (see EngineSelector). */
+    AUTO,
+    /** Walk the Rotor objects themselves, character by character. */
+    ROTORS,
+    /** Look up each step in a Keystream from the machine's
+     *  KeystreamCache, for alphabets of up to Keystream.MAX_SIZE. */
+    KEYSTREAM,
+    /** Step through the compiled tables of a RotorCore (CoreEngine). */
+    CORE,
+    /** Step through the single byte array of a CompactEngine, for
+     *  alphabets of up to CompactEngine.MAX_SIZE. */
+    COMPACT,
+    /** Run code generated for the rotors (SpecializedEngines), for
+     *  alphabets of up to SpecializedEngines.MAX_SIZE. */
+    SPECIALIZED;
+
+    /** Return the kind called NAME, its name in lower case. */
+    static EngineKind named(String name) {
+        for (EngineKind kind : values()) {
+            if (kind.toString().equals(name)) {
+                return kind;
+            }
+        }
+        throw error("no engine named %s", name);
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,121 @@
+package enigma;
+
+/** Chooses the EngineKind with which a Machine converts each message,
+ *  from the message's length, the machine's alphabet size, and the
+ *  throughput each kind has shown so far.
+ *
+ *  A message of fewer than TINY characters is walked through the
+ *  rotors unless compiling them has been or would be repaid, since
+ *  anything else first has to compile them, and is never given a
+ *  keystream, which computes MIN_CHUNK steps at a time.  Otherwise the
+ *  candidates are a CoreEngine, a CompactEngine (for alphabets of at
+ *  most CompactEngine.MAX_SIZE characters), a keystream (given a
+ *  KeystreamCache and an alphabet of at most Keystream.MAX_SIZE
+ *  characters) and generated code (for alphabets of at most
+ *  SpecializedEngines.MAX_SIZE characters, once code for the rotors has
+ *  been generated or the message reaches GENERATE characters, enough to
+ *  repay generating it).  Runs of at least MEASURED characters are
+ *  timed.  For such a run, a candidate not yet timed is tried first, and
+ *  after that the one with the best average throughput is chosen.
+ *  Shorter runs take the first candidate in the order generated code,
+ *  keystream, CoreEngine, since a CompactEngine costs more to start.
+ *
+ *  Throughputs are kept by kind only, so a selector is meant to be
+ *  shared by the machines of one Configuration.  Safe for use by
+ *  several machines at once.
+ *  @author Flynn"TheFox"Gray
+ */
+class EngineSelector {
+
+    /** Length of the shortest message not walked through the rotors. */
+    static final long TINY = 16;
+    /** Length of the shortest run that is timed. */
+    static final long MEASURED = 4096;
+    /** Length of the shortest message for which code is generated. */
+    static final long GENERATE = 1L << 24;
+
+    /** Return the kind of engine to convert a message of at least LENGTH
+     *  characters over an alphabet of SIZE characters.  KEYSTREAMS is
+     *  true iff the machine has a KeystreamCache, COMPILED iff its rotors
+     *  have been compiled into a RotorCore or have converted enough to
+     *  repay compiling them, and GENERATED iff code has been generated
+     *  for them. */
+    synchronized EngineKind choose(int size, boolean keystreams,
+                                   boolean compiled, boolean generated,
+                                   long length) {
+        if (length < TINY && !compiled) {
+            return EngineKind.ROTORS;
+        }
+        EngineKind[] candidates = new EngineKind[4];
+        int n = 0;
+        if (size <= SpecializedEngines.MAX_SIZE
+            && (generated || length >= GENERATE)) {
+            candidates[n++] = EngineKind.SPECIALIZED;
+        }
+        if (keystreams && size <= Keystream.MAX_SIZE && length >= TINY) {
+            candidates[n++] = EngineKind.KEYSTREAM;
+        }
+        candidates[n++] = EngineKind.CORE;
+        if (size <= CompactEngine.MAX_SIZE) {
+            candidates[n++] = EngineKind.COMPACT;
+        }
+        if (length < MEASURED) {
+            return candidates[0];
+        }
+        EngineKind best = null;
+        for (int i = 0; i < n; i += 1) {
+            EngineKind kind = candidates[i];
+            if (_runs[kind.ordinal()] == 0) {
+                return kind;
+            }
+            if (best == null || _nsPerChar[kind.ordinal()]
+                < _nsPerChar[best.ordinal()]) {
+                best = kind;
+            }
+        }
+        return best;
+    }
+
+    /** Record that KIND converted a run of CHARS characters in NANOS
+     *  nanoseconds.  Runs shorter than MEASURED are ignored. */
+    synchronized void record(EngineKind kind, long chars, long nanos) {
+        if (chars < MEASURED) {
+            return;
+        }
+        int k = kind.ordinal();
+        double nsPerChar = (double) nanos / chars;
+        _nsPerChar[k] = _runs[k] == 0 ? nsPerChar
+            : (1 - WEIGHT) * _nsPerChar[k] + WEIGHT * nsPerChar;
+        _runs[k] += 1;
+    }
+
+    /** Return the average throughput recorded for KIND in nanoseconds per
+     *  character, or 0 if none has been recorded. */
+    synchronized double nsPerChar(EngineKind kind) {
+        return _nsPerChar[kind.ordinal()];
+    }
+
+    /** Return a one-line summary of the throughputs recorded. */
+    synchronized String stats() {
+        StringBuilder result = new StringBuilder("engines:");
+        String sep = " ";
+        for (EngineKind kind : EngineKind.values()) {
+            if (_runs[kind.ordinal()] > 0) {
+                result.append(String.format("%s%s %d runs, %.1f ns/char",
+                                            sep, kind, _runs[kind.ordinal()],
+                                            _nsPerChar[kind.ordinal()]));
+                sep = "; ";
+            }
+        }
+        return sep.equals(" ") ? "engines: no runs timed"
+            : result.toString();
+    }
+
+    /** Weight of each new run in the average throughput of its kind. */
+    private static final double WEIGHT = 0.25;
+
+    /** Number of runs timed, by EngineKind ordinal. */
+    private final long[] _runs = new long[EngineKind.values().length];
+    /** Average nanoseconds per character, by EngineKind ordinal. */
+    private final double[] _nsPerChar = new double[_runs.length];
+}
@@ -0,0 +1,138 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.Scanner;
+
+/** The suite of all JUnit tests for the EngineSelector class.
+ *  @author Flynn"TheFox"Gray
+ */
+public class EngineSelectorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a machine of CONFIG converting with KIND, set up. */
+    private Machine machine(Configuration config, EngineKind kind) {
+        Machine result = config.newMachine();
+        result.setKeystreamCache(new KeystreamCache(1 << 20));
+        result.setEngine(kind);
+        Main.setUp(result, Benchmarks.settings(config.alphabet()));
+        return result;
+    }
+
+    /** Lengths of the pieces in which messages are converted. */
+    private static final int[] PIECES = { 1, 3, 15, 1, 40, 5000, 2, 9000 };
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSameAsRotors() {
+        for (int size : new int[] { 26, 256, 4096 }) {
+            Random random = new Random(size);
+            Configuration config = Configuration.read(new Scanner(
+                Benchmarks.randomConfiguration(size, random)));
+            int total = 0;
+            for (int n : PIECES) {
+                total += n;
+            }
+            int[] msg = new int[total];
+            for (int i = 0; i < total; i += 1) {
+                msg[i] = random.nextInt(size);
+            }
+            Machine plain = machine(config, EngineKind.ROTORS);
+            int[] expected = msg.clone();
+            plain.convert(expected, 0, total);
+            for (EngineKind kind : EngineKind.values()) {
+                Machine mach = machine(config, kind);
+                int[] chars = msg.clone();
+                int from = 0;
+                for (int n : PIECES) {
+                    if (n == 1) {
+                        chars[from] = mach.convert(chars[from]);
+                    } else {
+                        mach.convert(chars, from, from + n);
+                    }
+                    from += n;
+                }
+                assertArrayEquals(expected, chars);
+                assertArrayEquals(plain.positions(), mach.positions());
+            }
+        }
+    }
+
+    @Test
+    public void testChoices() {
+        EngineSelector selector = new EngineSelector();
+        long timed = EngineSelector.MEASURED;
+        assertEquals(EngineKind.ROTORS,
+                     selector.choose(26, true, false, false, 3));
+        assertEquals(EngineKind.CORE,
+                     selector.choose(26, true, true, false, 3));
+        assertEquals(EngineKind.KEYSTREAM,
+                     selector.choose(26, true, false, false, 100));
+        assertEquals(EngineKind.CORE,
+                     selector.choose(26, false, false, false, 100));
+        assertEquals(EngineKind.CORE,
+                     selector.choose(4096, true, false, false, 100));
+        assertEquals(EngineKind.SPECIALIZED,
+                     selector.choose(26, true, true, true, 100));
+        assertEquals(EngineKind.SPECIALIZED,
+                     selector.choose(26, true, false, false,
+                                     EngineSelector.GENERATE));
+
+        selector.record(EngineKind.KEYSTREAM, timed - 1, 1);
+        assertEquals(0.0, selector.nsPerChar(EngineKind.KEYSTREAM), 0.0);
+        selector.record(EngineKind.KEYSTREAM, timed, 10 * timed);
+        assertEquals(EngineKind.CORE,
+                     selector.choose(26, true, true, false, timed));
+        selector.record(EngineKind.CORE, timed, 20 * timed);
+        assertEquals(EngineKind.COMPACT,
+                     selector.choose(26, true, true, false, timed));
+        assertEquals(EngineKind.CORE,
+                     selector.choose(4096, true, true, false, timed));
+        selector.record(EngineKind.COMPACT, timed, 30 * timed);
+        assertEquals(EngineKind.KEYSTREAM,
+                     selector.choose(26, true, true, false, timed));
+        for (int i = 0; i < 10; i += 1) {
+            selector.record(EngineKind.CORE, timed, 5 * timed);
+        }
+        assertEquals(EngineKind.CORE,
+                     selector.choose(26, true, true, false, timed));
+        assertEquals(EngineKind.KEYSTREAM,
+                     selector.choose(26, true, true, false, 100));
+        assertTrue(selector.stats().startsWith("engines: keystream 1 runs"));
+    }
+
+    @Test
+    public void testMachineFollowsSelector() {
+        Configuration config = Configuration.read(new Scanner(
+            Benchmarks.randomConfiguration(26, new Random(1))));
+        long timed = EngineSelector.MEASURED;
+        config.engineSelector().record(EngineKind.KEYSTREAM, timed,
+                                       100 * timed);
+        config.engineSelector().record(EngineKind.CORE, timed, timed);
+        config.engineSelector().record(EngineKind.COMPACT, timed,
+                                       100 * timed);
+        Machine mach = machine(config, EngineKind.AUTO);
+        assertNull(mach.engineKind());
+        mach.convert(new int[5], 0, 5);
+        assertEquals(EngineKind.ROTORS, mach.engineKind());
+        mach.convert(new int[20], 0, 20);
+        assertEquals(EngineKind.KEYSTREAM, mach.engineKind());
+        mach.convert(new int[(int) timed], 0, (int) timed);
+        assertEquals(EngineKind.CORE, mach.engineKind());
+        assertNotNull(mach.engine());
+        Main.setUp(mach, Benchmarks.settings(config.alphabet()));
+        mach.convert(new int[5], 0, 5);
+        assertEquals(EngineKind.CORE, mach.engineKind());
+    }
+
+}
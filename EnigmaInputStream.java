@@ -0,0 +1,137 @@
+package enigma;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static enigma.EnigmaException.*;
+
+/** An InputStream that converts, with a Machine, the bytes read from
+ *  another InputStream.  Each byte stands for one ISO-8859-1 character,
+ *  so the machine's alphabet must lie within that character set.  Input
+ *  is read and converted in blocks of EnigmaReader.BLOCK bytes, and
+ *  bytes outside the alphabet are handled as in an EnigmaReader.
+ *  @author Flynn"TheFox"Gray
+ */
+class EnigmaInputStream extends FilterInputStream {
+
+    /** An InputStream converting the bytes of IN with MACHINE, treating
+     *  those outside its alphabet as POLICY directs. */
+    EnigmaInputStream(InputStream in, Machine machine,
+                      OutsideAlphabet policy) {
+        super(in);
+        checkBytes(machine.alphabet());
+        _machine = machine;
+        _policy = policy;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return _buf[_pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, _end - _pos);
+        System.arraycopy(_buf, _pos, b, off, n);
+        _pos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped;
+        for (skipped = 0; skipped < n && fill(); ) {
+            int k = (int) Math.min(n - skipped, _end - _pos);
+            _pos += k;
+            skipped += k;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return _end - _pos;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readLimit) {
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset not supported");
+    }
+
+    /** Make sure that converted bytes are waiting in _buf, reading and
+     *  converting another block if need be.  Return false iff the input
+     *  is exhausted. */
+    private boolean fill() throws IOException {
+        while (_pos == _end) {
+            int n = in.read(_buf, 0, _buf.length);
+            if (n < 0) {
+                return false;
+            }
+            _end = convert(_machine, _buf, _chars, n, _policy);
+            _pos = 0;
+        }
+        return true;
+    }
+
+    /** Convert the first N bytes of BYTES in place with MACHINE, by way
+     *  of CHARS, treating those outside its alphabet as POLICY directs.
+     *  Return the number of bytes left. */
+    static int convert(Machine machine, byte[] bytes, char[] chars, int n,
+                       OutsideAlphabet policy) throws IOException {
+        for (int i = 0; i < n; i += 1) {
+            chars[i] = (char) (bytes[i] & 0xff);
+        }
+        try {
+            n = machine.convert(chars, 0, n, policy);
+        } catch (EnigmaException excp) {
+            throw new IOException(excp.getMessage(), excp);
+        }
+        for (int i = 0; i < n; i += 1) {
+            bytes[i] = (byte) chars[i];
+        }
+        return n;
+    }
+
+    /** Check that every character of ALPHABET is a single byte in
+     *  ISO-8859-1. */
+    static void checkBytes(Alphabet alphabet) {
+        for (int i = 0; i < alphabet.size(); i += 1) {
+            if (alphabet.toChar(i) > 0xff) {
+                throw error("alphabet character '%c' is not a single byte",
+                            alphabet.toChar(i));
+            }
+        }
+    }
+
+    /** Machine converting my input. */
+    private final Machine _machine;
+    /** Treatment of bytes outside the alphabet. */
+    private final OutsideAlphabet _policy;
+    /** Converted bytes; those in _buf[_pos .. _end-1] are unread. */
+    private final byte[] _buf = new byte[EnigmaReader.BLOCK];
+    /** The characters of _buf while it is being converted. */
+    private final char[] _chars = new char[EnigmaReader.BLOCK];
+    /** Index of the next unread byte in _buf. */
+    private int _pos;
+    /** End of the converted bytes in _buf. */
+    private int _end;
+}
@@ -0,0 +1,87 @@
+package enigma;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** An OutputStream that converts, with a Machine, the bytes written to
+ *  it before passing them on to another OutputStream.  Bytes stand for
+ *  ISO-8859-1 characters as in an EnigmaInputStream, and are collected
+ *  and converted in blocks as in an EnigmaWriter.
+ *  @author Flynn"TheFox"Gray
+ */
+class EnigmaOutputStream extends FilterOutputStream {
+
+    /** An OutputStream converting bytes with MACHINE onto OUT, treating
+     *  those outside its alphabet as POLICY directs. */
+    EnigmaOutputStream(OutputStream out, Machine machine,
+                       OutsideAlphabet policy) {
+        super(out);
+        EnigmaInputStream.checkBytes(machine.alphabet());
+        _machine = machine;
+        _policy = policy;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (_end == _buf.length) {
+            drain();
+        }
+        _buf[_end++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (_end == _buf.length) {
+                drain();
+            }
+            int n = Math.min(len, _buf.length - _end);
+            System.arraycopy(b, off, _buf, _end, n);
+            _end += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!_closed) {
+            _closed = true;
+            try {
+                drain();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /** Convert the bytes pending in _buf and write them out. */
+    private void drain() throws IOException {
+        if (_end > 0) {
+            int n = _end;
+            _end = 0;
+            n = EnigmaInputStream.convert(_machine, _buf, _chars, n, _policy);
+            out.write(_buf, 0, n);
+        }
+    }
+
+    /** Machine converting my output. */
+    private final Machine _machine;
+    /** Treatment of bytes outside the alphabet. */
+    private final OutsideAlphabet _policy;
+    /** Bytes written but not yet converted: _buf[0 .. _end-1]. */
+    private final byte[] _buf = new byte[EnigmaReader.BLOCK];
+    /** The characters of _buf while it is being converted. */
+    private final char[] _chars = new char[EnigmaReader.BLOCK];
+    /** End of the pending bytes in _buf. */
+    private int _end;
+    /** True once I have been closed. */
+    private boolean _closed;
+}
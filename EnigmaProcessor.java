@@ -0,0 +1,280 @@
+package enigma;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static enigma.EnigmaException.*;
+
+/** A Flow.Processor converting, with a Machine, a stream of byte
+ *  chunks in the format of Main's input.  Each byte stands for one
+ *  ISO-8859-1 character, as in an EnigmaInputStream.  A line starting
+ *  with '*' is a settings line: it sets up the machine as in Main and
+ *  is not passed on.  Every other line is converted, with characters
+ *  outside the alphabet handled by an OutsideAlphabet policy, and
+ *  newlines passed on as they are.  Unless the stream starts with a
+ *  settings line, the machine must already be set up.
+ *
+ *  Input is requested one chunk at a time, and only while the
+ *  subscriber has demand that the converted chunks waiting to be
+ *  delivered cannot meet, so at most one input chunk's worth of output
+ *  is held however slowly the subscriber consumes.  Output chunks hold
+ *  at most BLOCK bytes each and are taken from a pool; a subscriber
+ *  done with one may hand it back with release.
+ *  @author Flynn"TheFox"Gray
+ */
+class EnigmaProcessor implements Flow.Processor<ByteBuffer, ByteBuffer> {
+
+    /** Capacity of each output chunk, in bytes. */
+    static final int BLOCK = EnigmaReader.BLOCK;
+    /** Most released chunks kept for reuse. */
+    static final int POOL = 16;
+
+    /** A processor converting with MACHINE, treating characters outside
+     *  its alphabet as POLICY directs. */
+    EnigmaProcessor(Machine machine, OutsideAlphabet policy) {
+        EnigmaInputStream.checkBytes(machine.alphabet());
+        _machine = machine;
+        _policy = policy;
+    }
+
+    /** Return CHUNK, an output chunk the subscriber is done with, to the
+     *  pool of output chunks. */
+    void release(ByteBuffer chunk) {
+        if (chunk.capacity() == BLOCK) {
+            _pool.offer(chunk.clear());
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        boolean first;
+        synchronized (this) {
+            first = !_subscribed;
+            _subscribed = true;
+        }
+        if (first) {
+            subscriber.onSubscribe(new Downstream());
+            _downstream = subscriber;
+            drain();
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        subscriber.onError(new IllegalStateException("already subscribed"));
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (_upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        _upstream = subscription;
+        drain();
+    }
+
+    @Override
+    public void onNext(ByteBuffer chunk) {
+        if (!_done) {
+            try {
+                convert(chunk);
+            } catch (RuntimeException excp) {
+                _upstream.cancel();
+                _error = excp;
+                _done = true;
+            }
+        }
+        _requested = false;
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        _error = error;
+        _done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        _done = true;
+        drain();
+    }
+
+    /** Convert the remaining bytes of CHUNK into _pending. */
+    private void convert(ByteBuffer chunk) {
+        while (chunk.hasRemaining()) {
+            if (_settings != null) {
+                byte b = chunk.get();
+                if (b == '\n') {
+                    Main.setUp(_machine, _settings.toString());
+                    _settings = null;
+                } else if (_settings.length() == BLOCK) {
+                    throw error("settings line too long");
+                } else {
+                    _settings.append((char) (b & 0xff));
+                }
+            } else if (_lineStart && chunk.get(chunk.position()) == '*') {
+                _settings = new StringBuilder();
+            } else {
+                int n;
+                boolean newline = false;
+                for (n = 0; n < BLOCK && chunk.hasRemaining(); n += 1) {
+                    byte b = chunk.get();
+                    if (b == '\n') {
+                        newline = true;
+                        break;
+                    }
+                    _chars[n] = (char) (b & 0xff);
+                }
+                n = _machine.convert(_chars, 0, n, _policy);
+                for (int i = 0; i < n; i += 1) {
+                    put((byte) _chars[i]);
+                }
+                if (newline) {
+                    put((byte) '\n');
+                }
+                _lineStart = newline;
+            }
+        }
+        if (_output != null && _output.position() > 0) {
+            _pending.offer(_output.flip());
+            _output = null;
+        }
+    }
+
+    /** Append B to the output, queueing the current output chunk on
+     *  _pending when it is full. */
+    private void put(byte b) {
+        if (_output == null) {
+            _output = _pool.poll();
+            if (_output == null) {
+                _output = ByteBuffer.allocate(BLOCK);
+            }
+        }
+        _output.put(b);
+        if (!_output.hasRemaining()) {
+            _pending.offer(_output.flip());
+            _output = null;
+        }
+    }
+
+    /** Deliver what the subscriber has asked for and can be given, ask
+     *  for more input if that is not enough, and finish the stream once
+     *  everything has been delivered.  Only one thread at a time does
+     *  this work; calls that arrive meanwhile make it go around again. */
+    private void drain() {
+        if (_wip.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            Flow.Subscriber<? super ByteBuffer> downstream = _downstream;
+            if (downstream == null || _terminated) {
+                continue;
+            }
+            if (_cancelled) {
+                _pending.clear();
+                continue;
+            }
+            while (_demand.get() > 0 && !_pending.isEmpty()) {
+                _demand.decrementAndGet();
+                downstream.onNext(_pending.poll());
+            }
+            if (!_pending.isEmpty()) {
+                continue;
+            }
+            if (_done) {
+                _terminated = true;
+                if (_error != null) {
+                    downstream.onError(_error);
+                } else {
+                    downstream.onComplete();
+                }
+            } else if (_demand.get() > 0 && !_requested
+                       && _upstream != null) {
+                _requested = true;
+                _upstream.request(1);
+            }
+        } while (_wip.decrementAndGet() != 0);
+    }
+
+    /** My subscriber's handle on me. */
+    private class Downstream implements Flow.Subscription {
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                if (_upstream != null) {
+                    _upstream.cancel();
+                }
+                _error = new IllegalArgumentException("non-positive request");
+                _done = true;
+                _pending.clear();
+            } else {
+                _demand.getAndAccumulate(n, (d, k) ->
+                                         d + k < 0 ? Long.MAX_VALUE : d + k);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            _cancelled = true;
+            if (_upstream != null) {
+                _upstream.cancel();
+            }
+            drain();
+        }
+    }
+
+    /** Machine converting my input. */
+    private final Machine _machine;
+    /** Treatment of characters outside the alphabet. */
+    private final OutsideAlphabet _policy;
+    /** Characters of the line segment being converted. */
+    private final char[] _chars = new char[BLOCK];
+    /** Released output chunks. */
+    private final ArrayBlockingQueue<ByteBuffer> _pool =
+        new ArrayBlockingQueue<>(POOL);
+    /** Converted chunks not yet delivered. */
+    private final ConcurrentLinkedQueue<ByteBuffer> _pending =
+        new ConcurrentLinkedQueue<>();
+    /** Output chunk being filled, or null. */
+    private ByteBuffer _output;
+    /** The settings line being read, or null outside one. */
+    private StringBuilder _settings;
+    /** True iff the next input byte starts a line. */
+    private boolean _lineStart = true;
+
+    /** Where my input comes from. */
+    private volatile Flow.Subscription _upstream;
+    /** True once a subscriber has claimed my output; guarded by this. */
+    private boolean _subscribed;
+    /** Where my output goes, set once my subscriber has been given its
+     *  subscription. */
+    private volatile Flow.Subscriber<? super ByteBuffer> _downstream;
+    /** Chunks my subscriber has asked for and not yet received. */
+    private final AtomicLong _demand = new AtomicLong();
+    /** True iff an input chunk has been requested and not yet received. */
+    private volatile boolean _requested;
+    /** True once my input has ended or failed. */
+    private volatile boolean _done;
+    /** Why my input failed, or null. */
+    private volatile Throwable _error;
+    /** True once my subscriber has cancelled. */
+    private volatile boolean _cancelled;
+    /** True once my subscriber has been told the stream is over. */
+    private boolean _terminated;
+    /** Number of calls of drain in progress or pending. */
+    private final AtomicInteger _wip = new AtomicInteger();
+}
@@ -0,0 +1,164 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the EnigmaProcessor class.
+ *  @author Flynn"TheFox"Gray
+ */
+public class EnigmaProcessorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A subscriber that asks for one chunk at a time, collecting the
+     *  text of each and handing it back to its processor. */
+    private static class Collector implements Flow.Subscriber<ByteBuffer> {
+        /** A collector of the output of PROCESSOR. */
+        Collector(EnigmaProcessor processor) {
+            _processor = processor;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            _subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(ByteBuffer chunk) {
+            assertTrue(chunk.remaining() <= EnigmaProcessor.BLOCK);
+            _text.append(StandardCharsets.ISO_8859_1.decode(chunk));
+            _processor.release(chunk);
+            _subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            _result.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            _result.complete(_text.toString());
+        }
+
+        /** Processor whose output I collect. */
+        private final EnigmaProcessor _processor;
+        /** Text received so far. */
+        private final StringBuilder _text = new StringBuilder();
+        /** The whole text, once complete. */
+        private final CompletableFuture<String> _result =
+            new CompletableFuture<>();
+        /** My subscription. */
+        private Flow.Subscription _subscription;
+    }
+
+    /** Return the output of a processor over a fresh machine given the
+     *  text of CHUNKS, one chunk each. */
+    private static String run(String... chunks) throws Exception {
+        Machine machine =
+            Configuration.read(new Scanner(NAVAL_CONFIG))
+            .newMachine();
+        EnigmaProcessor processor =
+            new EnigmaProcessor(machine, OutsideAlphabet.PASS);
+        Collector collector = new Collector(processor);
+        processor.subscribe(collector);
+        try (SubmissionPublisher<ByteBuffer> publisher =
+             new SubmissionPublisher<>()) {
+            publisher.subscribe(processor);
+            for (String chunk : chunks) {
+                publisher.submit(ByteBuffer.wrap(
+                    chunk.getBytes(StandardCharsets.ISO_8859_1)));
+            }
+        }
+        return collector._result.get();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSettingsLines() throws Exception {
+        assertEquals("IHBDQ QMTQZ\nHELLO WORLD\n",
+                     run("* B Beta I II III AAAA (AQ) (EP)\n"
+                         + "HELLO WORLD\n"
+                         + "* B Beta I II III AAAA (AQ) (EP)\n"
+                         + "IHBDQ QMTQZ\n"));
+    }
+
+    @Test
+    public void testSplitChunks() throws Exception {
+        assertEquals("IHBDQ QMTQZ\nHELLO WORLD\n",
+                     run("* B Beta I II ", "III AAAA (AQ) (EP)\nHEL",
+                         "LO WORLD\n*", " B Beta I II III AAAA (AQ) (EP)\n",
+                         "IHBDQ", " QMTQZ\n"));
+    }
+
+    @Test
+    public void testLongLines() throws Exception {
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 3 * EnigmaProcessor.BLOCK; i += 1) {
+            msg.append((char) ('A' + i % 26));
+        }
+        String settings = "* B Beta I II III AAAA (AQ) (EP)\n";
+        String cipher = run(settings + msg + "\n");
+        assertEquals(msg.length() + 1, cipher.length());
+        assertEquals(msg + "\n", run(settings + cipher));
+    }
+
+    @Test
+    public void testBadSettings() throws Exception {
+        try {
+            run("* B Beta I II XX AAAA\nHELLO\n");
+            fail("expected the stream to fail");
+        } catch (ExecutionException excp) {
+            assertTrue(excp.getCause() instanceof EnigmaException);
+        }
+    }
+
+    @Test
+    public void testTruncatedSettings() throws Exception {
+        Machine machine =
+            Configuration.read(new Scanner(NAVAL_CONFIG))
+            .newMachine();
+        EnigmaProcessor processor =
+            new EnigmaProcessor(machine, OutsideAlphabet.PASS);
+        Collector collector = new Collector(processor);
+        processor.subscribe(collector);
+        boolean[] cancelled = { false };
+        processor.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+                cancelled[0] = true;
+            }
+        });
+        processor.onNext(ByteBuffer.wrap(
+            "* B Beta\nHELLO\n".getBytes(StandardCharsets.ISO_8859_1)));
+        assertTrue(cancelled[0]);
+        try {
+            collector._result.get();
+            fail("expected the stream to fail");
+        } catch (ExecutionException excp) {
+            assertTrue(excp.getCause() instanceof RuntimeException);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package enigma;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/** A Reader that converts, with a Machine, the characters read from
+ *  another Reader.  Input is read and converted in blocks of BLOCK
+ *  characters; characters outside the machine's alphabet are handled by
+ *  an OutsideAlphabet policy, and under OutsideAlphabet.ERROR are
+ *  reported as an IOException.
+ *  @author Flynn"TheFox"Gray
+ */
+class EnigmaReader extends FilterReader {
+
+    /** Number of characters read and converted at a time. */
+    static final int BLOCK = 8192;
+
+    /** A Reader converting the characters of IN with MACHINE, treating
+     *  those outside its alphabet as POLICY directs. */
+    EnigmaReader(Reader in, Machine machine, OutsideAlphabet policy) {
+        super(in);
+        _machine = machine;
+        _policy = policy;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return _buf[_pos++];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, _end - _pos);
+        System.arraycopy(_buf, _pos, cbuf, off, n);
+        _pos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped;
+        for (skipped = 0; skipped < n && fill(); ) {
+            int k = (int) Math.min(n - skipped, _end - _pos);
+            _pos += k;
+            skipped += k;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return _pos < _end || in.ready();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+        throw new IOException("mark not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset not supported");
+    }
+
+    /** Make sure that converted characters are waiting in _buf, reading
+     *  and converting another block if need be.  Return false iff the
+     *  input is exhausted. */
+    private boolean fill() throws IOException {
+        while (_pos == _end) {
+            int n = in.read(_buf, 0, BLOCK);
+            if (n < 0) {
+                return false;
+            }
+            try {
+                _end = _machine.convert(_buf, 0, n, _policy);
+            } catch (EnigmaException excp) {
+                throw new IOException(excp.getMessage(), excp);
+            }
+            _pos = 0;
+        }
+        return true;
+    }
+
+    /** Machine converting my input. */
+    private final Machine _machine;
+    /** Treatment of characters outside the alphabet. */
+    private final OutsideAlphabet _policy;
+    /** Converted characters; those in _buf[_pos .. _end-1] are unread. */
+    private final char[] _buf = new char[BLOCK];
+    /** Index of the next unread character in _buf. */
+    private int _pos;
+    /** End of the converted characters in _buf. */
+    private int _end;
+}
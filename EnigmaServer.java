@@ -0,0 +1,443 @@
+package enigma;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static enigma.EnigmaException.*;
+
+/** A long-running converter serving clients over a Unix domain socket,
+ *  so that one JVM with one parsed Configuration (and one warm
+ *  KeystreamCache) replaces a process per job.
+ *
+ *  Clients exchange frames, each a 4-byte big-endian length followed by
+ *  that many bytes.  A request frame holds UTF-8 text in the format of
+ *  Main's input: settings ("*") lines and message lines.  Each request
+ *  gets one response frame: a status byte (OK or FAILED) followed by the
+ *  UTF-8 output Main would print for the request, or an error message.
+ *  Every connection has a machine of its own, whose settings carry over
+ *  from one request to the next as they do from line to line in Main.
+ *  The configuration may change while the server runs (see
+ *  ConfigRegistry); a connection moves to the current configuration,
+ *  with a new machine, at its next settings line, so that messages
+ *  already under way finish with the configuration they began with.
+ *  One thread multiplexes all connections with a Selector, reading
+ *  request frames as their bytes arrive and writing responses as the
+ *  clients take them; each complete request is processed as a task of
+ *  its own by a fixed pool of threads with a bounded queue, so that a
+ *  worker is taken only while a request is being converted, never by a
+ *  connection that is merely open.  A request arriving when the queue
+ *  is full is answered with a FAILED frame.
+ *  @author Flynn"TheFox"Gray
+ */
+class EnigmaServer {
+
+    /** Status byte of a successful response. */
+    static final byte OK = 0;
+    /** Status byte of a failed response. */
+    static final byte FAILED = 1;
+    /** Largest frame accepted, in bytes. */
+    static final int MAX_FRAME = 16 << 20;
+
+    /** A server for machines built from CONFIG listening on SOCKET, with
+     *  WORKERS threads and room for QUEUE waiting requests. */
+    EnigmaServer(Configuration config, Path socket, int workers, int queue) {
+        this(() -> config, socket, workers, queue);
+    }
+
+    /** A server for machines built from the configuration CONFIGS
+     *  supplies at each settings line, listening on SOCKET, with WORKERS
+     *  threads and room for QUEUE waiting requests. */
+    EnigmaServer(Supplier<Configuration> configs, Path socket, int workers,
+                 int queue) {
+        _configs = configs;
+        _socket = socket;
+        _workers = new ThreadPoolExecutor(workers, workers, 0,
+                                          TimeUnit.MILLISECONDS,
+                                          new ArrayBlockingQueue<>(queue));
+        _keystreams = new KeystreamCache(Main.KEYSTREAM_CACHE_BYTES);
+    }
+
+    /** Bind my socket and start accepting connections in the
+     *  background. */
+    void start() {
+        try {
+            Files.deleteIfExists(_socket);
+            _server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            _server.bind(UnixDomainSocketAddress.of(_socket));
+            _server.configureBlocking(false);
+            _selector = Selector.open();
+            _server.register(_selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException excp) {
+            throw error("could not listen on %s", _socket);
+        }
+        _acceptor = new Thread(this::selectLoop, "enigma-server");
+        _acceptor.start();
+    }
+
+    /** Wait until I am closed. */
+    void await() throws InterruptedException {
+        _acceptor.join();
+    }
+
+    /** Stop accepting connections and requests, answer the requests in
+     *  progress, close every connection, and remove my socket. */
+    void close() {
+        try {
+            _server.close();
+            _selector.wakeup();
+            _acceptor.join();
+            _workers.shutdown();
+            _workers.awaitTermination(1, TimeUnit.MINUTES);
+            Files.deleteIfExists(_socket);
+        } catch (IOException | InterruptedException excp) {
+            throw error("could not close server on %s", _socket);
+        }
+    }
+
+    /** Return the keystream cache shared by my clients' machines. */
+    KeystreamCache keystreams() {
+        return _keystreams;
+    }
+
+    /** Accept connections, read their requests, hand each to _workers,
+     *  and write the responses, until _server is closed and no request is
+     *  in progress.  Then close every connection. */
+    private void selectLoop() {
+        try {
+            while (_server.isOpen() || _busy > 0) {
+                _selector.select();
+                Connection answered;
+                while ((answered = _answered.poll()) != null) {
+                    answered._key.interestOps(SelectionKey.OP_WRITE);
+                }
+                Iterator<SelectionKey> keys =
+                    _selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    } else if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        ready((Connection) key.attachment());
+                    }
+                }
+                if (!_server.isOpen()) {
+                    for (SelectionKey key : _selector.keys()) {
+                        if (key.isValid()
+                            && key.interestOps() == SelectionKey.OP_READ) {
+                            key.interestOps(0);
+                        }
+                    }
+                }
+            }
+        } catch (IOException excp) {
+            close(_server);
+        }
+        for (SelectionKey key : _selector.keys()) {
+            close(key.channel());
+        }
+        close(_selector);
+    }
+
+    /** Close RESOURCE, ignoring any error. */
+    private static void close(Closeable resource) {
+        try {
+            resource.close();
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Accept a pending connection, if any, and start reading its
+     *  requests. */
+    private void accept() throws IOException {
+        SocketChannel client = _server.accept();
+        if (client == null) {
+            return;
+        }
+        client.configureBlocking(false);
+        Connection conn = new Connection(client,
+                                         new Session(_configs, _keystreams));
+        conn._key = client.register(_selector, SelectionKey.OP_READ, conn);
+    }
+
+    /** Read from or write to CONN, which its key says is ready, closing
+     *  it if it ends or sends a bad frame. */
+    private void ready(Connection conn) {
+        try {
+            if (conn._key.isReadable()) {
+                String request = conn.read();
+                if (request != null) {
+                    submit(conn, request);
+                }
+            } else if (conn._key.isWritable() && conn.write()) {
+                _busy -= 1;
+                conn._key.interestOps(_server.isOpen()
+                                      ? SelectionKey.OP_READ : 0);
+            }
+        } catch (IOException | EnigmaException excp) {
+            if (conn._response != null) {
+                _busy -= 1;
+            }
+            conn._key.cancel();
+            close(conn._channel);
+        }
+    }
+
+    /** Stop reading from CONN, and have _workers answer REQUEST, its
+     *  latest, or answer it at once that the server is busy. */
+    private void submit(Connection conn, String request) {
+        conn._key.interestOps(0);
+        _busy += 1;
+        try {
+            _workers.execute(() -> answer(conn, request));
+        } catch (RejectedExecutionException excp) {
+            conn.respond(FAILED, "server busy");
+            conn._key.interestOps(SelectionKey.OP_WRITE);
+        }
+    }
+
+    /** Process REQUEST, from CONN, and queue the response for writing. */
+    private void answer(Connection conn, String request) {
+        try {
+            conn.respond(OK, process(conn._session, request));
+        } catch (EnigmaException excp) {
+            conn.respond(FAILED, excp.getMessage());
+        } catch (RuntimeException excp) {
+            conn.respond(FAILED, "bad message: " + excp);
+        }
+        _answered.add(conn);
+        _selector.wakeup();
+    }
+
+    /** A client's connection: its channel, its Session, and the frames
+     *  being read from and written to it.  Used by one thread at a time:
+     *  the selecting thread, except while a worker answers a request. */
+    private static class Connection {
+        /** A connection over CHANNEL with SESSION. */
+        Connection(SocketChannel channel, Session session) {
+            _channel = channel;
+            _session = session;
+        }
+
+        /** Read what is available of the current request frame.  Return
+         *  its text if it is now complete, and otherwise null.  Throws an
+         *  IOException if the client has closed its connection. */
+        String read() throws IOException {
+            if (_body == null) {
+                if (_channel.read(_header) < 0) {
+                    throw new EOFException();
+                }
+                if (_header.hasRemaining()) {
+                    return null;
+                }
+                int length = _header.getInt(0);
+                if (length < 0 || length > MAX_FRAME) {
+                    throw error("bad frame length %d", length);
+                }
+                _body = ByteBuffer.allocate(length);
+            }
+            if (_body.hasRemaining() && _channel.read(_body) < 0) {
+                throw new EOFException();
+            }
+            if (_body.hasRemaining()) {
+                return null;
+            }
+            String request = new String(_body.array(),
+                                        StandardCharsets.UTF_8);
+            _header.clear();
+            _body = null;
+            return request;
+        }
+
+        /** Make the response frame with STATUS and TEXT the one to
+         *  write. */
+        void respond(byte status, String text) {
+            _response = frame(status, text);
+        }
+
+        /** Write what the client will take of the response.  Return true
+         *  iff it has all been written. */
+        boolean write() throws IOException {
+            _channel.write(_response);
+            if (_response.hasRemaining()) {
+                return false;
+            }
+            _response = null;
+            return true;
+        }
+
+        /** The channel. */
+        private final SocketChannel _channel;
+        /** The machine state of the connection. */
+        private final Session _session;
+        /** My key with the selector. */
+        private SelectionKey _key;
+        /** Length of the request frame being read. */
+        private final ByteBuffer _header = ByteBuffer.allocate(4);
+        /** Body of the request frame being read, or null while its
+         *  length is. */
+        private ByteBuffer _body;
+        /** The response frame being written, or null. */
+        private ByteBuffer _response;
+    }
+
+    /** The state of one connection. */
+    static class Session {
+        /** A session whose machines are built from the configurations
+         *  CONFIGS supplies and take keystreams from KEYSTREAMS. */
+        Session(Supplier<Configuration> configs, KeystreamCache keystreams) {
+            _configs = configs;
+            _keystreams = keystreams;
+        }
+
+        /** Source of configurations. */
+        private final Supplier<Configuration> _configs;
+        /** Keystreams shared with other sessions. */
+        private final KeystreamCache _keystreams;
+        /** Configuration of _machine, or null. */
+        private Configuration _config;
+        /** My machine, or null before the first settings line. */
+        private Machine _machine;
+    }
+
+    /** Return the output of the machine of SESSION for the lines of
+     *  REQUEST, as Main would print it, updating SESSION. */
+    static String process(Session session, String request) {
+        StringBuilder output = new StringBuilder();
+        for (String line : request.split("\r?\n")) {
+            if (line.startsWith("*")) {
+                Configuration config = session._configs.get();
+                if (config != session._config) {
+                    Machine machine = config.newMachine();
+                    machine.setKeystreamCache(session._keystreams);
+                    Main.setUp(machine, line);
+                    session._config = config;
+                    session._machine = machine;
+                } else {
+                    Main.setUp(session._machine, line);
+                }
+            } else if (session._machine == null) {
+                throw error("No config");
+            } else {
+                output.append(Main.groupsOfFive(
+                    session._machine.convert(line.replaceAll(" ", ""))));
+                output.append('\n');
+            }
+        }
+        return output.toString();
+    }
+
+    /** Return the next frame read from CHANNEL as text, or null at end of
+     *  input. */
+    static String readFrame(SocketChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        if (!fill(channel, header)) {
+            return null;
+        }
+        int length = header.getInt(0);
+        if (length < 0 || length > MAX_FRAME) {
+            throw error("bad frame length %d", length);
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        if (!fill(channel, body)) {
+            throw error("connection closed inside a frame");
+        }
+        return new String(body.array(), StandardCharsets.UTF_8);
+    }
+
+    /** Read from CHANNEL until BUF is full.  Return false if the input
+     *  ends first. */
+    private static boolean fill(SocketChannel channel, ByteBuffer buf)
+        throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Write to CHANNEL a response frame with STATUS and TEXT. */
+    static void writeFrame(SocketChannel channel, byte status, String text)
+        throws IOException {
+        ByteBuffer frame = frame(status, text);
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    /** Return a response frame with STATUS and TEXT, ready to write. */
+    private static ByteBuffer frame(byte status, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(5 + bytes.length);
+        frame.putInt(1 + bytes.length).put(status).put(bytes).flip();
+        return frame;
+    }
+
+    /** Send REQUEST over CHANNEL, a connection to an EnigmaServer, and
+     *  return the output it answers with.  Throws an EnigmaException
+     *  carrying the server's message if the request fails. */
+    static String request(SocketChannel channel, String request)
+        throws IOException {
+        byte[] bytes = request.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(4 + bytes.length);
+        frame.putInt(bytes.length).put(bytes).flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+        String response = readFrame(channel);
+        if (response == null || response.isEmpty()) {
+            throw error("no response from server");
+        } else if (response.charAt(0) != OK) {
+            throw error(response.substring(1));
+        }
+        return response.substring(1);
+    }
+
+    /** Return a connection to the server listening on SOCKET. */
+    static SocketChannel connect(Path socket) throws IOException {
+        return SocketChannel.open(UnixDomainSocketAddress.of(socket));
+    }
+
+    /** Source of the configuration of clients' machines. */
+    private final Supplier<Configuration> _configs;
+    /** Path of my socket. */
+    private final Path _socket;
+    /** Threads serving connections. */
+    private final ThreadPoolExecutor _workers;
+    /** Keystreams shared by all machines. */
+    private final KeystreamCache _keystreams;
+    /** Listening channel. */
+    private ServerSocketChannel _server;
+    /** Selector of _server and every connection. */
+    private Selector _selector;
+    /** Thread running the selector. */
+    private Thread _acceptor;
+    /** Connections whose responses are ready to be written. */
+    private final ConcurrentLinkedQueue<Connection> _answered =
+        new ConcurrentLinkedQueue<>();
+    /** Number of connections with a request not yet fully answered;
+     *  used only by _acceptor. */
+    private int _busy;
+}
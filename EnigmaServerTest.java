@@ -0,0 +1,104 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Scanner;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the EnigmaServer class.
+ *  @author Flynn"TheFox"Gray
+ */
+public class EnigmaServerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRequests() throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("enigma-server");
+        Path socket = dir.resolve("enigma.sock");
+        EnigmaServer server =
+            new EnigmaServer(Configuration.read(new Scanner(NAVAL_CONFIG)),
+                             socket, 2, 4);
+        server.start();
+        try (SocketChannel a = EnigmaServer.connect(socket);
+             SocketChannel b = EnigmaServer.connect(socket)) {
+            assertEquals("IHBDQ QMTQZ\n",
+                         EnigmaServer.request(a, "* B Beta I II III AAAA "
+                                              + "(AQ) (EP)\nHELLO WORLD"));
+            assertEquals("HELLO WORLD\n",
+                         EnigmaServer.request(b, "* B Beta I II III AAAA "
+                                              + "(AQ) (EP)\nIHBDQ QMTQZ\n"));
+            String second = EnigmaServer.request(a, "HELLO WORLD");
+            assertNotEquals("IHBDQ QMTQZ\n", second);
+            assertEquals("HELLO WORLD\n",
+                         EnigmaServer.request(b, second));
+            assertEquals("IHBDQ QMTQZ\nIHBDQ QMTQZ\n",
+                         EnigmaServer.request(a, "* B Beta I II III AAAA "
+                                              + "(AQ) (EP)\r\nHELLO WORLD"
+                                              + "\r\n* B Beta I II III "
+                                              + "AAAA (AQ) (EP)\r\n"
+                                              + "HELLO WORLD\r\n"));
+        }
+        try (SocketChannel c = EnigmaServer.connect(socket)) {
+            EnigmaServer.request(c, "HELLO");
+            fail("no error for a message without settings");
+        } catch (EnigmaException excp) {
+            assertEquals("No config", excp.getMessage());
+        }
+        server.close();
+        assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    public void testMoreConnectionsThanWorkers() throws IOException {
+        Path dir = Files.createTempDirectory("enigma-server");
+        Path socket = dir.resolve("enigma.sock");
+        EnigmaServer server =
+            new EnigmaServer(Configuration.read(new Scanner(NAVAL_CONFIG)),
+                             socket, 1, 1);
+        server.start();
+        SocketChannel[] clients = new SocketChannel[8];
+        try {
+            for (int i = 0; i < clients.length; i += 1) {
+                clients[i] = EnigmaServer.connect(socket);
+            }
+            ByteBuffer partial = ByteBuffer.allocate(6);
+            partial.putInt(100).put((byte) '*').put((byte) ' ').flip();
+            clients[0].write(partial);
+            for (int i = 1; i < clients.length; i += 1) {
+                assertEquals("IHBDQ QMTQZ\n",
+                             EnigmaServer.request(clients[i],
+                                                  "* B Beta I II III AAAA "
+                                                  + "(AQ) (EP)\nHELLO WORLD"));
+            }
+            for (int i = clients.length - 1; i >= 1; i -= 1) {
+                assertEquals("HELLO WORLD\n",
+                             EnigmaServer.request(clients[i],
+                                                  "* B Beta I II III AAAA "
+                                                  + "(AQ) (EP)\n"
+                                                  + "IHBDQ QMTQZ"));
+            }
+        } finally {
+            for (SocketChannel client : clients) {
+                if (client != null) {
+                    client.close();
+                }
+            }
+            server.close();
+        }
+        assertFalse(Files.exists(socket));
+    }
+}
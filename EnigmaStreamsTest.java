@@ -0,0 +1,127 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for EnigmaReader, EnigmaWriter,
+ *  EnigmaInputStream and EnigmaOutputStream.
+ *  @author Flynn"TheFox"Gray
+ */
+public class EnigmaStreamsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a machine set up for the tests. */
+    private static Machine machine() {
+        Machine machine =
+            Configuration.read(new Scanner(NAVAL_CONFIG))
+            .newMachine();
+        Main.setUp(machine, "* B Beta I II III AAAA (AQ) (EP)".split(" "));
+        return machine;
+    }
+
+    /** Return the text read from R. */
+    private static String readAll(Reader r) throws IOException {
+        StringBuilder result = new StringBuilder();
+        int c;
+        while ((c = r.read()) >= 0) {
+            result.append((char) c);
+        }
+        return result.toString();
+    }
+
+    /** A message longer than several blocks. */
+    private static final String LONG;
+    static {
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 3 * EnigmaReader.BLOCK + 17; i += 1) {
+            msg.append((char) ('A' + i * 7 % 26));
+        }
+        LONG = msg.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testReaderPolicies() throws IOException {
+        assertEquals("IHBDQ QMTQZ\n",
+                     readAll(new EnigmaReader(new StringReader("HELLO WORLD\n"),
+                                              machine(),
+                                              OutsideAlphabet.PASS)));
+        assertEquals("IHBDQQMTQZ",
+                     readAll(new EnigmaReader(new StringReader("HELLO WORLD\n"),
+                                              machine(),
+                                              OutsideAlphabet.DROP)));
+        Reader bad = new EnigmaReader(new StringReader("HELLO world"),
+                                      machine(), OutsideAlphabet.ERROR);
+        try {
+            bad.read();
+            fail("expected an IOException");
+        } catch (IOException excp) {
+            assertTrue(excp.getCause() instanceof EnigmaException);
+        }
+    }
+
+    @Test
+    public void testWriterMatchesMachine() throws IOException {
+        StringWriter sink = new StringWriter();
+        try (Writer w = new EnigmaWriter(sink, machine(),
+                                         OutsideAlphabet.ERROR)) {
+            w.write(LONG, 0, 5);
+            w.write(LONG.charAt(5));
+            w.write(LONG.toCharArray(), 6, LONG.length() - 6);
+        }
+        assertEquals(machine().convert(LONG), sink.toString());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        StringWriter sink = new StringWriter();
+        try (Writer w = new EnigmaWriter(sink, machine(),
+                                         OutsideAlphabet.PASS)) {
+            w.write(LONG + "\n" + LONG);
+        }
+        assertEquals(LONG + "\n" + LONG,
+                     readAll(new EnigmaReader(new StringReader(sink.toString()),
+                                              machine(),
+                                              OutsideAlphabet.PASS)));
+    }
+
+    @Test
+    public void testByteStreams() throws IOException {
+        byte[] plain =
+            ("HELLO WORLD\n" + LONG).getBytes(StandardCharsets.ISO_8859_1);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        try (OutputStream out = new EnigmaOutputStream(sink, machine(),
+                                                       OutsideAlphabet.PASS)) {
+            out.write(plain);
+        }
+        String cipher = sink.toString(StandardCharsets.ISO_8859_1);
+        assertTrue(cipher.startsWith("IHBDQ QMTQZ\n"));
+
+        InputStream in =
+            new EnigmaInputStream(new ByteArrayInputStream(sink.toByteArray()),
+                                  machine(), OutsideAlphabet.PASS);
+        assertArrayEquals(plain, in.readAllBytes());
+    }
+}
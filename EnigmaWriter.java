@@ -0,0 +1,103 @@
+package enigma;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/** A Writer that converts, with a Machine, the characters written to it
+ *  before passing them on to another Writer.  Characters are collected
+ *  and converted in blocks of EnigmaReader.BLOCK; flush and close convert
+ *  whatever is pending.  Characters outside the machine's alphabet are
+ *  handled by an OutsideAlphabet policy, and under OutsideAlphabet.ERROR
+ *  are reported as an IOException.
+ *  @author Flynn"TheFox"Gray
+ */
+class EnigmaWriter extends FilterWriter {
+
+    /** A Writer converting characters with MACHINE onto OUT, treating
+     *  those outside its alphabet as POLICY directs. */
+    EnigmaWriter(Writer out, Machine machine, OutsideAlphabet policy) {
+        super(out);
+        _machine = machine;
+        _policy = policy;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (_end == _buf.length) {
+            drain();
+        }
+        _buf[_end++] = (char) c;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        while (len > 0) {
+            if (_end == _buf.length) {
+                drain();
+            }
+            int n = Math.min(len, _buf.length - _end);
+            System.arraycopy(cbuf, off, _buf, _end, n);
+            _end += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        while (len > 0) {
+            if (_end == _buf.length) {
+                drain();
+            }
+            int n = Math.min(len, _buf.length - _end);
+            str.getChars(off, off + n, _buf, _end);
+            _end += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!_closed) {
+            _closed = true;
+            try {
+                drain();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /** Convert the characters pending in _buf and write them out. */
+    private void drain() throws IOException {
+        if (_end > 0) {
+            int n = _end;
+            _end = 0;
+            try {
+                n = _machine.convert(_buf, 0, n, _policy);
+            } catch (EnigmaException excp) {
+                throw new IOException(excp.getMessage(), excp);
+            }
+            out.write(_buf, 0, n);
+        }
+    }
+
+    /** Machine converting my output. */
+    private final Machine _machine;
+    /** Treatment of characters outside the alphabet. */
+    private final OutsideAlphabet _policy;
+    /** Characters written but not yet converted: _buf[0 .. _end-1]. */
+    private final char[] _buf = new char[EnigmaReader.BLOCK];
+    /** End of the pending characters in _buf. */
+    private int _end;
+    /** True once I have been closed. */
+    private boolean _closed;
+}
@@ -0,0 +1,146 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/** An OutputStream writing gzip format, compressing blocks of BLOCK
+ *  bytes on several threads at once.  Each block is compressed on its
+ *  own, with its own header, checksum and length, into one member of a
+ *  multi-member gzip stream (RFC 1952, section 2.2), which gzip and
+ *  java.util.zip.GZIPInputStream both read as the concatenation of the
+ *  members' contents.  Finished members are written in order; at most
+ *  two per thread are in hand at a time, so memory stays bounded however
+ *  long the output.  Flushing ends the current block early.
+ *  @author Flynn"TheFox"Gray
+ */
+class GzipBlockOutputStream extends OutputStream {
+
+    /** Number of uncompressed bytes in a block. */
+    static final int BLOCK = 1 << 20;
+
+    /** A stream writing gzip format to OUT, compressing on THREADS
+     *  threads. */
+    GzipBlockOutputStream(OutputStream out, int threads) {
+        _out = out;
+        _threads = Math.max(1, threads);
+        _pool = Executors.newFixedThreadPool(_threads, (task) -> {
+            Thread thread = new Thread(task, "enigma-gzip");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (_count == _block.length) {
+            submit();
+        }
+        _block[_count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int off, int len) throws IOException {
+        while (len > 0) {
+            if (_count == _block.length) {
+                submit();
+            }
+            int n = Math.min(len, _block.length - _count);
+            System.arraycopy(bytes, off, _block, _count, n);
+            _count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /** Compress and write everything written so far. */
+    @Override
+    public void flush() throws IOException {
+        if (_count > 0) {
+            submit();
+        }
+        while (!_pending.isEmpty()) {
+            writeNext();
+        }
+        _out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_closed) {
+            return;
+        }
+        _closed = true;
+        try {
+            if (!_written && _count == 0 && _pending.isEmpty()) {
+                submit();
+            }
+            flush();
+        } finally {
+            _pool.shutdownNow();
+            _out.close();
+        }
+    }
+
+    /** Start compressing the current block, writing the oldest member
+     *  compressed so far if too many are in hand. */
+    private void submit() throws IOException {
+        byte[] block = _block;
+        int count = _count;
+        _pending.add(_pool.submit(() -> member(block, count)));
+        _written = true;
+        _block = new byte[BLOCK];
+        _count = 0;
+        while (_pending.size() > 2 * _threads) {
+            writeNext();
+        }
+    }
+
+    /** Write the oldest member in hand, waiting for it if need be. */
+    private void writeNext() throws IOException {
+        try {
+            _out.write(_pending.remove().get());
+        } catch (ExecutionException excp) {
+            throw new IOException(excp.getCause());
+        } catch (InterruptedException excp) {
+            throw new IOException("interrupted while compressing");
+        }
+    }
+
+    /** Return the first COUNT bytes of BLOCK as one gzip member. */
+    private static byte[] member(byte[] block, int count)
+        throws IOException {
+        ByteArrayOutputStream result =
+            new ByteArrayOutputStream(count / 2 + MEMBER_OVERHEAD);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(result)) {
+            gzip.write(block, 0, count);
+        }
+        return result.toByteArray();
+    }
+
+    /** Bytes of header and trailer in a member, roughly. */
+    private static final int MEMBER_OVERHEAD = 64;
+
+    /** Destination of the compressed stream. */
+    private final OutputStream _out;
+    /** Number of compressing threads. */
+    private final int _threads;
+    /** The compressing threads. */
+    private final ExecutorService _pool;
+    /** Members being compressed or not yet written, oldest first. */
+    private final ArrayDeque<Future<byte[]>> _pending = new ArrayDeque<>();
+    /** Bytes of the current block, the first _count of them in use. */
+    private byte[] _block = new byte[BLOCK];
+    /** Number of bytes of _block in use. */
+    private int _count;
+    /** True iff some member has been started. */
+    private boolean _written;
+    /** True iff I have been closed. */
+    private boolean _closed;
+}
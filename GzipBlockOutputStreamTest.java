@@ -0,0 +1,94 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.zip.GZIPInputStream;
+
+/** The suite of all JUnit tests for the GzipBlockOutputStream class and
+ *  Main's handling of compressed files.
+ *  @author Flynn"TheFox"Gray
+ */
+public class GzipBlockOutputStreamTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return the contents of the gzip stream GZIP. */
+    private static byte[] gunzip(byte[] gzip) throws IOException {
+        try (GZIPInputStream in =
+             new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            return in.readAllBytes();
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        byte[] data = new byte[3 * GzipBlockOutputStream.BLOCK + 12345];
+        Random random = new Random(45);
+        for (int i = 0; i < data.length; i += 1) {
+            data[i] = (byte) ('A' + random.nextInt(4));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GzipBlockOutputStream out =
+             new GzipBlockOutputStream(bytes, 3)) {
+            int i = 0;
+            for (; i < 1000; i += 1) {
+                out.write(data[i]);
+            }
+            out.flush();
+            assertArrayEquals(Arrays.copyOf(data, 1000),
+                              gunzip(bytes.toByteArray()));
+            while (i < data.length) {
+                int n = Math.min(data.length - i, random.nextInt(100000));
+                out.write(data, i, n);
+                i += n;
+            }
+        }
+        byte[] gzip = bytes.toByteArray();
+        assertTrue(gzip.length < data.length / 2);
+        assertArrayEquals(data, gunzip(gzip));
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new GzipBlockOutputStream(bytes, 2).close();
+        assertEquals(0, gunzip(bytes.toByteArray()).length);
+    }
+
+    @Test
+    public void testMainFiles() throws IOException {
+        Path dir = Files.createTempDirectory("enigma-gzip");
+        String name = dir.resolve("text.gz").toString();
+        PrintStream out = Main.getOutput(name);
+        for (int i = 0; i < 20000; i += 1) {
+            out.println("LINE " + i);
+        }
+        out.close();
+        try (Scanner in = Main.getInput(name)) {
+            for (int i = 0; i < 20000; i += 1) {
+                assertEquals("LINE " + i, in.nextLine());
+            }
+            assertFalse(in.hasNextLine());
+        }
+        assertTrue(Main.compressed(name));
+        assertFalse(Main.compressed(dir.resolve("text").toString()));
+    }
+}
@@ -0,0 +1,79 @@
+package enigma;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.function.Supplier;
+
+/** A table of canonical immutable values, so that equal values made in
+ *  different places can be replaced by one shared instance.  Values are
+ *  held through weak references: once nothing else refers to a value, it
+ *  may be collected, and its entry is dropped at the next use of the
+ *  table.  Safe for use by several threads at once.
+ *  @author Flynn"TheFox"Gray
+ */
+class Interner<K, V> {
+
+    /** Return the value interned under KEY, first interning MAKE.get()
+     *  under KEY if there is none. */
+    synchronized V intern(K key, Supplier<V> make) {
+        expunge();
+        Entry<K, V> entry = _entries.get(key);
+        V value = entry == null ? null : entry.get();
+        if (value != null) {
+            _hits += 1;
+            return value;
+        }
+        _misses += 1;
+        value = make.get();
+        _entries.put(key, new Entry<>(key, value, _collected));
+        return value;
+    }
+
+    /** Return the number of values currently interned. */
+    synchronized int size() {
+        expunge();
+        return _entries.size();
+    }
+
+    /** Return the number of intern calls that found a value. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Return the number of intern calls that made one. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** Drop the entries of collected values. */
+    private void expunge() {
+        Object ref;
+        while ((ref = _collected.poll()) != null) {
+            Entry<?, ?> entry = (Entry<?, ?>) ref;
+            if (_entries.get(entry._key) == entry) {
+                _entries.remove(entry._key);
+            }
+        }
+    }
+
+    /** A weak reference to a value, remembering its key. */
+    private static class Entry<K, V> extends WeakReference<V> {
+        /** A reference to VALUE, interned under KEY, that is enqueued on
+         *  QUEUE once VALUE is collected. */
+        Entry(K key, V value, ReferenceQueue<? super V> queue) {
+            super(value, queue);
+            _key = key;
+        }
+
+        /** The key. */
+        private final K _key;
+    }
+
+    /** Interned values by key. */
+    private final HashMap<K, Entry<K, V>> _entries = new HashMap<>();
+    /** References to values that have been collected. */
+    private final ReferenceQueue<V> _collected = new ReferenceQueue<>();
+    /** Counters. */
+    private long _hits, _misses;
+}
@@ -0,0 +1,81 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Scanner;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Interner class and the sharing
+ *  of rotors between Configurations.
+ *  @author Flynn"TheFox"Gray
+ */
+public class InternerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return the permutation of rotor NAME in a machine of CONFIG. */
+    private static Permutation permutation(Configuration config,
+                                           String name) {
+        Machine M = config.newMachine();
+        Main.setUp(M, "* B Beta I II III AAAA");
+        for (int k = 0; k < M.numRotors(); k += 1) {
+            if (M.getRotor(k).name().equals(name)) {
+                return M.getRotor(k).permutation();
+            }
+        }
+        return null;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testIntern() {
+        Interner<String, String> interner = new Interner<>();
+        String a = interner.intern("a", () -> new String("A"));
+        assertSame(a, interner.intern("a", () -> new String("A")));
+        assertNotSame(a, interner.intern("b", () -> new String("A")));
+        assertEquals(1, interner.hits());
+        assertEquals(2, interner.misses());
+        assertEquals(2, interner.size());
+    }
+
+    @Test
+    public void testCollected() throws InterruptedException {
+        Interner<Integer, int[]> interner = new Interner<>();
+        for (int i = 0; i < 100; i += 1) {
+            interner.intern(i, () -> new int[1000]);
+        }
+        int[] kept = interner.intern(100, () -> new int[1000]);
+        for (int i = 0; i < 100 && interner.size() > 1; i += 1) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(1, interner.size());
+        assertSame(kept, interner.intern(100, () -> new int[1]));
+    }
+
+    @Test
+    public void testSharedBetweenConfigurations() {
+        Configuration a =
+            Configuration.read(new Scanner(NAVAL_CONFIG));
+        Configuration b =
+            Configuration.read(new Scanner(NAVAL_CONFIG
+                                           .replace("(JZ) (S)", "(JZ)(S)")));
+        assertSame(a.alphabet(), b.alphabet());
+        assertSame(permutation(a, "I"), permutation(b, "I"));
+        assertSame(permutation(a, "Beta"), permutation(b, "Beta"));
+        Configuration c =
+            Configuration.read(new Scanner(NAVAL_CONFIG
+                                           .replace("(DFG)", "(DGF)")));
+        assertNotSame(permutation(a, "I"), permutation(c, "I"));
+        assertSame(permutation(a, "II"), permutation(c, "II"));
+    }
+}
@@ -0,0 +1,146 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** Every rotor order and rotor setting of the machines of a
+ *  Configuration, numbered from 0 to size() - 1.  A rotor order is a
+ *  reflector, then distinct fixed rotors for the slots without pawls,
+ *  then distinct moving rotors for the numPawls() rightmost slots, as a
+ *  settings line requires.  Key K has order K / positions() and
+ *  setting K % positions(), written in base alphabet size with the
+ *  leftmost rotor's setting most significant.
+ *  @author Flynn"TheFox"Gray
+ */
+class KeySpace {
+
+    /** The keys of the machines of CONFIG. */
+    KeySpace(Configuration config) {
+        _alphabet = config.alphabet();
+        _numRotors = config.numRotors();
+        List<String> reflectors = new ArrayList<>();
+        List<String> fixed = new ArrayList<>();
+        List<String> moving = new ArrayList<>();
+        for (Configuration.RotorSpec spec : config.rotors()) {
+            if (spec.type() == 'M') {
+                moving.add(spec.name());
+            } else if (spec.type() == 'N') {
+                fixed.add(spec.name());
+            } else {
+                reflectors.add(spec.name());
+            }
+        }
+        int pawls = config.numPawls();
+        String[] order = new String[_numRotors];
+        for (String reflector : reflectors) {
+            order[0] = reflector;
+            arrange(order, 1, _numRotors - pawls, fixed, moving);
+        }
+        long positions = 1;
+        try {
+            for (int k = 1; k < _numRotors; k += 1) {
+                positions = Math.multiplyExact(positions, _alphabet.size());
+            }
+            Math.multiplyExact(positions, _orders.size());
+        } catch (ArithmeticException excp) {
+            throw error("key space too large");
+        }
+        _positions = positions;
+    }
+
+    /** Add to _orders every completion of ORDER from slot SLOT on, taking
+     *  slots before MOVINGFROM from FIXED and the rest from MOVING, each
+     *  rotor at most once. */
+    private void arrange(String[] order, int slot, int movingFrom,
+                         List<String> fixed, List<String> moving) {
+        if (slot == order.length) {
+            _orders.add(order.clone());
+            return;
+        }
+        for (String name : slot < movingFrom ? fixed : moving) {
+            if (!Arrays.asList(order).subList(1, slot).contains(name)) {
+                order[slot] = name;
+                arrange(order, slot + 1, movingFrom, fixed, moving);
+            }
+        }
+        order[slot] = null;
+    }
+
+    /** Return the number of keys. */
+    long size() {
+        return _orders.size() * _positions;
+    }
+
+    /** Return the number of rotor orders. */
+    int orders() {
+        return _orders.size();
+    }
+
+    /** Return the number of rotor settings of each order. */
+    long positions() {
+        return _positions;
+    }
+
+    /** Return the rotor order of KEY, reflector first.  Keys of the same
+     *  order return the same array, which must not be modified. */
+    String[] order(long key) {
+        return _orders.get((int) (key / _positions));
+    }
+
+    /** Return the rotor setting of KEY, as for Machine.setRotors. */
+    String setting(long key) {
+        char[] result = new char[_numRotors - 1];
+        long rest = key % _positions;
+        for (int k = result.length - 1; k >= 0; k -= 1) {
+            result[k] = _alphabet.toChar((int) (rest % _alphabet.size()));
+            rest /= _alphabet.size();
+        }
+        return new String(result);
+    }
+
+    /** Return the key with rotor order ORDER and setting SETTING (as for
+     *  Machine.setRotors). */
+    long key(String[] order, String setting) {
+        for (int i = 0; i < _orders.size(); i += 1) {
+            if (Arrays.equals(_orders.get(i), order)) {
+                long result = 0;
+                for (int k = 0; k < setting.length(); k += 1) {
+                    result = result * _alphabet.size()
+                        + _alphabet.toInt(setting.charAt(k));
+                }
+                return i * _positions + result;
+            }
+        }
+        throw error("no such rotor order: %s", String.join(" ", order));
+    }
+
+    /** Return the settings line selecting KEY, with no plugboard. */
+    String settingsLine(long key) {
+        StringBuilder line = new StringBuilder("*");
+        for (String name : order(key)) {
+            line.append(' ').append(name);
+        }
+        line.append(' ');
+        int digits = _alphabet.hexDigits();
+        for (char c : setting(key).toCharArray()) {
+            if (digits == 0) {
+                line.append(c);
+            } else {
+                line.append(String.format("%0" + digits + "x", (int) c));
+            }
+        }
+        return line.toString();
+    }
+
+    /** The alphabet. */
+    private final Alphabet _alphabet;
+    /** Number of rotor slots. */
+    private final int _numRotors;
+    /** Every rotor order. */
+    private final List<String[]> _orders = new ArrayList<>();
+    /** Number of settings of each order. */
+    private final long _positions;
+}
@@ -0,0 +1,168 @@
+package enigma;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/** The sequence of rotor substitutions a machine goes through from one
+ *  starting position of its rotors.  Step I is the mapping performed by
+ *  the rotor slots (without the plugboard) on the I-th character
+ *  converted after the rotors are set, stored as SIZE consecutive
+ *  entries of table().  Steps are computed on demand, up to a fixed
+ *  maximum, and the sequence is known to be periodic once the rotors
+ *  come back to their starting position.  A Keystream loaded from a
+ *  KeystreamStore starts with the steps stored there in buffer(), and
+ *  copies them into a table of its own if it must compute more.
+ *  @author Flynn"TheFox"Gray
+ */
+class Keystream {
+
+    /** Largest alphabet for which keystreams are kept.  Each step holds
+     *  a table as large as the alphabet, so for larger ones the rotors
+     *  are better applied by arithmetic on their own tables. */
+    static final int MAX_SIZE = 1024;
+
+    /** Smallest number of steps computed at a time. */
+    static final int MIN_CHUNK = 64;
+
+    /** The keystream of CORE from settings START, holding at most
+     *  MAXSTEPS steps, whose growth is reported to OWNER (if not null). */
+    Keystream(RotorCore core, int[] start, int maxSteps,
+              KeystreamCache owner) {
+        _core = core;
+        _start = start.clone();
+        _pos = start.clone();
+        _maxSteps = Math.max(1, maxSteps);
+        _owner = owner;
+        _table = new char[0];
+    }
+
+    /** The keystream of CORE from settings START whose first STEPS steps
+     *  are STORED, with period PERIOD (0 if unknown), holding at most
+     *  MAXSTEPS steps, whose growth is reported to OWNER (if not null). */
+    Keystream(RotorCore core, int[] start, CharBuffer stored, int steps,
+              int period, int maxSteps, KeystreamCache owner) {
+        this(core, start, maxSteps, owner);
+        _mapped = stored;
+        _table = null;
+        _steps = _stored = steps;
+        _period = period;
+    }
+
+    /** Return my compiled rotors. */
+    RotorCore core() {
+        return _core;
+    }
+
+    /** Return the rotor settings at which I start. */
+    int[] start() {
+        return _start.clone();
+    }
+
+    /** Return the alphabet size of my rotors. */
+    int size() {
+        return _core.size();
+    }
+
+    /** Return the number of steps computed so far.  Callers reading
+     *  table() concurrently with extend() must call steps() first. */
+    synchronized int steps() {
+        return _steps;
+    }
+
+    /** Return my table, in which the first steps() steps are valid, or
+     *  null if my steps are in buffer().  The result must not be
+     *  modified. */
+    synchronized char[] table() {
+        return _table;
+    }
+
+    /** Return the read-only buffer holding my steps, laid out as in
+     *  table(), or null if they are in table(). */
+    synchronized CharBuffer buffer() {
+        return _mapped;
+    }
+
+    /** Return the number of my steps that were loaded from a
+     *  KeystreamStore. */
+    int stored() {
+        return _stored;
+    }
+
+    /** Return my period in steps, or 0 if it is not yet known. */
+    synchronized int period() {
+        return _period;
+    }
+
+    /** Return the approximate number of bytes I occupy. */
+    long bytes() {
+        return _bytes;
+    }
+
+    /** Make sure that step STEP is available, computing further steps if
+     *  need be.  Returns true iff STEP < steps() afterwards, or STEP is
+     *  exactly my period (so that the caller should continue at step 0).
+     *  Returns false if STEP lies past the most steps I may hold. */
+    synchronized boolean extend(int step) {
+        if (step >= _steps && _period == 0 && step < _maxSteps) {
+            int size = _core.size();
+            if (_mapped != null) {
+                _table = new char[_steps * size];
+                _mapped.get(0, _table);
+                _mapped = null;
+                for (int i = 0; i < _steps; i += 1) {
+                    _core.step(_pos);
+                }
+            }
+            int target = Math.min(_maxSteps,
+                                  Math.max(step + 1, Math.max(2 * _steps,
+                                                              MIN_CHUNK)));
+            char[] table = Arrays.copyOf(_table, target * size);
+            int steps = _steps;
+            while (steps < target) {
+                _core.step(_pos);
+                _core.fill(_pos, table, steps * size);
+                steps += 1;
+                if (Arrays.equals(_pos, _start)) {
+                    _period = steps;
+                    table = Arrays.copyOf(table, steps * size);
+                    break;
+                }
+            }
+            _table = table;
+            _steps = steps;
+            long old = _bytes;
+            _bytes = 2L * table.length + OVERHEAD;
+            if (_owner != null) {
+                _owner.resized(this, _bytes - old);
+            }
+        }
+        return step < _steps || (_period > 0 && step == _period);
+    }
+
+    /** Approximate fixed cost in bytes of one Keystream. */
+    static final long OVERHEAD = 128;
+
+    /** The compiled rotors whose steps I hold. */
+    private final RotorCore _core;
+    /** Rotor settings at which I start. */
+    private final int[] _start;
+    /** Rotor settings after the last computed step. */
+    private final int[] _pos;
+    /** Most steps I may hold. */
+    private final int _maxSteps;
+    /** The cache that accounts for my memory, or null. */
+    private final KeystreamCache _owner;
+    /** Substitutions of the computed steps, SIZE entries per step. */
+    private char[] _table;
+    /** Stored substitutions, when loaded from a KeystreamStore, until
+     *  more steps are computed. */
+    private CharBuffer _mapped;
+    /** Number of steps loaded from a KeystreamStore. */
+    private int _stored;
+    /** Number of computed steps. */
+    private int _steps;
+    /** Period of my steps, or 0 if not yet known. */
+    private int _period;
+    /** Bytes occupied, as last reported to _owner. */
+    private volatile long _bytes = OVERHEAD;
+}
@@ -0,0 +1,223 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** A bounded cache of Keystreams, keyed by compiled rotors and starting
+ *  settings, that evicts the least recently used keystream once the
+ *  memory held by all of them passes a budget.  Safe for use by several
+ *  machines at once.  With a KeystreamStore, missing keystreams are
+ *  mapped from the store if it has them (only their on-heap overhead
+ *  counting against the budget until they must grow), and keystreams
+ *  are saved to it as they are evicted and when I am flushed.
+ *  @author Flynn"TheFox"Gray
+ */
+class KeystreamCache {
+
+    /** A cache holding at most about MAXBYTES bytes of keystreams. */
+    KeystreamCache(long maxBytes) {
+        _maxBytes = maxBytes;
+    }
+
+    /** Take keystreams missing from me from STORE (none if null). */
+    synchronized void setStore(KeystreamStore store) {
+        _store = store;
+    }
+
+    /** Return the keystream of CORE from settings START, creating an empty
+     *  one if I have none.  START must be accepted by CORE.  A keystream
+     *  taken from my store is mapped without holding my lock, so that
+     *  other lookups need not wait for it; if another thread adds the
+     *  same keystream meanwhile, its is returned.  Keystreams evicted
+     *  since the last lookup are saved to my store first. */
+    Keystream lookup(RotorCore core, int[] start) {
+        save(evicted());
+        Key key = new Key(core, start);
+        KeystreamStore store;
+        synchronized (this) {
+            Keystream result = _entries.get(key);
+            if (result != null) {
+                _hits += 1;
+                return result;
+            }
+            _misses += 1;
+            store = _store;
+        }
+        long perEntry = _maxBytes / ENTRIES_PER_BUDGET;
+        int maxSteps = (int) Math.min(Integer.MAX_VALUE / core.size(),
+                                      perEntry / (2L * core.size()));
+        Keystream made;
+        if (store != null) {
+            made = store.open(core, start, maxSteps, this);
+        } else {
+            made = new Keystream(core, start, maxSteps, this);
+        }
+        synchronized (this) {
+            Keystream result = _entries.putIfAbsent(key, made);
+            if (result != null) {
+                return result;
+            }
+            _keys.put(made, key);
+            _bytes += made.bytes();
+            trim();
+            return made;
+        }
+    }
+
+    /** Record that KS, which I may hold, has grown by DELTA bytes. */
+    synchronized void resized(Keystream ks, long delta) {
+        if (_keys.containsKey(ks)) {
+            _bytes += delta;
+            trim();
+        }
+    }
+
+    /** Evict least recently used keystreams until I am within budget,
+     *  keeping them for saving if I have a store. */
+    private void trim() {
+        Iterator<Map.Entry<Key, Keystream>> entries =
+            _entries.entrySet().iterator();
+        while (_bytes > _maxBytes && entries.hasNext()) {
+            Keystream ks = entries.next().getValue();
+            entries.remove();
+            _keys.remove(ks);
+            _bytes -= ks.bytes();
+            _evictions += 1;
+            if (_store != null) {
+                _evicted.add(ks);
+            }
+        }
+    }
+
+    /** Return, and forget, the keystreams evicted and not yet saved. */
+    private synchronized List<Keystream> evicted() {
+        if (_evicted.isEmpty()) {
+            return List.of();
+        }
+        List<Keystream> result = _evicted;
+        _evicted = new ArrayList<>();
+        return result;
+    }
+
+    /** Save KEYSTREAMS to my store, if I have one.  Must not be called
+     *  while holding my lock or that of a keystream. */
+    private void save(List<Keystream> keystreams) {
+        KeystreamStore store;
+        synchronized (this) {
+            store = _store;
+        }
+        if (store != null) {
+            for (Keystream ks : keystreams) {
+                store.save(ks);
+            }
+        }
+    }
+
+    /** Save every keystream I hold or have evicted to my store, if I
+     *  have one. */
+    void flush() {
+        ArrayList<Keystream> all = new ArrayList<>(evicted());
+        synchronized (this) {
+            all.addAll(_entries.values());
+        }
+        save(all);
+    }
+
+    /** Return the number of lookups that found a keystream. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Return the number of lookups that created a keystream. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** Return the number of keystreams evicted. */
+    synchronized long evictions() {
+        return _evictions;
+    }
+
+    /** Return the number of bytes currently held. */
+    synchronized long bytes() {
+        return _bytes;
+    }
+
+    /** Return the number of keystreams currently held. */
+    synchronized int entries() {
+        return _entries.size();
+    }
+
+    /** Return a one-line summary of my counters. */
+    synchronized String stats() {
+        String result =
+            String.format("keystream cache: %d hits, %d misses, "
+                          + "%d evictions, %d entries, %d bytes",
+                          _hits, _misses, _evictions, _entries.size(),
+                          _bytes);
+        if (_store != null) {
+            result += String.format("; store: %d mapped, %d written "
+                                    + "(%d bytes), %d deleted",
+                                    _store.mapped(), _store.written(),
+                                    _store.writtenBytes(),
+                                    _store.deleted());
+        }
+        return result;
+    }
+
+    /** A cache key: compiled rotors and their starting settings. */
+    private static class Key {
+        /** The key for CORE at settings START. */
+        Key(RotorCore core, int[] start) {
+            _core = core;
+            _start = start.clone();
+            _hash = core.hashCode() * 31 + Arrays.hashCode(_start);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return _hash == other._hash && Arrays.equals(_start, other._start)
+                && _core.equals(other._core);
+        }
+
+        @Override
+        public int hashCode() {
+            return _hash;
+        }
+
+        /** Compiled rotors. */
+        private final RotorCore _core;
+        /** Starting settings. */
+        private final int[] _start;
+        /** Hash of _core and _start. */
+        private final int _hash;
+    }
+
+    /** Fraction (as a divisor) of the budget one keystream may use. */
+    static final int ENTRIES_PER_BUDGET = 8;
+
+    /** Store of keystreams shared with other processes, or null. */
+    private KeystreamStore _store;
+    /** Budget in bytes. */
+    private final long _maxBytes;
+    /** Keystreams in least- to most-recently-used order. */
+    private final LinkedHashMap<Key, Keystream> _entries =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /** The key of each keystream in _entries. */
+    private final Map<Keystream, Key> _keys = new IdentityHashMap<>();
+    /** Keystreams evicted and not yet saved to _store. */
+    private ArrayList<Keystream> _evicted = new ArrayList<>();
+    /** Bytes held. */
+    private long _bytes;
+    /** Counters. */
+    private long _hits, _misses, _evictions;
+}
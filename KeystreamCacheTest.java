@@ -0,0 +1,108 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the KeystreamCache class.
+ *  @author Flynn"TheFox"Gray
+ */
+public class KeystreamCacheTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A long message. */
+    private static final String MSG;
+    static {
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 2000; i += 1) {
+            msg.append(UPPER_STRING.charAt((i * 7 + i / 26) % 26));
+        }
+        MSG = msg.toString();
+    }
+
+    private static final String[] ROTORS = { "B", "Beta", "I", "II", "III" };
+
+    /** Plugboard of the machines. */
+    private static final String CYCLES = "(AQ) (EP)";
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSameAsUncached() {
+        KeystreamCache cache = new KeystreamCache(1 << 20);
+        Machine plain = navalMachine(ROTORS, "AAAA", CYCLES);
+        String expected = plain.convert(MSG);
+        for (int i = 0; i < 3; i += 1) {
+            Machine mach = navalMachine(ROTORS, "AAAA", CYCLES);
+            mach.setKeystreamCache(cache);
+            mach.setRotors("AAAA");
+            assertEquals(expected, mach.convert(MSG));
+            for (int k = 1; k < 5; k += 1) {
+                assertEquals(plain.getRotor(k).setting(),
+                             mach.getRotor(k).setting());
+            }
+        }
+        assertEquals(1, cache.misses());
+        assertEquals(2, cache.hits());
+    }
+
+    @Test
+    public void testPastMaximumSteps() {
+        KeystreamCache cache = new KeystreamCache(1000);
+        Machine plain = navalMachine(ROTORS, "AXLE", CYCLES);
+        Machine mach = navalMachine(ROTORS, "AXLE", CYCLES);
+        mach.setKeystreamCache(cache);
+        mach.setRotors("AXLE");
+        assertEquals(plain.convert(MSG), mach.convert(MSG));
+    }
+
+    @Test
+    public void testPeriodic() {
+        Alphabet abc = new Alphabet("ABC");
+        ArrayList<Rotor> all = new ArrayList<>();
+        all.add(new Reflector("R", new Permutation("(AB) (C)", abc)));
+        all.add(new MovingRotor("M", new Permutation("(ABC)", abc), "A"));
+        Machine plain = new Machine<>(abc, 2, 1, all);
+        plain.insertRotors(new String[] { "R", "M" });
+        plain.setPlugboard(new Permutation("", abc));
+        plain.setRotors("B");
+        String expected = plain.convert("ABCCBAABCAACB");
+
+        KeystreamCache cache = new KeystreamCache(1 << 16);
+        plain.setKeystreamCache(cache);
+        plain.setEngine(EngineKind.KEYSTREAM);
+        plain.setRotors("B");
+        assertEquals(expected, plain.convert("ABCCBAABCAACB"));
+        Keystream ks = cache.lookup(RotorCore.compile(plain.slots()),
+                                    new int[] { 0, 1 });
+        assertEquals(3, ks.period());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void testEviction() {
+        KeystreamCache cache = new KeystreamCache(2048);
+        String[] settings = { "AAAA", "BBBB", "CCCC", "DDDD", "EEEE",
+                              "FFFF", "GGGG", "HHHH", "IIII", "JJJJ" };
+        for (String setting : settings) {
+            Machine mach = navalMachine(ROTORS, setting, CYCLES);
+            mach.setKeystreamCache(cache);
+            mach.setRotors(setting);
+            mach.convert(MSG);
+        }
+        assertEquals(10, cache.misses());
+        assertTrue(cache.evictions() > 0);
+        assertTrue(cache.bytes() <= 2048);
+    }
+
+}
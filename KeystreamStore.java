@@ -0,0 +1,343 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** A directory of keystreams in memory-mapped files, shared by every
+ *  process that opens the same directory.  Each keystream lives in a file
+ *  named by a digest of its RotorCore descriptor (alphabet size, rotor
+ *  tables, notches and starting settings).  A keystream missing from the
+ *  directory is computed in memory, as far as its messages need, and
+ *  saved when its cache is done with it: written to a temporary file and
+ *  renamed into place, so that readers only ever map complete files,
+ *  read-only, and need no lock.  A keystream mapped from a file that
+ *  turns out too short goes on in memory, and is saved again, longer.
+ *  Writers of the same file hold a lock on a companion lock file, which
+ *  is removed once the keystream file is in place.  Once the files
+ *  exceed a budget, the least recently used are deleted.  Safe for use
+ *  by several threads at once.
+ *  @author Flynn"TheFox"Gray
+ */
+class KeystreamStore {
+
+    /** Default budget of a store, in bytes. */
+    static final long MAX_BYTES = 256L << 20;
+
+    /** A store keeping its files in DIR, which is created if need be,
+     *  with the default budget. */
+    KeystreamStore(Path dir) {
+        this(dir, MAX_BYTES);
+    }
+
+    /** A store keeping at most about MAXBYTES bytes of files in DIR,
+     *  which is created if need be. */
+    KeystreamStore(Path dir, long maxBytes) {
+        _dir = dir;
+        _maxBytes = maxBytes;
+        for (int i = 0; i < STRIPES; i += 1) {
+            _locks[i] = new Object();
+        }
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException excp) {
+            throw error("could not open keystream store %s", dir);
+        }
+    }
+
+    /** Return the keystream of CORE from settings START, holding up to
+     *  MAXSTEPS steps: mapped from my directory if some process has
+     *  saved it, and otherwise empty, to be saved once computed.  Its
+     *  memory is accounted by OWNER (if not null). */
+    Keystream open(RotorCore core, int[] start, int maxSteps,
+                   KeystreamCache owner) {
+        byte[] descriptor = core.descriptor(start);
+        Path file = _dir.resolve(digest(descriptor) + SUFFIX);
+        try {
+            Keystream result =
+                map(file, core, start, descriptor, maxSteps, owner);
+            if (result != null) {
+                return result;
+            }
+        } catch (IOException excp) {
+            throw error("keystream store: %s", excp.getMessage());
+        }
+        return new Keystream(core, start, maxSteps, owner);
+    }
+
+    /** Save the steps of KS computed since it was opened, unless a
+     *  file holding as many is already in place. */
+    void save(Keystream ks) {
+        int steps = ks.steps();
+        char[] table = ks.table();
+        if (steps <= ks.stored() || table == null) {
+            return;
+        }
+        RotorCore core = ks.core();
+        int[] start = ks.start();
+        byte[] descriptor = core.descriptor(start);
+        String name = digest(descriptor);
+        Path file = _dir.resolve(name + SUFFIX);
+        Path lockFile = _dir.resolve(name + LOCK_SUFFIX);
+        try {
+            synchronized (_locks[Math.floorMod(name.hashCode(), STRIPES)]) {
+                try (FileChannel lockChannel =
+                         FileChannel.open(lockFile,
+                                          StandardOpenOption.CREATE,
+                                          StandardOpenOption.WRITE);
+                     FileLock lock = lockChannel.lock()) {
+                    if (storedSteps(file, descriptor) < steps) {
+                        write(file, core.size(), steps, ks.period(), table,
+                              descriptor);
+                    }
+                    Files.deleteIfExists(lockFile);
+                }
+            }
+            trim();
+        } catch (IOException excp) {
+            throw error("keystream store: %s", excp.getMessage());
+        }
+    }
+
+    /** Return the keystream of CORE from START held in FILE, mapped
+     *  read-only and holding up to MAXSTEPS steps, or null if FILE does
+     *  not exist or does not hold the keystream with DESCRIPTOR.  OWNER
+     *  accounts for its memory. */
+    private Keystream map(Path file, RotorCore core, int[] start,
+                          byte[] descriptor, int maxSteps,
+                          KeystreamCache owner) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                               channel.size());
+        } catch (NoSuchFileException excp) {
+            return null;
+        }
+        int steps = header(data, descriptor);
+        if (steps < 0) {
+            return null;
+        }
+        int period = data.getInt(4 * 4);
+        data.position(align(HEADER_INTS * 4 + descriptor.length));
+        CharBuffer table = data.slice().asCharBuffer();
+        if ((long) steps * core.size() > table.remaining()) {
+            return null;
+        }
+        touch(file);
+        synchronized (this) {
+            _mapped += 1;
+        }
+        return new Keystream(core, start, table.asReadOnlyBuffer(), steps,
+                             period, maxSteps, owner);
+    }
+
+    /** Mark FILE, if it still exists, as just used. */
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file,
+                                      FileTime.fromMillis(
+                                          System.currentTimeMillis()));
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Return the number of steps held in FILE, or 0 if it does not
+     *  exist or does not hold the keystream with DESCRIPTOR. */
+    private static int storedSteps(Path file, byte[] descriptor)
+        throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            ByteBuffer data =
+                ByteBuffer.allocate(HEADER_INTS * 4 + descriptor.length);
+            while (data.hasRemaining() && channel.read(data) >= 0) {
+                continue;
+            }
+            data.flip();
+            return Math.max(0, header(data, descriptor));
+        } catch (NoSuchFileException excp) {
+            return 0;
+        }
+    }
+
+    /** Return the number of steps in the keystream file whose contents
+     *  start with DATA, or -1 if that does not hold the keystream with
+     *  DESCRIPTOR.  Leaves DATA positioned after the descriptor. */
+    private static int header(ByteBuffer data, byte[] descriptor) {
+        if (data.remaining() < HEADER_INTS * 4
+            || data.getInt() != MAGIC || data.getInt() != VERSION) {
+            return -1;
+        }
+        int descLength = data.getInt();
+        int steps = data.getInt();
+        data.getInt();
+        if (descLength != descriptor.length
+            || data.remaining() < descLength) {
+            return -1;
+        }
+        byte[] stored = new byte[descLength];
+        data.get(stored);
+        return Arrays.equals(stored, descriptor) ? steps : -1;
+    }
+
+    /** Atomically create FILE holding the first STEPS steps of TABLE, a
+     *  keystream of alphabet size SIZE with period PERIOD whose
+     *  descriptor is DESCRIPTOR. */
+    private void write(Path file, int size, int steps, int period,
+                       char[] table, byte[] descriptor) throws IOException {
+        int offset = align(HEADER_INTS * 4 + descriptor.length);
+        ByteBuffer data = ByteBuffer.allocate(offset + 2 * steps * size);
+        data.putInt(MAGIC).putInt(VERSION).putInt(descriptor.length)
+            .putInt(steps).putInt(period).put(descriptor);
+        data.position(offset);
+        data.asCharBuffer().put(table, 0, steps * size);
+        data.rewind();
+
+        Path temp = Files.createTempFile(_dir, file.getFileName().toString(),
+                                         ".tmp");
+        try {
+            try (FileChannel channel =
+                     FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        synchronized (this) {
+            _written += 1;
+            _writtenBytes += offset + 2L * steps * size;
+        }
+    }
+
+    /** Delete the least recently used keystream files until those left
+     *  fit in my budget. */
+    private void trim() throws IOException {
+        synchronized (_trimming) {
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> dir =
+                     Files.newDirectoryStream(_dir, "*" + SUFFIX)) {
+                for (Path file : dir) {
+                    files.add(file);
+                }
+            }
+            HashMap<Path, BasicFileAttributes> attrs = new HashMap<>();
+            long total = 0;
+            for (Path file : files) {
+                try {
+                    BasicFileAttributes a =
+                        Files.readAttributes(file, BasicFileAttributes.class);
+                    attrs.put(file, a);
+                    total += a.size();
+                } catch (NoSuchFileException excp) {
+                    continue;
+                }
+            }
+            if (total <= _maxBytes) {
+                return;
+            }
+            files.retainAll(attrs.keySet());
+            files.sort(Comparator.comparing(f -> attrs.get(f)
+                                            .lastModifiedTime()));
+            for (Path file : files) {
+                if (total <= _maxBytes) {
+                    break;
+                }
+                Files.deleteIfExists(file);
+                total -= attrs.get(file).size();
+                synchronized (this) {
+                    _deleted += 1;
+                }
+            }
+        }
+    }
+
+    /** Return P rounded up to a multiple of 8. */
+    private static int align(int p) {
+        return (p + 7) & ~7;
+    }
+
+    /** Return the hexadecimal SHA-256 digest of BYTES. */
+    private static String digest(byte[] bytes) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder result = new StringBuilder();
+            for (byte b : hash) {
+                result.append(String.format("%02x", b));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** Return the number of keystreams I have mapped. */
+    synchronized long mapped() {
+        return _mapped;
+    }
+
+    /** Return the number of keystream files I have written. */
+    synchronized long written() {
+        return _written;
+    }
+
+    /** Return the number of bytes of keystream files I have written. */
+    synchronized long writtenBytes() {
+        return _writtenBytes;
+    }
+
+    /** Return the number of keystream files I have deleted to stay
+     *  within budget. */
+    synchronized long deleted() {
+        return _deleted;
+    }
+
+    /** First word of every keystream file. */
+    static final int MAGIC = 0x454e4b53;
+    /** Format version of keystream files. */
+    static final int VERSION = 1;
+    /** Number of int fields in a file header. */
+    static final int HEADER_INTS = 5;
+    /** Suffix of keystream file names. */
+    static final String SUFFIX = ".ks";
+    /** Suffix of the names of the lock files of keystream files. */
+    static final String LOCK_SUFFIX = ".lock";
+    /** Number of locks guarding writers within a process. */
+    static final int STRIPES = 16;
+
+    /** Directory holding my files. */
+    private final Path _dir;
+    /** Budget in bytes. */
+    private final long _maxBytes;
+    /** Locks guarding the writers, within this process, of the file of a
+     *  digest D by _locks[D.hashCode() % STRIPES], since a file lock is
+     *  held for the whole process. */
+    private final Object[] _locks = new Object[STRIPES];
+    /** Held while deleting files to stay within budget. */
+    private final Object _trimming = new Object();
+    /** Counters. */
+    private long _mapped, _written, _writtenBytes, _deleted;
+}
@@ -0,0 +1,162 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the KeystreamStore class.
+ *  @author Flynn"TheFox"Gray
+ */
+public class KeystreamStoreTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String[] ROTORS = { "B", "Beta", "I", "II", "III" };
+
+    /** Return a fresh naval machine at SETTING using CACHE. */
+    private Machine machine(String setting, KeystreamCache cache) {
+        Machine mach = navalMachine(ROTORS, setting,
+                                    "(HQ) (EX) (IP) (TR) (BY)");
+        mach.setKeystreamCache(cache);
+        return mach;
+    }
+
+    private static final String MSG =
+        "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOODMADEOFSLIDINGFOLDING"
+        + "ROSEWOODNEATLYPUTITALLTOGETHER";
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSharedBetweenStores() throws IOException {
+        Path dir = Files.createTempDirectory("keystore");
+        String expected = machine("AXLE", null).convert(MSG);
+
+        KeystreamStore first = new KeystreamStore(dir);
+        KeystreamCache cache1 = new KeystreamCache(1 << 20);
+        cache1.setStore(first);
+        assertEquals(expected, machine("AXLE", cache1).convert(MSG));
+        assertEquals(0, first.written());
+        cache1.flush();
+        assertEquals(1, first.written());
+        assertTrue(first.writtenBytes() < 2 * 26 * 2 * MSG.length() + 4096);
+
+        KeystreamStore second = new KeystreamStore(dir);
+        KeystreamCache cache2 = new KeystreamCache(1 << 20);
+        cache2.setStore(second);
+        assertEquals(expected, machine("AXLE", cache2).convert(MSG));
+        cache2.flush();
+        assertEquals(0, second.written());
+        assertEquals(1, second.mapped());
+    }
+
+    @Test
+    public void testExtendStored() throws IOException {
+        Path dir = Files.createTempDirectory("keystore");
+        String longMsg = MSG + MSG + MSG + MSG;
+        String expected = machine("AXLE", null).convert(longMsg);
+
+        KeystreamStore first = new KeystreamStore(dir);
+        KeystreamCache cache1 = new KeystreamCache(1 << 20);
+        cache1.setStore(first);
+        machine("AXLE", cache1).convert(MSG);
+        cache1.flush();
+        long shortBytes = first.writtenBytes();
+
+        KeystreamStore second = new KeystreamStore(dir);
+        KeystreamCache cache2 = new KeystreamCache(1 << 20);
+        cache2.setStore(second);
+        assertEquals(expected, machine("AXLE", cache2).convert(longMsg));
+        assertEquals(1, second.mapped());
+        cache2.flush();
+        assertEquals(1, second.written());
+        assertTrue(second.writtenBytes() > shortBytes);
+
+        KeystreamStore third = new KeystreamStore(dir);
+        KeystreamCache cache3 = new KeystreamCache(1 << 20);
+        cache3.setStore(third);
+        assertEquals(expected, machine("AXLE", cache3).convert(longMsg));
+        cache3.flush();
+        assertEquals(0, third.written());
+    }
+
+    @Test
+    public void testBudget() throws IOException {
+        Path dir = Files.createTempDirectory("keystore");
+        KeystreamStore store = new KeystreamStore(dir, 20000);
+        KeystreamCache cache = new KeystreamCache(1 << 20);
+        cache.setStore(store);
+        String[] settings = { "AAAA", "BBBB", "CCCC", "DDDD", "EEEE" };
+        for (String setting : settings) {
+            machine(setting, cache).convert(MSG);
+        }
+        cache.flush();
+        assertEquals(settings.length, store.written());
+        assertTrue(store.deleted() > 0);
+        long total = 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                total += Files.size(file);
+            }
+        }
+        assertTrue(total <= 20000);
+    }
+
+    @Test
+    public void testPastStoredSteps() throws IOException {
+        Path dir = Files.createTempDirectory("keystore");
+        StringBuilder longMsg = new StringBuilder();
+        for (int i = 0; i < 40; i += 1) {
+            longMsg.append(MSG);
+        }
+        String expected = machine("QEVZ", null).convert(longMsg.toString());
+        KeystreamCache cache = new KeystreamCache(8 * 2 * 26 * 100);
+        cache.setStore(new KeystreamStore(dir));
+        assertEquals(expected,
+                     machine("QEVZ", cache).convert(longMsg.toString()));
+    }
+
+    @Test
+    public void testConcurrentOpens() throws Exception {
+        Path dir = Files.createTempDirectory("keystore");
+        String[] settings = { "AXLE", "QEVZ", "AAAA", "ZZZZ" };
+        KeystreamStore store = new KeystreamStore(dir);
+        KeystreamCache cache = new KeystreamCache(1 << 20);
+        cache.setStore(store);
+        String[] results = new String[4 * settings.length];
+        Thread[] threads = new Thread[results.length];
+        for (int t = 0; t < threads.length; t += 1) {
+            int i = t;
+            threads[t] = new Thread(() -> {
+                results[i] = machine(settings[i % settings.length],
+                                          cache).convert(MSG);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int t = 0; t < results.length; t += 1) {
+            assertEquals(machine(settings[t % settings.length], null)
+                         .convert(MSG), results[t]);
+        }
+        assertEquals(settings.length, cache.entries());
+        cache.flush();
+        assertEquals(settings.length, store.written());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(settings.length, files.count());
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package enigma;
 
+import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Collection;
 
+import static enigma.EnigmaException.*;
+
 
 /** Class that represents a complete enigma machine.
  *  @author Flynn"TheFox"Gray
@@ -21,6 +25,14 @@ class Machine<Foo> {
         for (Rotor r: allRotors) {
             _hashmapOfRotors.put(r.name(), r);
         }
+        _available = allRotors.toArray(new Rotor[0]);
+        _reflecting = new boolean[_available.length];
+        _rotating = new boolean[_available.length];
+        for (int i = 0; i < _available.length; i += 1) {
+            _reflecting[i] = _available[i].reflecting();
+            _rotating[i] = _available[i].rotates();
+        }
+        _pairSeen = new long[alpha.size()];
     }
 
     /** Return the number of rotor slots I have. */
@@ -37,6 +49,7 @@ class Machine<Foo> {
      *  #(numRotors()-1) is the fast Rotor.  Modifying this Rotor has
      *  undefined results. */
     Rotor getRotor(int k) {
+        syncRotors();
         return _hashmapOfRotors.get(_rotorKeys[k]);
     }
 
@@ -48,7 +61,127 @@ class Machine<Foo> {
      *  available rotors (ROTORS[0] names the reflector).
      *  Initially, all rotors are set at their 0 setting. */
     void insertRotors(String[] rotors) {
-        _rotorKeys = rotors;
+        syncRotors();
+        _engine = null;
+        if (!Arrays.equals(rotors, _rotorKeys)) {
+            _core = null;
+            _converted = 0;
+        }
+        _rotorKeys = rotors.clone();
+        _keystream = null;
+        _chosen = null;
+        _run = 0;
+    }
+
+    /** Return the index of the available rotor named NAME, in the order
+     *  in which they were given to my constructor, or -1 if there is
+     *  none. */
+    int rotorIndex(String name) {
+        for (int i = 0; i < _available.length; i += 1) {
+            if (_available[i].name().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Set me up as Main.setUp would, without parsing or allocating:
+     *  ROTORS holds the rotorIndex of the rotor for each slot, reflector
+     *  first; SETTINGS the setting of each slot but the reflector's, as
+     *  indices into my alphabet; and PLUGBOARD pairs of indices swapped
+     *  by the plugboard, PLUGBOARD[2i] with PLUGBOARD[2i + 1].  All three
+     *  are checked before anything changes, so I am unchanged if they
+     *  are invalid.  The plugboard set is my own and changes with each
+     *  rekey. */
+    void rekey(int[] rotors, int[] settings, int[] plugboard) {
+        if (rotors.length != _numRotors) {
+            throw error("wrong number of rotors");
+        }
+        int moving = 0;
+        for (int k = 0; k < _numRotors; k += 1) {
+            int r = rotors[k];
+            if (r < 0 || r >= _available.length) {
+                throw new EnigmaException("Bad rotor name");
+            }
+            if (_rotating[r]) {
+                moving += 1;
+            }
+        }
+        if (!_reflecting[rotors[0]]) {
+            throw new EnigmaException("first rotor should reflect");
+        }
+        if (moving != _pawls) {
+            throw new EnigmaException("#pawls != number of moving rotors");
+        }
+        if (settings.length != _numRotors - 1) {
+            throw new EnigmaException("incorrect number of settings");
+        }
+        for (int k = 1; k < _numRotors; k += 1) {
+            int p = settings[k - 1];
+            if (p < 0 || p >= _alphabet.size()) {
+                throw error("setting %d out of range", p);
+            }
+            if (p != 0 && _reflecting[rotors[k]]) {
+                throw error("reflector has only one position");
+            }
+        }
+        if (plugboard.length % 2 != 0) {
+            throw error("odd number of plugboard indices");
+        }
+        _pairStamp += 1;
+        for (int c : plugboard) {
+            if (c < 0 || c >= _alphabet.size()) {
+                throw error("plugboard index %d out of range", c);
+            }
+            if (_pairSeen[c] == _pairStamp) {
+                throw error("character %d appears twice in cycles", c);
+            }
+            _pairSeen[c] = _pairStamp;
+        }
+
+        syncRotors();
+        if (_rotorKeys == null || _rotorKeys.length != _numRotors) {
+            _rotorKeys = new String[_numRotors];
+        }
+        for (int k = 0; k < _numRotors; k += 1) {
+            String name = _available[rotors[k]].name();
+            if (!name.equals(_rotorKeys[k])) {
+                _rotorKeys[k] = name;
+                _core = null;
+                _converted = 0;
+            }
+        }
+        for (int k = 1; k < _numRotors; k += 1) {
+            _available[rotors[k]].set(settings[k - 1]);
+        }
+        if (_rekeyed == null) {
+            _rekeyed = new Permutation("", _alphabet);
+        }
+        _rekeyed.setSwaps(plugboard);
+        pbPerm = _rekeyed;
+        _engine = null;
+        _keystream = null;
+        _chosen = null;
+        _run = 0;
+        if (_kind != EngineKind.AUTO) {
+            start(_kind);
+        }
+    }
+
+    /** Return the names of the rotors in my slots, reflector first. */
+    String[] rotorNames() {
+        return _rotorKeys.clone();
+    }
+
+    /** Return the cache through which settings lines set me up, or null
+     *  if there is none. */
+    SettingsCache settingsCache() {
+        return _settingsCache;
+    }
+
+    /** Set up settings lines through CACHE (none if null). */
+    void setSettingsCache(SettingsCache cache) {
+        _settingsCache = cache;
     }
 
     /** Set my rotors according to SETTING, which must be a string of
@@ -58,6 +191,202 @@ class Machine<Foo> {
         for (int i = 1; i < _numRotors; i += 1) {
             getRotor(i).set(setting.charAt(i - 1));
         }
+        _engine = null;
+        _keystream = null;
+        _chosen = null;
+        _run = 0;
+        if (_kind != EngineKind.AUTO) {
+            start(_kind);
+        }
+    }
+
+    /** Convert with KIND from each setRotors on, or with whichever kind
+     *  my EngineSelector chooses for each message if KIND is AUTO (the
+     *  default). */
+    void setEngine(EngineKind kind) {
+        _kind = kind;
+    }
+
+    /** If SPECIALIZED, hand my rotors to an Engine generated for them
+     *  (see SpecializedEngines) after each setRotors, once code for them
+     *  has been generated or a message is long enough to repay
+     *  generating it (see EngineSelector.GENERATE), and to a CoreEngine
+     *  until then; otherwise choose automatically. */
+    void setSpecialized(boolean specialized) {
+        setEngine(specialized ? EngineKind.SPECIALIZED : EngineKind.AUTO);
+    }
+
+    /** Choose engines with SELECTOR, which I share with the other machines
+     *  of my Configuration. */
+    void setEngineSelector(EngineSelector selector) {
+        _selector = selector;
+    }
+
+    /** Return my current Engine, or null if my rotors convert directly. */
+    Engine engine() {
+        return _engine;
+    }
+
+    /** Return the kind of engine converting the current message, or null
+     *  if none has been chosen yet. */
+    EngineKind engineKind() {
+        return _chosen;
+    }
+
+    /** Note that N more characters of the current message are about to be
+     *  converted.  Unless my engine is pinned, choose an engine for the
+     *  message at its first character, again each time its length passes
+     *  one at which EngineSelector changes its choice, and again before
+     *  each run long enough to be timed, switching engines if the choice
+     *  differs.  If SPECIALIZED is pinned, switch from a CoreEngine to
+     *  generated code once the message is long enough to repay it. */
+    private void expect(long n) {
+        long run = _run + n;
+        EngineKind kind = null;
+        if (_kind == EngineKind.AUTO && !Main.verbose()
+            && (_chosen == null || n >= EngineSelector.MEASURED
+                || passes(run, EngineSelector.TINY)
+                || passes(run, EngineSelector.GENERATE))) {
+            boolean generated =
+                _core != null && SpecializedEngines.generated(_core);
+            kind = _selector.choose(_alphabet.size(), _keystreamCache != null,
+                                    _core != null
+                                    || _converted >= EngineSelector.TINY,
+                                    generated, run);
+        } else if (_kind == EngineKind.SPECIALIZED && !Main.verbose()
+                   && _chosen == EngineKind.CORE
+                   && (n >= EngineSelector.GENERATE
+                       || passes(run, EngineSelector.GENERATE))) {
+            kind = _kind;
+        }
+        _run = run;
+        _converted += n;
+        if (kind != null && (kind != _chosen || _kind != EngineKind.AUTO)) {
+            syncRotors();
+            _engine = null;
+            _keystream = null;
+            start(kind);
+        }
+    }
+
+    /** Return true iff the current message, now _run characters long,
+     *  reaches LENGTH characters once it is RUN characters long. */
+    private boolean passes(long run, long length) {
+        return _run < length && run >= length;
+    }
+
+    /** Start converting with KIND at my current settings.  Where KIND
+     *  cannot convert my rotors, use the nearest kind that can: a
+     *  CoreEngine in place of a keystream or generated code, and the
+     *  rotors themselves if they cannot be compiled. */
+    private void start(EngineKind kind) {
+        _chosen = EngineKind.ROTORS;
+        if (kind == EngineKind.ROTORS) {
+            return;
+        }
+        if (_core == null) {
+            _core = RotorCore.compile(slots());
+        }
+        int[] pos = positions();
+        if (_core == null || !_core.accepts(pos)) {
+            return;
+        }
+        if (kind == EngineKind.KEYSTREAM && _keystreamCache != null
+            && _alphabet.size() <= Keystream.MAX_SIZE) {
+            _chosen = kind;
+            _keystream = _keystreamCache.lookup(_core, pos);
+            _ksStep = _ksSteps = 0;
+            _ksTable = null;
+        } else if (kind == EngineKind.COMPACT
+                   && _alphabet.size() <= CompactEngine.MAX_SIZE) {
+            _chosen = kind;
+            _engine = new CompactEngine(_core);
+            _engine.setPositions(pos);
+        } else if (kind == EngineKind.SPECIALIZED
+                   && (SpecializedEngines.generated(_core)
+                       || _run >= EngineSelector.GENERATE)) {
+            _engine = SpecializedEngines.create(_core, pos);
+            _chosen = _engine instanceof CoreEngine ? EngineKind.CORE : kind;
+        } else {
+            _chosen = EngineKind.CORE;
+            _engine = new CoreEngine(_core);
+            _engine.setPositions(pos);
+        }
+    }
+
+    /** Copy the settings of _engine back to my rotors, if it has moved
+     *  them since they were last copied. */
+    private void syncRotors() {
+        if (_engineAhead) {
+            _engineAhead = false;
+            int[] pos = new int[_numRotors];
+            _engine.getPositions(pos);
+            for (int k = 0; k < _numRotors; k += 1) {
+                Rotor r = _hashmapOfRotors.get(_rotorKeys[k]);
+                if (r.rotates()) {
+                    r.set(pos[k]);
+                }
+            }
+        }
+    }
+
+    /** Take the rotor substitutions following each setRotors from CACHE,
+     *  or compute them afresh if CACHE is null. */
+    void setKeystreamCache(KeystreamCache cache) {
+        _keystreamCache = cache;
+        _keystream = null;
+    }
+
+    /** Return my rotors, from the reflector to the fast rotor. */
+    Rotor[] slots() {
+        Rotor[] slots = new Rotor[_numRotors];
+        for (int k = 0; k < _numRotors; k += 1) {
+            slots[k] = getRotor(k);
+        }
+        return slots;
+    }
+
+    /** Return my rotors compiled into a RotorCore, or null if they
+     *  cannot be. */
+    RotorCore core() {
+        if (_core == null) {
+            _core = RotorCore.compile(slots());
+        }
+        return _core;
+    }
+
+    /** Return the current settings of my rotors, from the reflector to
+     *  the fast rotor. */
+    int[] positions() {
+        int[] pos = new int[_numRotors];
+        for (int k = 0; k < _numRotors; k += 1) {
+            pos[k] = getRotor(k).setting();
+        }
+        return pos;
+    }
+
+    /** Return the index of the current step in _ksTable, advancing to the
+     *  next step, or -1 if _keystream cannot supply it (in which case
+     *  _keystream is dropped and, the rotors having already advanced for
+     *  this step, a CoreEngine takes over from the next one). */
+    private int keystreamStep() {
+        if (_ksStep == _ksSteps) {
+            if (!_keystream.extend(_ksStep)) {
+                _keystream = null;
+                _engine = new CoreEngine(_core);
+                _engine.setPositions(positions());
+                return -1;
+            }
+            _ksSteps = _keystream.steps();
+            _ksTable = _keystream.table();
+            _ksBuffer = _keystream.buffer();
+            if (_ksStep == _ksSteps) {
+                _ksStep = 0;
+            }
+        }
+        int step = _ksStep;
+        _ksStep += 1;
+        return step;
     }
 
     /** Return the current plugboard's permutation. */
@@ -74,7 +403,31 @@ class Machine<Foo> {
      *  index in the range 0..alphabet size - 1), after first advancing
      *  the machine. */
     int convert(int c) {
+        expect(1);
+        return convertOne(c);
+    }
+
+    /** Return the result of converting C, as for convert(C), once expect
+     *  has been told of it. */
+    private int convertOne(int c) {
+        if (_engine != null) {
+            if (!Main.verbose()) {
+                _engineAhead = true;
+                return plugboard().permute(_engine.convert(
+                    plugboard().permute(c)));
+            }
+            syncRotors();
+            _engine = null;
+        }
         advanceRotors();
+        if (_keystream != null && !Main.verbose()) {
+            int step = keystreamStep();
+            if (step >= 0) {
+                int i = step * _alphabet.size() + plugboard().permute(c);
+                c = _ksTable != null ? _ksTable[i] : _ksBuffer.get(i);
+                return plugboard().permute(c);
+            }
+        }
         if (Main.verbose()) {
             System.err.printf("[");
             for (int r = 1; r < numRotors(); r += 1) {
@@ -127,14 +480,98 @@ class Machine<Foo> {
     }
 
     /** Returns the encoding/decoding of MSG, updating the state of
-     *  the rotors accordingly. */
+     *  the rotors accordingly.  Every character of MSG must be in my
+     *  alphabet. */
     String convert(String msg) {
-        String resultString = "";
-        for (int i = 0; i < msg.length(); i++) {
-            resultString += _alphabet.toChar
-                    (convert(_alphabet.toInt(msg.charAt(i))));
+        int[] chars = new int[msg.length()];
+        for (int i = 0; i < chars.length; i += 1) {
+            chars[i] = _alphabet.toInt(msg.charAt(i));
+            if (chars[i] < 0) {
+                throw error("character %c not in alphabet", msg.charAt(i));
+            }
+        }
+        convert(chars, 0, chars.length);
+        char[] result = new char[chars.length];
+        for (int i = 0; i < chars.length; i += 1) {
+            result[i] = _alphabet.toChar(chars[i]);
+        }
+        return new String(result);
+    }
+
+    /** Convert CHARS[FROM .. TO-1], each an index in my alphabet, in
+     *  place, advancing the machine before each. */
+    void convert(int[] chars, int from, int to) {
+        expect(to - from);
+        long start = System.nanoTime();
+        if (_engine != null && !Main.verbose()) {
+            int[] plugboard = plugboard().forwardTable();
+            for (int i = from; i < to; i += 1) {
+                chars[i] = plugboard[chars[i]];
+            }
+            _engineAhead = true;
+            _engine.convert(chars, from, to);
+            for (int i = from; i < to; i += 1) {
+                chars[i] = plugboard[chars[i]];
+            }
+        } else {
+            for (int i = from; i < to; i += 1) {
+                chars[i] = convertOne(chars[i]);
+            }
+        }
+        if (_chosen != null) {
+            _selector.record(_chosen, to - from, System.nanoTime() - start);
+        }
+    }
+
+    /** Convert the LEN bytes of BYTES starting at OFF in place, each
+     *  standing for the character of its value in my alphabet, which
+     *  must be Alphabet.bytes(). */
+    void convert(byte[] bytes, int off, int len) {
+        if (!_alphabet.isBytes()) {
+            throw error("alphabet is not all byte values");
+        }
+        if (_byteScratch.length < len) {
+            _byteScratch = new int[len];
+        }
+        int[] ints = _byteScratch;
+        for (int i = 0; i < len; i += 1) {
+            ints[i] = bytes[off + i] & 0xff;
+        }
+        convert(ints, 0, len);
+        for (int i = 0; i < len; i += 1) {
+            bytes[off + i] = (byte) ints[i];
+        }
+    }
+
+    /** Convert the LEN characters of CHARS starting at OFF in place,
+     *  treating those not in my alphabet as POLICY directs.  Return the
+     *  number of characters left, which start at OFF.  Under
+     *  OutsideAlphabet.ERROR, nothing is converted unless every character
+     *  is in my alphabet. */
+    int convert(char[] chars, int off, int len, OutsideAlphabet policy) {
+        int[] ints = new int[len];
+        int[] where = new int[len];
+        int n = 0;
+        int w = off;
+        for (int i = off; i < off + len; i += 1) {
+            char ch = chars[i];
+            int k = _alphabet.toInt(ch);
+            if (k >= 0) {
+                ints[n] = k;
+                where[n] = w;
+                n += 1;
+                chars[w++] = ch;
+            } else if (policy == OutsideAlphabet.PASS) {
+                chars[w++] = ch;
+            } else if (policy == OutsideAlphabet.ERROR) {
+                throw error("character '%c' not in alphabet", ch);
+            }
+        }
+        convert(ints, 0, n);
+        for (int j = 0; j < n; j += 1) {
+            chars[where[j]] = _alphabet.toChar(ints[j]);
         }
-        return resultString;
+        return w - off;
     }
 
     HashMap accessHashofRotors() {
@@ -151,6 +588,53 @@ class Machine<Foo> {
     private HashMap<String, Rotor> _hashmapOfRotors = new HashMap<>(_numRotors);
     /** list of rotors names. */
     private String[] _rotorKeys;
+    /** The available rotors, in the order given to my constructor. */
+    private final Rotor[] _available;
+    /** True for the indices in _available of reflectors. */
+    private final boolean[] _reflecting;
+    /** True for the indices in _available of moving rotors. */
+    private final boolean[] _rotating;
+    /** _pairSeen[C] == _pairStamp iff index C has been seen in the
+     *  plugboard being checked by rekey. */
+    private final long[] _pairSeen;
+    /** Stamp of the current check of a plugboard by rekey; a long, so
+     *  that it never wraps back to a stamp left in _pairSeen. */
+    private long _pairStamp;
+    /** The plugboard set by rekey, or null if it has not been called. */
+    private Permutation _rekeyed;
+    /** Cache of settings lines, or null. */
+    private SettingsCache _settingsCache;
     /** peanut butter permutation, or plugboard, same thing. */
     private Permutation pbPerm;
+    /** Kind of engine pinned by setEngine, or AUTO. */
+    private EngineKind _kind = EngineKind.AUTO;
+    /** Chooser of engines when _kind is AUTO. */
+    private EngineSelector _selector = new EngineSelector();
+    /** Kind of engine converting the current message, or null. */
+    private EngineKind _chosen;
+    /** Number of characters of the current message converted or about to
+     *  be converted. */
+    private long _run;
+    /** Number of characters converted with the rotors now in my slots. */
+    private long _converted;
+    /** Engine holding my rotor settings, or null. */
+    private Engine _engine;
+    /** True iff _engine has settings not yet copied to my rotors. */
+    private boolean _engineAhead;
+    /** My rotors compiled, or null if not yet compiled. */
+    private RotorCore _core;
+    /** Source of keystreams, or null. */
+    private KeystreamCache _keystreamCache;
+    /** Keystream for the last setRotors, or null if not in use. */
+    private Keystream _keystream;
+    /** Table of _keystream, valid for its first _ksSteps steps. */
+    private char[] _ksTable;
+    /** Buffer of _keystream when it has no table. */
+    private CharBuffer _ksBuffer;
+    /** Number of steps valid in _ksTable. */
+    private int _ksSteps;
+    /** Indices of the bytes being converted by convert(byte[], ...). */
+    private int[] _byteScratch = new int[0];
+    /** Step of _keystream for the next character. */
+    private int _ksStep;
 }
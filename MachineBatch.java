@@ -0,0 +1,224 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import static enigma.EnigmaException.*;
+
+/** A batch of independent Enigma machines that convert in lockstep, each
+ *  machine occupying one lane.  All state is held in flat arrays with the
+ *  lane as the innermost index (settings of slot K of lane L are at
+ *  K * lanes() + L), and every pass over the rotors runs one loop across
+ *  all lanes, so that the inner loops are simple table gathers.  Each
+ *  lane produces exactly what Machine.convert would on the machine it
+ *  was copied from.
+ *  @author Flynn"TheFox"Gray
+ */
+class MachineBatch {
+
+    /** An empty batch for machines with NUMROTORS rotor slots over an
+     *  alphabet of SIZE characters, with room for CAPACITY lanes. */
+    MachineBatch(int numRotors, int size, int capacity) {
+        _numRotors = numRotors;
+        _size = size;
+        _capacity = capacity;
+        _pos = new int[numRotors * capacity];
+        _base = new int[numRotors * capacity];
+        _rotates = new boolean[numRotors * capacity];
+        _plugboard = new int[capacity * size];
+        _forward = new int[0];
+        _inverse = new int[0];
+        _notches = new boolean[0];
+        _c = new int[capacity];
+        _skip = new boolean[capacity];
+        _fastTurned = new boolean[capacity];
+    }
+
+    /** Return the number of lanes in use. */
+    int lanes() {
+        return _lanes;
+    }
+
+    /** Add a lane holding a copy of M's rotors, settings and plugboard,
+     *  and return its number.  M itself is not changed by the batch. */
+    int add(Machine m) {
+        if (_lanes == _capacity) {
+            throw error("machine batch is full");
+        }
+        Rotor[] slots = m.slots();
+        RotorCore core = RotorCore.compile(slots);
+        int[] pos = m.positions();
+        if (m.numRotors() != _numRotors || m.alphabet().size() != _size
+            || core == null || !core.accepts(pos)) {
+            throw error("machine does not fit this batch");
+        }
+        int lane = _lanes;
+        for (int k = 0; k < _numRotors; k += 1) {
+            _pos[k * _capacity + lane] = pos[k];
+            _base[k * _capacity + lane] = poolOffset(slots[k]);
+            _rotates[k * _capacity + lane] = slots[k].rotates();
+        }
+        System.arraycopy(m.plugboard().forwardTable(), 0, _plugboard,
+                         lane * _size, _size);
+        _lanes += 1;
+        return lane;
+    }
+
+    /** Return the offset in my table pool of the tables of ROTOR, adding
+     *  them to the pool if they are not yet there. */
+    private int poolOffset(Rotor rotor) {
+        Integer offset = _pooled.get(rotor);
+        if (offset == null) {
+            offset = _forward.length;
+            _forward = Arrays.copyOf(_forward, offset + _size);
+            _inverse = Arrays.copyOf(_inverse, offset + _size);
+            _notches = Arrays.copyOf(_notches, offset + _size);
+            System.arraycopy(rotor.permutation().forwardTable(), 0,
+                             _forward, offset, _size);
+            System.arraycopy(rotor.permutation().inverseTable(), 0,
+                             _inverse, offset, _size);
+            String notches = rotor.notches();
+            for (int i = 0; i < notches.length(); i += 1) {
+                int n = rotor.alphabet().toInt(notches.charAt(i));
+                if (n >= 0) {
+                    _notches[offset + n] = true;
+                }
+            }
+            _pooled.put(rotor, offset);
+        }
+        return offset;
+    }
+
+    /** Return the rotor settings of LANE, from the reflector to the fast
+     *  rotor. */
+    int[] positions(int lane) {
+        int[] result = new int[_numRotors];
+        for (int k = 0; k < _numRotors; k += 1) {
+            result[k] = _pos[k * _capacity + lane];
+        }
+        return result;
+    }
+
+    /** Advance every lane and convert IN[L] (a character index) on lane
+     *  L, storing the result in OUT[L]. */
+    void convert(int[] in, int[] out) {
+        int lanes = _lanes;
+        int[] c = _c;
+        advanceRotors();
+        for (int l = 0; l < lanes; l += 1) {
+            c[l] = _plugboard[l * _size + in[l]];
+        }
+        for (int k = _numRotors - 1; k >= 0; k -= 1) {
+            shiftAll(_forward, k, c);
+        }
+        for (int k = 1; k < _numRotors; k += 1) {
+            shiftAll(_inverse, k, c);
+        }
+        for (int l = 0; l < lanes; l += 1) {
+            out[l] = _plugboard[l * _size + c[l]];
+        }
+    }
+
+    /** Convert MSG (character indices) on every lane, returning the
+     *  result of lane L as element L. */
+    int[][] convert(int[] msg) {
+        int[][] result = new int[_lanes][msg.length];
+        int[] in = new int[_lanes];
+        int[] out = new int[_lanes];
+        for (int i = 0; i < msg.length; i += 1) {
+            Arrays.fill(in, msg[i]);
+            convert(in, out);
+            for (int l = 0; l < _lanes; l += 1) {
+                result[l][i] = out[l];
+            }
+        }
+        return result;
+    }
+
+    /** Replace C[L] on every lane L by its conversion through the rotor
+     *  in slot K of that lane, using pooled TABLES. */
+    private void shiftAll(int[] tables, int k, int[] c) {
+        int row = k * _capacity;
+        int size = _size;
+        for (int l = 0; l < _lanes; l += 1) {
+            int setting = _pos[row + l];
+            int i = c[l] + setting;
+            if (i >= size) {
+                i -= size;
+            }
+            int r = tables[_base[row + l] + i] - setting;
+            if (r < 0) {
+                r += size;
+            }
+            c[l] = r;
+        }
+    }
+
+    /** Advance the rotors of every lane as Machine does before converting
+     *  a character. */
+    private void advanceRotors() {
+        int lanes = _lanes;
+        Arrays.fill(_skip, 0, lanes, false);
+        Arrays.fill(_fastTurned, 0, lanes, false);
+        for (int k = 1; k < _numRotors - 1; k += 1) {
+            int row = k * _capacity, next = row + _capacity;
+            boolean fast = k + 1 == _numRotors - 1;
+            for (int l = 0; l < lanes; l += 1) {
+                if (_skip[l]) {
+                    _skip[l] = false;
+                } else if (_rotates[row + l]
+                           && _notches[_base[next + l] + _pos[next + l]]) {
+                    advance(row + l);
+                    advance(next + l);
+                    _fastTurned[l] |= fast;
+                    _skip[l] = true;
+                }
+            }
+        }
+        int row = (_numRotors - 1) * _capacity;
+        for (int l = 0; l < lanes; l += 1) {
+            if (!_fastTurned[l]) {
+                advance(row + l);
+            }
+        }
+    }
+
+    /** Advance the rotor whose setting is at _pos[I], if it moves. */
+    private void advance(int i) {
+        if (_rotates[i]) {
+            _pos[i] = _pos[i] == _size - 1 ? 0 : _pos[i] + 1;
+        }
+    }
+
+    /** Number of rotor slots of every lane. */
+    private final int _numRotors;
+    /** Size of the alphabet. */
+    private final int _size;
+    /** Most lanes I can hold. */
+    private final int _capacity;
+    /** Number of lanes in use. */
+    private int _lanes;
+    /** Setting of each slot of each lane. */
+    private final int[] _pos;
+    /** Offset in the pools of the rotor in each slot of each lane. */
+    private final int[] _base;
+    /** True for each slot of each lane whose rotor moves. */
+    private final boolean[] _rotates;
+    /** Plugboard table of each lane, _size entries per lane. */
+    private final int[] _plugboard;
+    /** Pool of forward rotor tables. */
+    private int[] _forward;
+    /** Pool of inverse rotor tables, at the same offsets as _forward. */
+    private int[] _inverse;
+    /** Pool of notch tables, at the same offsets as _forward. */
+    private boolean[] _notches;
+    /** Offset of each pooled rotor. */
+    private final IdentityHashMap<Rotor, Integer> _pooled =
+        new IdentityHashMap<>();
+    /** Character being converted on each lane. */
+    private final int[] _c;
+    /** Lanes whose next slot is skipped while stepping. */
+    private final boolean[] _skip;
+    /** Lanes whose fast rotor has already moved in this step. */
+    private final boolean[] _fastTurned;
+}
@@ -0,0 +1,69 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the MachineBatch class.
+ *  @author Flynn"TheFox"Gray
+ */
+public class MachineBatchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return the character indices of MSG. */
+    private int[] indices(String msg) {
+        int[] result = new int[msg.length()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = UPPER.toInt(msg.charAt(i));
+        }
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testMatchesMachines() {
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 1500; i += 1) {
+            msg.append(UPPER_STRING.charAt((i * 11 + i / 7) % 26));
+        }
+        int lanes = 24;
+        MachineBatch batch = new MachineBatch(5, 26, lanes);
+        Machine[] machines = new Machine[lanes];
+        for (int l = 0; l < lanes; l += 1) {
+            String[] rotors = {
+                l % 2 == 0 ? "B" : "C", l % 3 == 0 ? "Beta" : "Gamma",
+                NAVAL_MOVING[l % 8][0], NAVAL_MOVING[(l + 3) % 8][0],
+                NAVAL_MOVING[(l + 5) % 8][0],
+            };
+            String setting = "" + UPPER.toChar(l) + UPPER.toChar(25 - l)
+                + UPPER.toChar((l * 7) % 26) + UPPER.toChar((l * 3) % 26);
+            machines[l] = navalMachine(rotors, setting,
+                                       l % 4 == 0 ? "" : "(AQ) (EP) (TZ)");
+            assertEquals(l, batch.add(machines[l]));
+        }
+        int[][] result = batch.convert(indices(msg.toString()));
+        for (int l = 0; l < lanes; l += 1) {
+            int[] expected = indices(machines[l].convert(msg.toString()));
+            assertArrayEquals(expected, result[l]);
+            assertArrayEquals(machines[l].positions(), batch.positions(l));
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testFull() {
+        MachineBatch batch = new MachineBatch(5, 26, 1);
+        String[] rotors = { "B", "Beta", "I", "II", "III" };
+        batch.add(navalMachine(rotors, "AAAA", ""));
+        batch.add(navalMachine(rotors, "AAAA", ""));
+    }
+
+}
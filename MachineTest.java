@@ -1,9 +1,11 @@
 package enigma;
 import java.util.HashMap;
+import java.util.Scanner;
 import org.junit.Test;
 import org.junit.Rule;
 import org.junit.rules.Timeout;
 import static org.junit.Assert.*;
+import static enigma.TestUtils.*;
 
 /** The suite of all JUnit tests for the Machine class.
  *  @Flynn"TheFox"Gray
@@ -69,4 +71,117 @@ public class MachineTest {
         assertEquals(25, mach.convert(24));
     }
 
+    @Test
+    public void testConvertBytes() {
+        StringBuilder config = new StringBuilder(Configuration.BYTES);
+        config.append("\n 3 1\n F N (");
+        for (int i = 0; i < 256; i += 1) {
+            config.append(String.format("%02x", i * 37 % 256));
+        }
+        config.append(")\n M M00ff (00ff) (0102) (7f80)\n R R");
+        for (int i = 0; i < 256; i += 2) {
+            config.append(String.format(" (%02x%02x)", i, i + 1));
+        }
+        Configuration bytes =
+            Configuration.read(new Scanner(config.toString()));
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i += 1) {
+            data[i] = (byte) (i * 7);
+        }
+        byte[] copy = data.clone();
+        for (int pass = 0; pass < 2; pass += 1) {
+            Machine mach = bytes.newMachine();
+            Main.setUp(mach, "* R F M 10fe (4142)".split(" "));
+            mach.convert(copy, 0, copy.length);
+            if (pass == 0) {
+                assertNotEquals(data[0], copy[0]);
+            }
+        }
+        assertArrayEquals(data, copy);
+    }
+
+    @Test
+    public void testRekey() {
+        Configuration config =
+            Configuration.read(new Scanner(NAVAL_CONFIG));
+        Machine keyed = config.newMachine();
+        Machine parsed = config.newMachine();
+        String[][] names = {
+            {"B", "Beta", "I", "II", "III"},
+            {"B", "Beta", "III", "IV", "I"},
+        };
+        int[][] rotors = new int[names.length][5];
+        for (int i = 0; i < names.length; i += 1) {
+            for (int k = 0; k < 5; k += 1) {
+                rotors[i][k] = keyed.rotorIndex(names[i][k]);
+            }
+        }
+        keyed.rekey(rotors[0], new int[] {0, 0, 0, 0},
+                    new int[] {0, 16, 4, 15});
+        Main.setUp(parsed, "* B Beta I II III AAAA (AQ) (EP)");
+        assertEquals("IHBDQQMTQZ", keyed.convert("HELLOWORLD"));
+        keyed.rekey(rotors[1], new int[] {0, 23, 11, 4},
+                    new int[] {7, 16, 4, 23, 8, 15, 19, 17, 1, 24});
+        Main.setUp(parsed, "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)");
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        assertEquals(parsed.convert(msg), keyed.convert(msg));
+        assertArrayEquals(parsed.positions(), keyed.positions());
+        keyed.rekey(rotors[0], new int[] {0, 0, 0, 0}, new int[0]);
+        assertEquals(3, keyed.plugboard().permute(3));
+        assertEquals(23, keyed.plugboard().permute(23));
+    }
+
+    @Test
+    public void testRekeyErrors() {
+        Configuration config =
+            Configuration.read(new Scanner(NAVAL_CONFIG));
+        Machine mach = config.newMachine();
+        Main.setUp(mach, "* B Beta I II III AAAA (AQ) (EP)");
+        int[] rotors = {mach.rotorIndex("B"), mach.rotorIndex("Beta"),
+                        mach.rotorIndex("I"), mach.rotorIndex("II"),
+                        mach.rotorIndex("III")};
+        int[][][] bad = {
+            {{rotors[1], rotors[0], rotors[2], rotors[3], rotors[4]},
+             {0, 0, 0, 0}, {}},
+            {{rotors[0], mach.rotorIndex("IV"), rotors[2], rotors[3],
+              rotors[4]}, {0, 0, 0, 0}, {}},
+            {rotors, {0, 0, 0}, {}},
+            {rotors, {0, 0, 26, 0}, {}},
+            {rotors, {0, 0, 0, 0}, {1, 2, 3}},
+            {rotors, {0, 0, 0, 0}, {1, 2, 2, 3}},
+            {{rotors[0], rotors[1], rotors[2], rotors[3], 99},
+             {0, 0, 0, 0}, {}},
+        };
+        for (int[][] key : bad) {
+            try {
+                mach.rekey(key[0], key[1], key[2]);
+                fail("bad key accepted");
+            } catch (EnigmaException excp) {
+                assertEquals("IHBDQQMTQZ", mach.convert("HELLOWORLD"));
+                Main.setUp(mach, "* B Beta I II III AAAA (AQ) (EP)");
+            }
+        }
+    }
+
+    @Test
+    public void testNotInAlphabet() {
+        Configuration config =
+            Configuration.read(new Scanner(NAVAL_CONFIG));
+        for (EngineKind kind : EngineKind.values()) {
+            Machine mach = config.newMachine();
+            mach.setKeystreamCache(new KeystreamCache(1 << 20));
+            mach.setEngine(kind);
+            Main.setUp(mach, "* B Beta I II III AAAA (AQ) (EP)");
+            for (String msg : new String[] {"a", "HELLOa"}) {
+                try {
+                    mach.convert(msg);
+                    fail(kind + " converted a character not in the alphabet");
+                } catch (EnigmaException excp) {
+                    assertEquals("character a not in alphabet",
+                                 excp.getMessage());
+                }
+            }
+        }
+    }
+
 }
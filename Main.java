@@ -1,13 +1,25 @@
 package enigma;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
-import java.util.ArrayList;
 import java.util.Scanner;
 import java.util.List;
-import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
 
 import ucb.util.CommandArgs;
 
@@ -26,18 +38,90 @@ public final class Main {
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
      *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  otherwise with code 1.
+     *
+     *  With --index=FILE, also writes a CheckpointIndex of the output to
+     *  FILE.  With --range=FROM:TO as well, ARGS[1] must instead name an
+     *  output file so indexed, and only its characters FROM (inclusive)
+     *  to TO (exclusive) are converted back.  With --serve=SOCKET, no
+     *  input is read; instead an EnigmaServer listens on the Unix domain
+     *  socket SOCKET until the process is killed, picking up changes to
+     *  ARGS[0] as they are made.  With --batch=MANIFEST,
+     *  there are no ARGS; instead every job listed in MANIFEST is run by
+     *  a BatchRunner, and the exit code is 1 iff any job fails.  With
+     *  --binary=SETTINGS, the configuration must be over all byte values
+     *  (see Configuration.BYTES), and the input is converted byte for
+     *  byte, as set up by the settings line SETTINGS, into the output.
+     *  With --engine=NAME, every message is converted with the EngineKind
+     *  so named (--specialize being --engine=specialized) instead of
+     *  one chosen for it by an EngineSelector.  With --pipeline, reading,
+     *  converting and writing run concurrently in a Pipeline.  With
+     *  --interactive, each character is converted and written as soon
+     *  as it is read, by a Teletype.  With --message-cache=BYTES, the
+     *  output of each message line not being indexed is kept in a
+     *  MessageCache of about BYTES bytes, and a line repeated from the
+     *  same settings is printed from there.  Input and output files
+     *  whose names end in .gz are read and written in gzip format, the
+     *  output being compressed on several threads (see
+     *  GzipBlockOutputStream). */
     public static void main(String... args) {
         try {
             CommandArgs options =
-                new CommandArgs("--verbose --=(.*){1,3}", args);
-            if (!options.ok()) {
-                throw error("Usage: java enigma.Main [--verbose] "
-                            + "[INPUT [OUTPUT]]");
+                new CommandArgs("--verbose --metrics --specialize "
+                                + "--engine=(.+) --keystore=(.+) "
+                                + "--index=(.+) --range=(\\d+:\\d+) "
+                                + "--serve=(.+) --batch=(.+) --binary=(.+) "
+                                + "--pipeline --interactive "
+                                + "--message-cache=(\\d+) "
+                                + "--=(.*){0,3}", args);
+            boolean batch = options.contains("--batch");
+            if (!options.ok() || batch == !options.get("--").isEmpty()
+                || (batch || options.contains("--binary")
+                    || options.contains("--pipeline")
+                    || options.contains("--interactive"))
+                    && options.contains("--index")
+                || options.contains("--interactive")
+                    && (options.contains("--binary")
+                        || options.contains("--pipeline"))
+                || options.contains("--specialize")
+                    && options.contains("--engine")) {
+                throw error(USAGE);
             }
 
             _verbose = options.contains("--verbose");
-            new Main(options.get("--")).process();
+            _metrics = options.contains("--metrics");
+            _keystore = options.getFirst("--keystore");
+            _engine = options.contains("--engine")
+                ? EngineKind.named(options.getFirst("--engine"))
+                : options.contains("--specialize") ? EngineKind.SPECIALIZED
+                : EngineKind.AUTO;
+            _indexName = options.getFirst("--index");
+            if (options.contains("--message-cache")) {
+                _messageCache = new MessageCache(
+                    number(options.getFirst("--message-cache")));
+            }
+            if (batch) {
+                BatchRunner runner =
+                    new BatchRunner(Runtime.getRuntime().availableProcessors());
+                int failed = runner.run(getInput(options.getFirst("--batch")));
+                if (_metrics) {
+                    System.err.println(runner.keystreams().stats());
+                    System.err.print(runner.settingsStats());
+                    if (_messageCache != null) {
+                        System.err.println(_messageCache.stats());
+                    }
+                }
+                if (failed == 0) {
+                    return;
+                }
+                System.exit(1);
+            }
+            Main main = new Main(options.get("--"));
+            try {
+                main.run(options);
+            } finally {
+                main.closeOutput();
+            }
             return;
         } catch (EnigmaException excp) {
             System.err.printf("Error: %s%n", excp.getMessage());
@@ -45,12 +129,69 @@ public final class Main {
         System.exit(1);
     }
 
+    /** Return the number written as the decimal digits DIGITS, from an
+     *  option value, rejecting one too large for a long as a usage
+     *  error. */
+    private static long number(String digits) {
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException excp) {
+            throw error(USAGE);
+        }
+    }
+
+    /** Do what OPTIONS, the options given to main, ask for, other than
+     *  --batch. */
+    private void run(CommandArgs options) {
+        if (options.contains("--serve")) {
+            serve(options.getFirst("--serve"));
+        } else if (options.contains("--range")) {
+            String[] range = options.getFirst("--range").split(":");
+            if (range.length != 2) {
+                throw error(USAGE);
+            }
+            processRange(number(range[0]), number(range[1]));
+        } else {
+            Pipeline pipeline = null;
+            if (options.contains("--binary")) {
+                processBinary(options.getFirst("--binary"));
+            } else if (options.contains("--pipeline")) {
+                pipeline = processPipelined();
+            } else if (options.contains("--interactive")) {
+                processInteractive();
+            } else {
+                process();
+            }
+            if (_metrics) {
+                System.err.println(_keystreams.stats());
+                System.err.println(_configuration.settingsCache().stats());
+                System.err.println(_configuration.engineSelector().stats());
+                if (pipeline != null) {
+                    System.err.println(pipeline.stats());
+                }
+                if (_messageCache != null) {
+                    System.err.println(_messageCache.stats());
+                }
+            }
+        }
+    }
+
+    /** Close _output, finishing any compressed stream, unless it is the
+     *  standard output. */
+    private void closeOutput() {
+        if (_output != System.out) {
+            _output.close();
+        }
+    }
+
     /** Open the necessary files for non-option arguments ARGS (see comment
       *  on main). */
     Main(List<String> args) {
+        _configName = args.get(0);
         _config = getInput(args.get(0));
 
         if (args.size() > 1) {
+            _inputName = args.get(1);
             _input = getInput(args.get(1));
         } else {
             _input = new Scanner(System.in);
@@ -63,30 +204,78 @@ public final class Main {
         }
     }
 
+    /** A Main converting INPUT to OUTPUT with machines of CONFIGURATION,
+     *  taking keystreams from KEYSTREAMS. */
+    Main(Configuration configuration, Scanner input, PrintStream output,
+         KeystreamCache keystreams) {
+        _configuration = configuration;
+        _input = input;
+        _output = output;
+        _keystreams = keystreams;
+    }
+
     /** Return a Scanner reading from the file named NAME. */
-    private Scanner getInput(String name) {
+    static Scanner getInput(String name) {
         try {
+            if (compressed(name)) {
+                return new Scanner(getInputStream(name));
+            }
             return new Scanner(new File(name));
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
-    /** Return a PrintStream writing to the file named NAME. */
-    private PrintStream getOutput(String name) {
+    /** Return an InputStream reading the file named NAME, uncompressing
+     *  it if NAME is compressed. */
+    static InputStream getInputStream(String name) {
+        try {
+            InputStream result = new FileInputStream(name);
+            return compressed(name)
+                ? new GZIPInputStream(result, GZIP_BUFFER) : result;
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a PrintStream writing to the file named NAME, in gzip
+     *  format if NAME is compressed.  A compressed stream is only
+     *  complete once closed. */
+    static PrintStream getOutput(String name) {
         try {
+            if (compressed(name)) {
+                return new PrintStream(new GzipBlockOutputStream(
+                    new FileOutputStream(name),
+                    Runtime.getRuntime().availableProcessors()));
+            }
             return new PrintStream(new File(name));
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
+    /** Return true iff the file named NAME is read and written in gzip
+     *  format. */
+    static boolean compressed(String name) {
+        return name.endsWith(".gz");
+    }
+
     /** Configure an Enigma machine from the contents of configuration
      *  file _config and apply it to the messages in _input, sending the
      *  results to _output. */
-    private void process() {
+    void process() {
 
         Machine M = readConfig();
+        if (_keystreams == null) {
+            _keystreams = newKeystreamCache();
+        }
+        M.setKeystreamCache(_keystreams);
+        M.setEngine(_engine);
+        PrintStream indexOut = null;
+        if (_indexName != null) {
+            indexOut = getOutput(_indexName);
+            _checkpoints = new CheckpointIndex(indexOut, CHECKPOINT_INTERVAL);
+        }
 
         boolean empty = true;
         boolean alreadyGivenConfig = false;
@@ -99,9 +288,13 @@ public final class Main {
 
             if (currLineList[0].equals("*")) {
                 alreadyGivenConfig = true;
-                setUp(M, currLineList);
+                setUp(M, currLineString);
+                if (_checkpoints != null) {
+                    _checkpoints.section(_charCount, currLineString);
+                }
             } else if (currLineList.length == 0) {
                 _output.println();
+                _outputBytes += LINE_SEPARATOR_BYTES;
             } else {
                 if (!alreadyGivenConfig) {
                     throw new EnigmaException("No config");
@@ -112,47 +305,198 @@ public final class Main {
         if (empty) {
             throw new EnigmaException("empty input");
         }
+        if (indexOut != null) {
+            indexOut.close();
+        }
     }
 
-    /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. */
-    private Machine readConfig() {
+    /** As process(), but with reading, conversion and writing each on a
+     *  thread of its own.  Return the Pipeline that ran. */
+    private Pipeline processPipelined() {
+        Machine M = readConfig();
+        _keystreams = newKeystreamCache();
+        M.setKeystreamCache(_keystreams);
+        M.setEngine(_engine);
+        Pipeline pipeline = new Pipeline(M, _input, _output);
+        pipeline.setMessageCache(_messageCache);
+        pipeline.run();
+        return pipeline;
+    }
+
+    /** As process(), but converting and writing each character as soon
+     *  as it is read, with a Teletype. */
+    private void processInteractive() {
+        Machine M = readConfig();
+        _keystreams = newKeystreamCache();
+        M.setKeystreamCache(_keystreams);
+        M.setEngine(_engine);
+        InputStream in =
+            _inputName == null ? System.in : getInputStream(_inputName);
         try {
-            _alphabet = new Alphabet(_config.nextLine());
-            int numRotors = _config.nextInt();
-            int numPawls = _config.nextInt();
-            ArrayList<Rotor> rotorsArrayList = new ArrayList<Rotor>();
-            while (_config.hasNext()) {
-                rotorsArrayList.add(readRotor());
+            new Teletype(M, in, _output, Charset.defaultCharset()).run();
+        } finally {
+            if (in != System.in) {
+                try {
+                    in.close();
+                } catch (IOException excp) {
+                    throw error("could not close %s", _inputName);
+                }
             }
-            return new Machine(_alphabet, numRotors, numPawls, rotorsArrayList);
-        } catch (NoSuchElementException excp) {
-            throw error("configuration file truncated");
         }
     }
 
-    /** Return a rotor, reading its description from _config. */
-    private Rotor readRotor() {
-        try {
-            String name = _config.next();
-            String typeAndNotches = _config.next();
-            String rotorType = typeAndNotches.substring(0, 1);
-            String notches = typeAndNotches.substring(1);
-            String permcycles = "";
-            while (_config.hasNext("\\(.*\\)")) {
-                permcycles += _config.next() + " ";
-            }
-            Permutation perm = new Permutation(permcycles, _alphabet);
-
-            if (rotorType.equals("M")) {
-                return new MovingRotor(name, perm, notches);
-            } else if (rotorType.equals("N")) {
-                return new FixedRotor(name, perm);
-            } else {
-                return new Reflector(name, perm);
+    /** Return a new keystream cache as specified by the options, saving
+     *  its keystreams to the --keystore directory, if any, as the
+     *  program exits. */
+    static KeystreamCache newKeystreamCache() {
+        KeystreamCache result = new KeystreamCache(KEYSTREAM_CACHE_BYTES);
+        if (_keystore != null) {
+            result.setStore(new KeystreamStore(Paths.get(_keystore)));
+            Runtime.getRuntime().addShutdownHook(new Thread(result::flush));
+        }
+        return result;
+    }
+
+    /** Configure an Enigma machine from _config and convert back
+     *  characters FROM (inclusive) to TO (exclusive) of the file named
+     *  _inputName, an output of this program indexed by the
+     *  CheckpointIndex named _indexName.  Decoding starts from the last
+     *  checkpoint at or before FROM, and the result goes to _output in
+     *  groups of five. */
+    private void processRange(long from, long to) {
+        if (_indexName == null || _inputName == null || from > to) {
+            throw error("--range needs --index, an input file and FROM <= TO");
+        } else if (compressed(_inputName)) {
+            throw error("--range cannot seek in compressed %s", _inputName);
+        }
+        Machine M = readConfig();
+        M.setEngine(_engine);
+        CheckpointIndex index = CheckpointIndex.read(getInput(_indexName));
+        CheckpointIndex.Checkpoint start = index.checkpointBefore(from);
+        int section = index.sectionAt(start.charIndex());
+        if (section < 0) {
+            throw error("no settings before character %d", from);
+        }
+        setUp(M, index.section(section));
+        M.setRotors(start.positions());
+        section += 1;
+
+        StringBuilder result = new StringBuilder();
+        long i = start.charIndex();
+        try (FileChannel channel = FileChannel.open(Paths.get(_inputName))) {
+            channel.position(start.byteOffset());
+            Reader in = new BufferedReader(
+                Channels.newReader(channel, Charset.defaultCharset()));
+            while (i < to) {
+                int c = in.read();
+                if (c < 0) {
+                    break;
+                } else if (Character.isWhitespace(c)) {
+                    continue;
+                }
+                while (section < index.numSections()
+                       && index.sectionStart(section) <= i) {
+                    setUp(M, index.section(section));
+                    section += 1;
+                }
+                int k = _alphabet.toInt((char) c);
+                if (k < 0) {
+                    throw error("character %c not in alphabet", (char) c);
+                }
+                c = M.convert(k);
+                if (i >= from) {
+                    result.append(_alphabet.toChar(c));
+                }
+                i += 1;
             }
-        } catch (NoSuchElementException excp) {
-            throw error("bad rotor description");
+        } catch (IOException excp) {
+            throw error("could not read %s", _inputName);
+        }
+        if (i < to) {
+            throw error("range extends past end of %s", _inputName);
+        }
+        _output.println(groupsOfFive(result.toString()));
+    }
+
+    /** Configure an Enigma machine from _config, set it up with the
+     *  settings line SETTINGS, and convert the bytes of the input into
+     *  the output as they are, with no decoding as text and no grouping.
+     *  The configuration must be over all byte values. */
+    private void processBinary(String settings) {
+        Machine M = readConfig();
+        if (!_alphabet.isBytes()) {
+            throw error("--binary needs a configuration over %s",
+                        Configuration.BYTES);
+        }
+        _keystreams = newKeystreamCache();
+        M.setKeystreamCache(_keystreams);
+        M.setEngine(_engine);
+        setUp(M, settings);
+
+        ByteBuffer buf = ByteBuffer.allocate(BINARY_BLOCK);
+        try (ReadableByteChannel in = _inputName == null
+             ? Channels.newChannel(System.in)
+             : compressed(_inputName)
+             ? Channels.newChannel(getInputStream(_inputName))
+             : FileChannel.open(Paths.get(_inputName))) {
+            WritableByteChannel out = Channels.newChannel(_output);
+            while (in.read(buf) >= 0) {
+                buf.flip();
+                M.convert(buf.array(), 0, buf.limit());
+                while (buf.hasRemaining()) {
+                    out.write(buf);
+                }
+                buf.clear();
+            }
+        } catch (IOException excp) {
+            throw error("could not read input");
+        }
+        _output.flush();
+        if (_output.checkError()) {
+            throw error("could not write output");
+        }
+    }
+
+    /** Serve conversions on the Unix domain socket named SOCKET until
+     *  interrupted, with the configuration in the file _configName,
+     *  which is reloaded whenever it changes. */
+    private void serve(String socket) {
+        ConfigRegistry registry = new ConfigRegistry();
+        Path configFile = Paths.get(_configName);
+        registry.load(configFile);
+        registry.start();
+        EnigmaServer server =
+            new EnigmaServer(() -> registry.get(configFile),
+                             Paths.get(socket),
+                             Runtime.getRuntime().availableProcessors(),
+                             SERVER_QUEUE);
+        server.start();
+        try {
+            server.await();
+        } catch (InterruptedException excp) {
+            server.close();
+            registry.close();
+        }
+    }
+
+    /** Return an Enigma machine configured from the contents of configuration
+     *  file _config. */
+    private Machine readConfig() {
+        if (_configuration == null) {
+            _configuration = Configuration.read(_config);
+        }
+        _alphabet = _configuration.alphabet();
+        return _configuration.newMachine();
+    }
+
+    /** Set M according to the settings line LINE, through M's
+     *  SettingsCache if it has one. */
+    static void setUp(Machine M, String line) {
+        SettingsCache cache = M.settingsCache();
+        if (cache == null) {
+            setUp(M, SettingsCache.normalize(line).split(" "));
+        } else {
+            cache.apply(M, line);
         }
     }
 
@@ -160,7 +504,7 @@ public final class Main {
      *  which must have the format specified in the assignment.
     @param M the Machine we set up;
      @param currLine the line of input we are dealing with*/
-    private void setUp(Machine M, String[] currLine) {
+    static void setUp(Machine M, String[] currLine) {
         int currIndex = 0;
         if (currLine[currIndex].equals("*")) {
             currIndex++;
@@ -196,7 +540,7 @@ public final class Main {
             throw new EnigmaException("#pawls != number of moving rotors");
         }
 
-        String settings = currLine[currIndex];
+        String settings = M.alphabet().decode(currLine[currIndex]);
 
         if (settings.length() != rotorsList.length - 1) {
             throw new EnigmaException("incorrect number of settings");
@@ -208,10 +552,15 @@ public final class Main {
         for (; currIndex < currLine.length; currIndex++) {
             pbpermcycles += currLine[currIndex] + " ";
         }
-        Permutation pbperm = new Permutation(pbpermcycles, _alphabet);
+        Permutation pbperm = new Permutation(pbpermcycles, M.alphabet());
         M.setPlugboard(pbperm);
     }
 
+    /** Return true iff metrics option specified. */
+    static boolean metrics() {
+        return _metrics;
+    }
+
     /** Return true iff verbose option specified. */
     static boolean verbose() {
         return _verbose;
@@ -223,13 +572,63 @@ public final class Main {
      * @param msg code to translate*/
     private void printMessageLine(Machine M, String msg) {
         msg = msg.replaceAll(" ", "");
-        String outPut = M.convert(msg);
-        for (int pos = 0; pos + 5 < outPut.length();) {
-            pos += 5;
-            outPut = outPut.substring(0, pos) + " " + outPut.substring(pos);
-            pos += 1;
+        String outPut;
+        if (_checkpoints != null) {
+            outPut = groupsOfFive(convertIndexed(M, msg));
+        } else if (_messageCache != null) {
+            outPut = _messageCache.convert(M, msg);
+        } else {
+            outPut = groupsOfFive(M.convert(msg));
         }
         _output.println(outPut);
+        if (_checkpoints != null) {
+            _outputBytes += outPut.getBytes(Charset.defaultCharset()).length
+                + LINE_SEPARATOR_BYTES;
+        }
+    }
+
+    /** Return MSG converted by M, as for M.convert, recording in
+     *  _checkpoints each character of MSG that is due a checkpoint.  MSG
+     *  will be printed as the next line of output.
+     * @param M the Machine we are using
+     * @param msg code to translate, without spaces */
+    private String convertIndexed(Machine M, String msg) {
+        StringBuilder result = new StringBuilder();
+        long prefixBytes = 0;
+        int start = 0;
+        for (int i = 0; i < msg.length(); i += 1) {
+            if (_checkpoints.due(_charCount + i)) {
+                String chunk = M.convert(msg.substring(start, i));
+                result.append(chunk);
+                prefixBytes +=
+                    chunk.getBytes(Charset.defaultCharset()).length;
+                start = i;
+                StringBuilder positions = new StringBuilder();
+                for (int k = 1; k < M.numRotors(); k += 1) {
+                    positions.append(
+                        _alphabet.toChar(M.getRotor(k).setting()));
+                }
+                _checkpoints.checkpoint(new CheckpointIndex.Checkpoint(
+                    _charCount + i, _outputBytes + prefixBytes + i / 5,
+                    positions.toString()));
+            }
+        }
+        result.append(M.convert(msg.substring(start)));
+        _charCount += msg.length();
+        return result.toString();
+    }
+
+    /** Return MSG with a space after every five characters, except at
+     *  the end. */
+    static String groupsOfFive(String msg) {
+        StringBuilder result = new StringBuilder(msg.length() * 6 / 5 + 1);
+        for (int pos = 0; pos < msg.length(); pos += 5) {
+            if (pos > 0) {
+                result.append(' ');
+            }
+            result.append(msg, pos, Math.min(pos + 5, msg.length()));
+        }
+        return result.toString();
     }
 
     /** Alphabet used in this machine. */
@@ -241,9 +640,80 @@ public final class Main {
     /** Source of machine configuration. */
     private Scanner _config;
 
+    /** Name of the configuration file, or null. */
+    private String _configName;
+
+    /** Machine configuration already read, or null to read _config. */
+    private Configuration _configuration;
+
+    /** Keystreams for my machine, or null until process() starts. */
+    private KeystreamCache _keystreams;
+
     /** File for encoded/decoded messages. */
     private PrintStream _output;
 
+    /** Name of the input file, or null for the standard input. */
+    private String _inputName;
+
+    /** Index of _output being written, or null. */
+    private CheckpointIndex _checkpoints;
+
+    /** Number of message characters converted so far. */
+    private long _charCount;
+
+    /** Number of bytes written so far to _output, when indexing. */
+    private long _outputBytes;
+
+    /** Name of the checkpoint index file, or null. */
+    private static String _indexName;
+
+    /** Usage message, as a format. */
+    private static final String USAGE =
+        "Usage: java enigma.Main [--verbose] [--metrics] "
+        + "[--specialize | --engine=NAME] "
+        + "[--keystore=DIR] [--index=FILE "
+        + "[--range=FROM:TO]] [--serve=SOCKET] "
+        + "[--binary=SETTINGS] "
+        + "[--pipeline | --interactive] "
+        + "[--message-cache=BYTES] "
+        + "CONFIG [INPUT [OUTPUT]]%n"
+        + "   or: java enigma.Main [--verbose] "
+        + "[--metrics] [--specialize | --engine=NAME] "
+        + "[--keystore=DIR] [--message-cache=BYTES] "
+        + "--batch=MANIFEST";
+
+    /** Number of requests an EnigmaServer lets wait for a thread. */
+    static final int SERVER_QUEUE = 64;
+
+    /** Number of bytes read and converted at a time by --binary. */
+    static final int BINARY_BLOCK = 1 << 16;
+
+    /** Number of compressed bytes read at a time from a gzip file. */
+    static final int GZIP_BUFFER = 1 << 16;
+
+    /** Number of characters between checkpoints of an index. */
+    static final int CHECKPOINT_INTERVAL = 1024;
+
+    /** Number of bytes in a line separator. */
+    private static final int LINE_SEPARATOR_BYTES =
+        System.lineSeparator().getBytes(Charset.defaultCharset()).length;
+
     /** True if --verbose specified. */
     private static boolean _verbose;
+
+    /** True if --metrics specified. */
+    private static boolean _metrics;
+
+    /** Results of message lines, shared by all Mains, if
+     *  --message-cache was specified; otherwise null. */
+    private static MessageCache _messageCache;
+
+    /** Kind of engine named by --engine (or --specialize), or AUTO. */
+    private static EngineKind _engine = EngineKind.AUTO;
+
+    /** Directory of the shared keystream store, or null for none. */
+    private static String _keystore;
+
+    /** Memory budget in bytes of the keystream cache. */
+    static final long KEYSTREAM_CACHE_BYTES = 16L << 20;
 }
@@ -0,0 +1,204 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A bounded cache of converted message lines, keyed by everything that
+ *  determines the result: the compiled rotors, their settings at the
+ *  start of the message, the plugboard and the message itself.  Each
+ *  entry holds the message's output line, grouped in fives, and the
+ *  rotor settings after it, so that a message seen before under the same
+ *  key costs a lookup and setting the rotors, and leaves the machine
+ *  exactly as converting it would.  Keys compare the message itself, not
+ *  just its hash, so a collision can never return the wrong line.  The
+ *  least recently used entries are evicted once the memory held by all
+ *  of them passes a budget; a message too long to be worth caching (over
+ *  an ENTRIES_PER_BUDGET-th of the budget) is converted but not kept.
+ *  Safe for use by several machines at once.
+ *  @author Flynn"TheFox"Gray
+ */
+class MessageCache {
+
+    /** A cache holding at most about MAXBYTES bytes of messages. */
+    MessageCache(long maxBytes) {
+        _maxBytes = maxBytes;
+    }
+
+    /** Return Main.groupsOfFive(M.convert(MSG)), leaving M as that
+     *  would.  MSG must contain no spaces. */
+    String convert(Machine M, String msg) {
+        RotorCore core = Main.verbose() ? null : M.core();
+        if (core == null) {
+            return Main.groupsOfFive(M.convert(msg));
+        }
+        Key key = new Key(core, M.positions(),
+                          M.plugboard().forwardTable(), msg);
+        Result result;
+        synchronized (this) {
+            result = _entries.get(key);
+            if (result != null) {
+                _hits += 1;
+            } else {
+                _misses += 1;
+            }
+        }
+        if (result != null) {
+            M.setRotors(result._end);
+            return result._output;
+        }
+        String output = Main.groupsOfFive(M.convert(msg));
+        StringBuilder end = new StringBuilder();
+        for (int k = 1; k < M.numRotors(); k += 1) {
+            end.append(M.alphabet().toChar(M.getRotor(k).setting()));
+        }
+        result = new Result(output, end.toString());
+        long bytes = key.bytes() + result.bytes();
+        if (bytes <= _maxBytes / ENTRIES_PER_BUDGET) {
+            key = new Key(core, key._start, key._plugboard.clone(), msg);
+            synchronized (this) {
+                if (_entries.put(key, result) == null) {
+                    _bytes += bytes;
+                    trim();
+                }
+            }
+        }
+        return output;
+    }
+
+    /** Evict least recently used entries until I am within budget. */
+    private void trim() {
+        Iterator<Map.Entry<Key, Result>> lru =
+            _entries.entrySet().iterator();
+        while (_bytes > _maxBytes && lru.hasNext()) {
+            Map.Entry<Key, Result> entry = lru.next();
+            lru.remove();
+            _bytes -= entry.getKey().bytes() + entry.getValue().bytes();
+            _evictions += 1;
+        }
+    }
+
+    /** Return the number of lookups that found a message. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Return the number of lookups that did not. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** Return the number of entries evicted. */
+    synchronized long evictions() {
+        return _evictions;
+    }
+
+    /** Return the number of bytes currently held, as estimated. */
+    synchronized long bytes() {
+        return _bytes;
+    }
+
+    /** Return the number of messages currently held. */
+    synchronized int entries() {
+        return _entries.size();
+    }
+
+    /** Return a one-line summary of my counters. */
+    synchronized String stats() {
+        long lookups = _hits + _misses;
+        return String.format("message cache: %d hits, %d misses, "
+                             + "%d evictions, %d entries, %d bytes, "
+                             + "%.1f%% hit rate",
+                             _hits, _misses, _evictions, _entries.size(),
+                             _bytes,
+                             lookups == 0 ? 0.0 : 100.0 * _hits / lookups);
+    }
+
+    /** A cache key: compiled rotors, their starting settings, a
+     *  plugboard and a message. */
+    private static class Key {
+        /** The key for MSG converted by CORE from settings START with
+         *  the plugboard whose forward table is PLUGBOARD, which must
+         *  not change while I am in the cache. */
+        Key(RotorCore core, int[] start, int[] plugboard, String msg) {
+            _core = core;
+            _start = start;
+            _plugboard = plugboard;
+            _msg = msg;
+            _hash = ((core.hashCode() * 31 + Arrays.hashCode(start)) * 31
+                     + Arrays.hashCode(plugboard)) * 31 + msg.hashCode();
+        }
+
+        /** Return the number of bytes I hold, roughly, apart from the
+         *  rotors, which are shared with the machine. */
+        long bytes() {
+            return ENTRY_OVERHEAD + 4L * (_start.length + _plugboard.length)
+                + 2L * _msg.length();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return _hash == other._hash && _msg.equals(other._msg)
+                && Arrays.equals(_start, other._start)
+                && Arrays.equals(_plugboard, other._plugboard)
+                && _core.equals(other._core);
+        }
+
+        @Override
+        public int hashCode() {
+            return _hash;
+        }
+
+        /** Compiled rotors. */
+        private final RotorCore _core;
+        /** Starting settings. */
+        private final int[] _start;
+        /** Forward table of the plugboard. */
+        private final int[] _plugboard;
+        /** The message, without spaces. */
+        private final String _msg;
+        /** Hash of all of the above. */
+        private final int _hash;
+    }
+
+    /** What converting a message produces. */
+    private static class Result {
+        /** A result printing OUTPUT and leaving the rotors at END, as for
+         *  Machine.setRotors. */
+        Result(String output, String end) {
+            _output = output;
+            _end = end;
+        }
+
+        /** Return the number of bytes I hold, roughly. */
+        long bytes() {
+            return ENTRY_OVERHEAD + 2L * (_output.length() + _end.length());
+        }
+
+        /** The output line. */
+        private final String _output;
+        /** Rotor settings after the message. */
+        private final String _end;
+    }
+
+    /** Fraction (as a divisor) of the budget one entry may use. */
+    static final int ENTRIES_PER_BUDGET = 8;
+    /** Bytes of object headers and references counted for each key and
+     *  each result. */
+    static final int ENTRY_OVERHEAD = 96;
+
+    /** Budget in bytes. */
+    private final long _maxBytes;
+    /** Results in least- to most-recently-used order. */
+    private final LinkedHashMap<Key, Result> _entries =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /** Bytes held. */
+    private long _bytes;
+    /** Counters. */
+    private long _hits, _misses, _evictions;
+}
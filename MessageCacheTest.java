@@ -0,0 +1,116 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Scanner;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the MessageCache class.
+ *  @author Flynn"TheFox"Gray
+ */
+public class MessageCacheTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A configuration for the tests. */
+    private static final Configuration CONFIG =
+        Configuration.read(new Scanner(NAVAL_CONFIG));
+
+    /** Settings lines for the tests. */
+    private static final String[] SETTINGS = {
+        "* B Beta I II III AAAA (AQ) (EP)",
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)",
+        "* B Beta I II III AAAA",
+        "* B Beta IV II I ZZZZ (AB)",
+    };
+
+    /** Messages for the tests. */
+    private static final String[] MESSAGES = {
+        "HELLOWORLD", "THEQUICKBROWNFOX", "A", "HELLOWORLD", "",
+        "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD",
+    };
+
+    /** Check that converting messages at random, with settings lines
+     *  among them, through CACHE gives the same lines and leaves the
+     *  same settings as converting them directly. */
+    private static void checkSame(MessageCache cache) {
+        Random random = new Random(47);
+        Machine direct = CONFIG.newMachine();
+        Machine cached = CONFIG.newMachine();
+        for (int i = 0; i < 2000; i += 1) {
+            if (i == 0 || random.nextInt(5) == 0) {
+                String line = SETTINGS[random.nextInt(SETTINGS.length)];
+                Main.setUp(direct, line);
+                Main.setUp(cached, line);
+            }
+            String msg = MESSAGES[random.nextInt(MESSAGES.length)];
+            assertEquals(Main.groupsOfFive(direct.convert(msg)),
+                         cache.convert(cached, msg));
+            assertArrayEquals(direct.positions(), cached.positions());
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSameAsConverting() {
+        MessageCache cache = new MessageCache(1 << 20);
+        checkSame(cache);
+        assertTrue(cache.hits() > 0);
+        assertEquals(2000, cache.hits() + cache.misses());
+        assertEquals(0, cache.evictions());
+        assertEquals(cache.misses(), cache.entries());
+    }
+
+    @Test
+    public void testHit() {
+        MessageCache cache = new MessageCache(1 << 20);
+        Machine M = CONFIG.newMachine();
+        Main.setUp(M, SETTINGS[0]);
+        assertEquals("IHBDQ QMTQZ", cache.convert(M, "HELLOWORLD"));
+        int[] end = M.positions();
+        Main.setUp(M, SETTINGS[0]);
+        assertEquals("IHBDQ QMTQZ", cache.convert(M, "HELLOWORLD"));
+        assertArrayEquals(end, M.positions());
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.entries());
+        assertTrue(cache.stats().startsWith("message cache: 1 hits, "));
+        Main.setUp(M, SETTINGS[2]);
+        cache.convert(M, "HELLOWORLD");
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    public void testEviction() {
+        MessageCache cache = new MessageCache(4096);
+        checkSame(cache);
+        assertTrue(cache.evictions() > 0);
+        assertTrue(cache.bytes() <= 4096);
+        assertTrue(cache.bytes() > 0);
+    }
+
+    @Test
+    public void testTooLong() {
+        MessageCache cache = new MessageCache(1024);
+        Machine M = CONFIG.newMachine();
+        char[] msg = new char[1024];
+        Arrays.fill(msg, 'A');
+        Main.setUp(M, SETTINGS[0]);
+        String first = cache.convert(M, new String(msg));
+        Main.setUp(M, SETTINGS[0]);
+        assertEquals(first, cache.convert(M, new String(msg)));
+        assertEquals(0, cache.entries());
+        assertEquals(0, cache.hits());
+    }
+}
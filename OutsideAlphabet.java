@@ -0,0 +1,14 @@
+package enigma;
+
+/** What a conversion does with characters that are not in the
+ *  machine's alphabet.
+ *  @author Flynn"TheFox"Gray
+ */
+enum OutsideAlphabet {
+    /** Copy them to the output unchanged, without advancing the machine. */
+    PASS,
+    /** Leave them out of the output. */
+    DROP,
+    /** Fail the conversion. */
+    ERROR;
+}
@@ -12,10 +12,12 @@ class Permutation {
      *  form "(cccc) (cc) ..." where the c's are characters in ALPHABET, which
      *  is interpreted as a permutation in cycle notation.  Characters in the
      *  alphabet that are not included in any cycle map to themselves.
-     *  Whitespace is ignored. */
+     *  Whitespace is ignored.  In the alphabet of all byte values, each
+     *  c is a pair of hexadecimal digits (see Alphabet.decode). */
     Permutation(String cycles, Alphabet alphabet) {
         _alphabet = alphabet;
         _cycles = cycles;
+        parse();
     }
 
     String[] cycleSplitter() {
@@ -24,14 +26,82 @@ class Permutation {
         for (int i = 0; i < split.length; i++) {
             if (!_cycles.equals("")) {
                 if (split[i].length() > 0) {
-                    split[i] = split[i].substring(1);
+                    split[i] = _alphabet.decode(split[i].substring(1));
                 }
             }
         }
         return split;
     }
 
-    /** Return the value of P modulo the size of this permutation. */
+    /** Set _map and _unmap from my cycles, which are read one character
+     *  at a time, so that the time taken is proportional to their length
+     *  however long they are. */
+    private void parse() {
+        int n = size();
+        int digits = _alphabet.hexDigits();
+        char[] map = new char[n];
+        boolean[] seen = new boolean[n];
+        for (int k = 0; k < n; k += 1) {
+            map[k] = (char) k;
+        }
+        int first = -1;
+        int prev = -1;
+        boolean open = false;
+        for (int i = 0; i < _cycles.length(); ) {
+            char ch = _cycles.charAt(i);
+            int k;
+            if (Character.isWhitespace(ch)) {
+                i += 1;
+                continue;
+            } else if (!open) {
+                if (ch != '(') {
+                    throw error("bad cycle notation at %d", i);
+                }
+                open = true;
+                first = -1;
+                i += 1;
+                continue;
+            } else if (ch == ')') {
+                if (first >= 0) {
+                    map[prev] = (char) first;
+                }
+                open = false;
+                i += 1;
+                continue;
+            } else if (digits > 0) {
+                k = _alphabet.hexAt(_cycles, i);
+                i += digits;
+            } else {
+                k = _alphabet.toInt(ch);
+                if (k < 0) {
+                    throw error("'%c' in cycles is not in the alphabet", ch);
+                }
+                i += 1;
+            }
+            if (seen[k]) {
+                throw error("character %d appears twice in cycles", k);
+            }
+            seen[k] = true;
+            if (first < 0) {
+                first = k;
+            } else {
+                map[prev] = (char) k;
+            }
+            prev = k;
+        }
+        if (open) {
+            throw error("unclosed cycle");
+        }
+        char[] unmap = new char[n];
+        for (int k = 0; k < n; k += 1) {
+            unmap[map[k]] = (char) k;
+        }
+        _map = map;
+        _unmap = unmap;
+    }
+
+    /** Return the value of P modulo the size of this permutation, for
+     *  arithmetic on rotor settings. */
     final int wrap(int p) {
         int r = p % size();
         if (r < 0) {
@@ -45,56 +115,84 @@ class Permutation {
         return _alphabet.size();
     }
 
-    /** Return the result of applying this permutation to P modulo the
-     *  alphabet size. */
+    /** Return the result of applying this permutation to P, an index
+     *  in the range 0..size()-1. */
     int permute(int p) {
-        return _alphabet.toInt(
-                permute(_alphabet.toChar(p % size()))
-        );
+        return _map[p];
     }
 
     /** Return the result of applying the inverse of this permutation
-     *  to  C modulo the alphabet size. */
+     *  to C, an index in the range 0..size()-1. */
     int invert(int c) {
-        return _alphabet.toInt(
-                invert(_alphabet.toChar(c % size()))
-        );
+        return _unmap[c];
+    }
+
+    /** Return my mapping as a table whose K-th entry is permute(K).  The
+     *  table is made on first use and must not be modified. */
+    int[] forwardTable() {
+        if (_forward == null) {
+            _forward = widen(_map);
+        }
+        return _forward;
+    }
+
+    /** Return my inverse mapping as a table whose K-th entry is
+     *  invert(K).  The table must not be modified. */
+    int[] inverseTable() {
+        if (_inverse == null) {
+            _inverse = widen(_unmap);
+        }
+        return _inverse;
+    }
+
+    /** Make me the permutation that swaps PAIRS[2i] and PAIRS[2i + 1],
+     *  for each i, and maps everything else to itself.  PAIRS must hold
+     *  an even number of indices, each at most once.  I change in place,
+     *  without allocating once I have been swapped before, so I must
+     *  not be shared by anything that expects me not to change, and my
+     *  cycles no longer describe me. */
+    void setSwaps(int[] pairs) {
+        int[] forward = forwardTable();
+        int[] inverse = inverseTable();
+        if (_swapped == null) {
+            _swapped = new int[size()];
+        }
+        for (int i = 0; i < _numSwapped; i += 1) {
+            int k = _swapped[i];
+            _map[k] = _unmap[k] = (char) k;
+            forward[k] = inverse[k] = k;
+        }
+        for (int i = 0; i < pairs.length; i += 2) {
+            int a = pairs[i], b = pairs[i + 1];
+            _map[a] = _unmap[a] = (char) b;
+            _map[b] = _unmap[b] = (char) a;
+            forward[a] = inverse[a] = b;
+            forward[b] = inverse[b] = a;
+        }
+        System.arraycopy(pairs, 0, _swapped, 0, pairs.length);
+        _numSwapped = pairs.length;
+    }
+
+    /** Return the entries of TABLE as ints. */
+    private static int[] widen(char[] table) {
+        int[] result = new int[table.length];
+        for (int k = 0; k < table.length; k += 1) {
+            result[k] = table[k];
+        }
+        return result;
     }
 
     /** Return the result of applying this permutation to the index of P
      *  in ALPHABET, and converting the result to a character of ALPHABET. */
     char permute(char p) {
-        String[] splittedCycle = cycleSplitter();
-        for (int i = 0; i < splittedCycle.length; i++) {
-            for (int j = 0; j < splittedCycle[i].length(); j++) {
-                if (splittedCycle[i].charAt(j) == p) {
-                    if (j + 1 == splittedCycle[i].length()) {
-                        return splittedCycle[i].charAt(0);
-                    } else {
-                        return splittedCycle[i].charAt(j + 1);
-                    }
-                }
-            }
-        }
-        return p;
+        int k = _alphabet.toInt(p);
+        return k < 0 ? p : _alphabet.toChar(_map[k]);
     }
 
     /** Return the result of applying the inverse of this permutation to C. */
     char invert(char c) {
-        String[] splittedCycle = cycleSplitter();
-        for (int i = 0; i < splittedCycle.length; i++) {
-            for (int j = 0; j < splittedCycle[i].length(); j++) {
-                if (splittedCycle[i].charAt(j) == c) {
-                    if (j == 0) {
-                        return splittedCycle[i].charAt
-                                (splittedCycle[i].length() - 1);
-                    } else {
-                        return splittedCycle[i].charAt(j - 1);
-                    }
-                }
-            }
-        }
-        return c;
+        int k = _alphabet.toInt(c);
+        return k < 0 ? c : _alphabet.toChar(_unmap[k]);
     }
 
     /** Return the alphabet used to initialize this Permutation. */
@@ -118,4 +216,23 @@ class Permutation {
 
     /** cycles of this permutation. */
     private String _cycles;
+
+    /** Index table of permute(int). */
+    private char[] _map;
+
+    /** Index table of invert(int). */
+    private char[] _unmap;
+
+    /** _map as ints, or null until first needed. */
+    private int[] _forward;
+
+    /** _unmap as ints, or null until first needed. */
+    private int[] _inverse;
+
+    /** The indices moved by the last setSwaps, in the first _numSwapped
+     *  entries, or null if it has not been called. */
+    private int[] _swapped;
+
+    /** Number of indices in _swapped. */
+    private int _numSwapped;
 }
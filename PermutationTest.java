@@ -93,4 +93,34 @@ public class PermutationTest {
         checkPerm("identity", UPPER_STRING, UPPER_STRING);
     }
 
+    @Test
+    public void testBadCycles() {
+        String[] bad = { "(AB) (BC)", "(AB", "AB", "(Ab)" };
+        for (String cycles : bad) {
+            try {
+                new Permutation(cycles, UPPER);
+                fail("accepted " + cycles);
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    @Test
+    public void testLargeAlphabet() {
+        Alphabet large = Alphabet.hex(4);
+        StringBuilder cycle = new StringBuilder("(");
+        for (int k = 0; k < large.size(); k += 1) {
+            cycle.append(String.format("%04x", k * 257 % large.size()));
+        }
+        perm = new Permutation(cycle.append(')').toString(), large);
+        assertEquals(65536, perm.size());
+        for (int k = 0; k < large.size(); k += 1) {
+            int next = (k + 1) * 257 % large.size();
+            assertEquals(next, perm.permute(k * 257 % large.size()));
+            assertEquals(k, perm.invert(perm.permute(k)));
+        }
+        assertTrue(perm.derangement());
+    }
+
 }
@@ -0,0 +1,200 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.util.Scanner;
+
+import static enigma.EnigmaException.*;
+
+/** Main.process split into three stages on three threads: a reader
+ *  taking lines from the input, a converter setting up and running the
+ *  machine and formatting the results in groups of five (through a
+ *  MessageCache, if given one, as Main does), and a writer printing
+ *  them.  Lines travel in Batches of up to BATCH lines, through
+ *  a RingBuffer from the reader to the converter and another from the
+ *  converter to the writer, and a third ring returns printed batches to
+ *  the reader for reuse, so no more than POOL batches ever exist.
+ *  Settings lines, blank lines and errors are treated exactly as by
+ *  Main.process: everything before a failing line is printed, and the
+ *  failure is then thrown.
+ *  @author Flynn"TheFox"Gray
+ */
+class Pipeline {
+
+    /** Number of lines in a batch. */
+    static final int BATCH = 256;
+    /** Number of batches, a power of 2. */
+    static final int POOL = 8;
+
+    /** A pipeline converting the lines of INPUT with MACHINE, which has
+     *  no settings yet, and printing the results on OUTPUT. */
+    Pipeline(Machine machine, Scanner input, PrintStream output) {
+        _machine = machine;
+        _input = input;
+        _output = output;
+        for (int i = 0; i < POOL; i += 1) {
+            _free.put(new Batch());
+        }
+    }
+
+    /** Convert message lines through CACHE (none if null). */
+    void setMessageCache(MessageCache cache) {
+        _messageCache = cache;
+    }
+
+    /** Convert all of my input into my output, writing on the calling
+     *  thread while two threads of my own read and convert. */
+    void run() {
+        Thread reader = new Thread(this::read, "enigma-pipeline-reader");
+        Thread converter =
+            new Thread(this::convert, "enigma-pipeline-converter");
+        reader.start();
+        converter.start();
+        RuntimeException failure = write();
+        try {
+            reader.join();
+            converter.join();
+        } catch (InterruptedException excp) {
+            throw error("pipeline interrupted");
+        }
+        if (failure != null) {
+            throw failure;
+        } else if (_readFailure != null) {
+            throw _readFailure;
+        } else if (_empty) {
+            throw new EnigmaException("empty input");
+        }
+    }
+
+    /** Return a one-line summary of the time each stage spent waiting
+     *  for the others. */
+    String stats() {
+        return String.format("pipeline: read stalled %.1f ms, convert "
+                             + "stalled %.1f ms, write stalled %.1f ms",
+                             (_free.takeStall() + _read.putStall()) / 1e6,
+                             (_read.takeStall() + _converted.putStall())
+                             / 1e6,
+                             (_converted.takeStall() + _free.putStall())
+                             / 1e6);
+    }
+
+    /** Read lines into batches until the input is exhausted, ending
+     *  with a batch marked last. */
+    private void read() {
+        _empty = true;
+        while (true) {
+            Batch batch = _free.take();
+            batch._count = 0;
+            batch._error = null;
+            try {
+                while (batch._count < BATCH && _input.hasNext()) {
+                    batch._lines[batch._count] = _input.nextLine();
+                    batch._count += 1;
+                    _empty = false;
+                }
+                batch._last = !_input.hasNext();
+            } catch (RuntimeException excp) {
+                _readFailure = excp;
+                batch._last = true;
+            }
+            boolean last = batch._last;
+            _read.put(batch);
+            if (last) {
+                return;
+            }
+        }
+    }
+
+    /** Convert the lines of each batch in place, as Main.process would,
+     *  leaving null in place of settings lines.  After a line fails, mark
+     *  its batch as failing there and pass the rest on unconverted. */
+    private void convert() {
+        boolean configured = false, failed = false;
+        while (true) {
+            Batch batch = _read.take();
+            for (int i = 0; i < batch._count && !failed; i += 1) {
+                String line = batch._lines[i];
+                try {
+                    String[] words = line.split(" ");
+                    if (words[0].equals("*")) {
+                        configured = true;
+                        Main.setUp(_machine, line);
+                        batch._lines[i] = null;
+                    } else if (words.length == 0) {
+                        batch._lines[i] = "";
+                    } else if (!configured) {
+                        throw new EnigmaException("No config");
+                    } else {
+                        String msg = line.replaceAll(" ", "");
+                        batch._lines[i] = _messageCache != null
+                            ? _messageCache.convert(_machine, msg)
+                            : Main.groupsOfFive(_machine.convert(msg));
+                    }
+                } catch (RuntimeException excp) {
+                    batch._count = i;
+                    batch._error = excp;
+                    failed = true;
+                }
+            }
+            boolean last = batch._last;
+            _converted.put(batch);
+            if (last) {
+                return;
+            }
+        }
+    }
+
+    /** Print the converted lines of each batch, returning the batch for
+     *  reuse, and return the first failure of the converter, if any. */
+    private RuntimeException write() {
+        RuntimeException failure = null;
+        while (true) {
+            Batch batch = _converted.take();
+            for (int i = 0; i < batch._count && failure == null; i += 1) {
+                if (batch._lines[i] != null) {
+                    _output.println(batch._lines[i]);
+                }
+                batch._lines[i] = null;
+            }
+            if (failure == null) {
+                failure = batch._error;
+            }
+            boolean last = batch._last;
+            _free.put(batch);
+            if (last) {
+                _output.flush();
+                return failure;
+            }
+        }
+    }
+
+    /** A group of lines passed between the stages. */
+    private static class Batch {
+        /** The lines. */
+        private final String[] _lines = new String[BATCH];
+        /** Number of lines in use. */
+        private int _count;
+        /** True iff this is the last batch. */
+        private boolean _last;
+        /** The failure of the line after the last one in use, or null. */
+        private RuntimeException _error;
+    }
+
+    /** The machine converting. */
+    private final Machine _machine;
+    /** Cache of converted lines, or null. */
+    private MessageCache _messageCache;
+    /** Source of lines. */
+    private final Scanner _input;
+    /** Destination of converted lines. */
+    private final PrintStream _output;
+    /** Batches read, on their way to the converter. */
+    private final RingBuffer<Batch> _read = new RingBuffer<>(POOL);
+    /** Batches converted, on their way to the writer. */
+    private final RingBuffer<Batch> _converted = new RingBuffer<>(POOL);
+    /** Batches printed, on their way back to the reader. */
+    private final RingBuffer<Batch> _free = new RingBuffer<>(POOL);
+    /** True iff the input had no lines.  Valid once the reader is done. */
+    private boolean _empty;
+    /** Failure of the reader, or null.  Valid once the reader is done. */
+    private RuntimeException _readFailure;
+}
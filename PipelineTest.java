@@ -0,0 +1,121 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Scanner;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Pipeline and RingBuffer
+ *  classes.
+ *  @author Flynn"TheFox"Gray
+ */
+public class PipelineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A configuration for the tests. */
+    private static final Configuration CONFIG =
+        Configuration.read(new Scanner(NAVAL_CONFIG));
+
+    /** Return the output of Main.process on INPUT. */
+    private static String process(String input) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Main(CONFIG, new Scanner(input), new PrintStream(out),
+                 new KeystreamCache(1 << 20)).process();
+        return out.toString();
+    }
+
+    /** Return the output of a Pipeline on INPUT, or, if it fails, that
+     *  output followed by the message of its failure. */
+    private static String pipeline(String input) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            new Pipeline(CONFIG.newMachine(), new Scanner(input),
+                         new PrintStream(out)).run();
+            return out.toString();
+        } catch (EnigmaException excp) {
+            return out.toString() + excp.getMessage();
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSameAsProcess() {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 3 * Pipeline.BATCH + 7; i += 1) {
+            if (i % 100 == 0) {
+                input.append("* B Beta I II III ")
+                    .append((char) ('A' + i / 100)).append("AAA (AQ)\n");
+            } else if (i % 17 == 0) {
+                input.append("\n");
+            } else {
+                input.append("HELLO WORLD ").append(i % 26 == 0 ? "" : "X")
+                    .append("\n");
+            }
+        }
+        input.append("\n\n");
+        assertEquals(process(input.toString()), pipeline(input.toString()));
+        assertEquals("ILBDA" + System.lineSeparator(),
+                     pipeline("* B Beta I II III AAAA\nHELLO"));
+    }
+
+    @Test
+    public void testMessageCache() {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < Pipeline.BATCH; i += 1) {
+            input.append("* B Beta I II III AAAA (AQ)\nHELLO WORLD\n");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MessageCache cache = new MessageCache(1 << 20);
+        Pipeline pipeline = new Pipeline(CONFIG.newMachine(),
+                                         new Scanner(input.toString()),
+                                         new PrintStream(out));
+        pipeline.setMessageCache(cache);
+        pipeline.run();
+        assertEquals(process(input.toString()), out.toString());
+        assertEquals(1, cache.misses());
+        assertEquals(Pipeline.BATCH - 1, cache.hits());
+    }
+
+    @Test
+    public void testErrors() {
+        assertEquals("empty input", pipeline(""));
+        assertEquals("No config", pipeline("HELLO\n* B Beta I II III AAAA"));
+        StringBuilder input = new StringBuilder("* B Beta I II III AAAA\n");
+        for (int i = 0; i < Pipeline.BATCH + 10; i += 1) {
+            input.append("HELLO\n");
+        }
+        String good = process(input.toString());
+        input.append("* B Beta I Nope III AAAA\nHELLO\n");
+        assertEquals(good + "Bad rotor name", pipeline(input.toString()));
+    }
+
+    @Test
+    public void testRingBuffer() throws InterruptedException {
+        RingBuffer<Integer> ring = new RingBuffer<>(4);
+        int n = 100000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < n; i += 1) {
+                ring.put(i);
+            }
+        });
+        producer.start();
+        for (int i = 0; i < n; i += 1) {
+            assertEquals(i, (int) ring.take());
+        }
+        producer.join();
+        assertTrue(ring.putStall() >= 0 && ring.takeStall() >= 0);
+    }
+
+}
@@ -0,0 +1,378 @@
+package enigma;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** The decryption of one ciphertext under plugboards that change one
+ *  pair at a time, for hill-climbing searches of the plugboard with the
+ *  rotors fixed.  The rotor substitution of every position of the
+ *  ciphertext is computed once, when the search is made, so that the
+ *  plaintext character at position I is always
+ *  _plug[_core(I)[_plug[cipher[I]]]].  A change of plugboard affects only
+ *  the positions whose ciphertext character, or whose character leaving
+ *  the rotors, is one of the (at most four) letters whose partners
+ *  change.  Those positions are found through an index of positions by
+ *  ciphertext character and another by rotor output, and only they, and
+ *  the n-grams containing them, are rescored.  The score is the sum over
+ *  every n-gram of the plaintext of its weight.
+ *  @author Flynn"TheFox"Gray
+ */
+class PlugboardSearch {
+
+    /** A search over the plugboards of MACHINE, whose rotors are at their
+     *  settings for the first character of CIPHER (a message of indices
+     *  into its alphabet), scoring each N-gram of plaintext by
+     *  WEIGHTS[index], where index is the N-gram read as a number in
+     *  base alphabet size.  The search starts at the plugboard of
+     *  MACHINE, which must consist of pairs.  MACHINE is not changed. */
+    PlugboardSearch(Machine machine, int[] cipher, double[] weights,
+                    int n) {
+        RotorCore core = RotorCore.compile(machine.slots());
+        if (core == null) {
+            throw error("rotors cannot be compiled");
+        }
+        _size = core.size();
+        _length = cipher.length;
+        _n = n;
+        if (n < 1 || weights.length != power(_size, n)) {
+            throw error("wrong number of %d-gram weights", n);
+        }
+        if ((long) _length * _size > Integer.MAX_VALUE) {
+            throw error("message too long for a plugboard search");
+        }
+        _weights = weights;
+        _cipher = cipher.clone();
+        _core = new char[_length * _size];
+        int[] pos = machine.positions();
+        for (int i = 0; i < _length; i += 1) {
+            core.step(pos);
+            core.fill(pos, _core, i * _size);
+        }
+        _plug = machine.plugboard().forwardTable().clone();
+        for (int c = 0; c < _size; c += 1) {
+            if (_plug[_plug[c]] != c) {
+                throw error("plugboard is not a set of pairs");
+            }
+        }
+
+        int[] counts = new int[_size];
+        for (int c : _cipher) {
+            counts[c] += 1;
+        }
+        _at = new int[_size][];
+        for (int c = 0; c < _size; c += 1) {
+            _at[c] = new int[counts[c]];
+            counts[c] = 0;
+        }
+        for (int i = 0; i < _length; i += 1) {
+            _at[_cipher[i]][counts[_cipher[i]]++] = i;
+        }
+
+        _out = new int[_length];
+        _plain = new int[_length];
+        _slot = new int[_length];
+        _leaving = new int[_size][];
+        _leavingCount = new int[_size];
+        for (int i = 0; i < _length; i += 1) {
+            _out[i] = _core[i * _size + _plug[_cipher[i]]];
+            _plain[i] = _plug[_out[i]];
+            enter(i);
+        }
+        _seen = new int[_length];
+        _touched = new int[_length];
+        _windowSeen = new int[_length];
+        _windows = new int[_length];
+        rescore();
+    }
+
+    /** Return weights for the N-grams over an alphabet of SIZE
+     *  characters: the log of the frequency of each in SAMPLE (indices
+     *  into the alphabet), each count having been increased by 1. */
+    static double[] weights(int[] sample, int size, int n) {
+        double[] result = new double[power(size, n)];
+        int windows = Math.max(0, sample.length - n + 1);
+        for (int j = 0; j < windows; j += 1) {
+            int index = 0;
+            for (int k = j; k < j + n; k += 1) {
+                index = index * size + sample[k];
+            }
+            result[index] += 1;
+        }
+        double total = windows + result.length;
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = Math.log((result[i] + 1) / total);
+        }
+        return result;
+    }
+
+    /** Return SIZE to the power N, which must be an int. */
+    private static int power(int size, int n) {
+        long result = 1;
+        for (int k = 0; k < n; k += 1) {
+            result *= size;
+            if (result > Integer.MAX_VALUE) {
+                throw error("too many %d-grams", n);
+            }
+        }
+        return (int) result;
+    }
+
+    /** Return the score of the current plaintext. */
+    double score() {
+        return _score;
+    }
+
+    /** Return the character plugged to C. */
+    int partner(int c) {
+        return _plug[c];
+    }
+
+    /** Return a copy of the current plaintext. */
+    int[] plaintext() {
+        return _plain.clone();
+    }
+
+    /** Return the current plugboard as cycles over ALPHABET, as in a
+     *  settings line. */
+    String cycles(Alphabet alphabet) {
+        StringBuilder result = new StringBuilder();
+        int digits = alphabet.hexDigits();
+        for (int c = 0; c < _size; c += 1) {
+            if (c < _plug[c]) {
+                result.append(result.length() == 0 ? "(" : " (");
+                for (int d : new int[] { c, _plug[c] }) {
+                    if (digits == 0) {
+                        result.append(alphabet.toChar(d));
+                    } else {
+                        result.append(String.format("%0" + digits + "x", d));
+                    }
+                }
+                result.append(')');
+            }
+        }
+        return result.toString();
+    }
+
+    /** Plug A and B together, first unplugging them from their partners,
+     *  or, if they are already plugged together (or are the same
+     *  character), unplug them.  Return the new score.  Undo reverts
+     *  the change. */
+    double swap(int a, int b) {
+        _count = 0;
+        int pa = _plug[a], pb = _plug[b];
+        if (pa == b || a == b) {
+            put(a, a);
+            put(pa, pa);
+        } else {
+            put(pa, pa);
+            put(pb, pb);
+            put(a, b);
+            put(b, a);
+        }
+        _undoCount = _count;
+        for (int k = 0; k < _count; k += 1) {
+            _undoLetters[k] = _letters[k];
+            _undoValues[k] = _plug[_letters[k]];
+        }
+        change();
+        return _score;
+    }
+
+    /** Undo the last swap, if not undone already, returning the score. */
+    double undo() {
+        _count = _undoCount;
+        System.arraycopy(_undoLetters, 0, _letters, 0, _count);
+        System.arraycopy(_undoValues, 0, _values, 0, _count);
+        _undoCount = 0;
+        change();
+        return _score;
+    }
+
+    /** Swap every pair of characters in turn, keeping each swap that
+     *  raises the score by more than GAIN and undoing the rest, until no
+     *  swap does.  Return the final score. */
+    double climb() {
+        boolean better = true;
+        while (better) {
+            better = false;
+            for (int a = 0; a < _size; a += 1) {
+                for (int b = a + 1; b < _size; b += 1) {
+                    double before = _score;
+                    if (swap(a, b) > before + GAIN) {
+                        better = true;
+                    } else {
+                        undo();
+                    }
+                }
+            }
+        }
+        return _score;
+    }
+
+    /** Recompute the score from the whole plaintext, returning it. */
+    double rescore() {
+        _score = 0;
+        for (int j = 0; j + _n <= _length; j += 1) {
+            _score += window(j);
+        }
+        return _score;
+    }
+
+    /** Add the change of C's partner to V to the change being made. */
+    private void put(int c, int v) {
+        for (int k = 0; k < _count; k += 1) {
+            if (_letters[k] == c) {
+                _values[k] = v;
+                return;
+            }
+        }
+        _letters[_count] = c;
+        _values[_count] = v;
+        _count += 1;
+    }
+
+    /** Give each of the first _count _letters the partner in _values,
+     *  updating the plaintext and score at the positions affected. */
+    private void change() {
+        _stamp += 1;
+        if (_stamp == Integer.MAX_VALUE) {
+            Arrays.fill(_seen, 0);
+            Arrays.fill(_windowSeen, 0);
+            _stamp = 1;
+        }
+        int touched = 0;
+        for (int k = 0; k < _count; k += 1) {
+            int c = _letters[k];
+            if (_plug[c] == _values[k]) {
+                continue;
+            }
+            for (int i : _at[c]) {
+                touched = touch(i, touched);
+            }
+            for (int s = 0; s < _leavingCount[c]; s += 1) {
+                touched = touch(_leaving[c][s], touched);
+            }
+        }
+        int windows = 0;
+        for (int t = 0; t < touched; t += 1) {
+            int i = _touched[t];
+            int last = Math.min(i, _length - _n);
+            for (int j = Math.max(0, i - _n + 1); j <= last; j += 1) {
+                if (_windowSeen[j] != _stamp) {
+                    _windowSeen[j] = _stamp;
+                    _windows[windows++] = j;
+                    _score -= window(j);
+                }
+            }
+        }
+        for (int k = 0; k < _count; k += 1) {
+            _plug[_letters[k]] = _values[k];
+        }
+        for (int t = 0; t < touched; t += 1) {
+            int i = _touched[t];
+            int out = _core[i * _size + _plug[_cipher[i]]];
+            if (out != _out[i]) {
+                leave(i);
+                _out[i] = out;
+                enter(i);
+            }
+            _plain[i] = _plug[out];
+        }
+        for (int w = 0; w < windows; w += 1) {
+            _score += window(_windows[w]);
+        }
+    }
+
+    /** Add position I to _touched, whose first TOUCHED entries are in
+     *  use, unless it is there already, and return the number in use. */
+    private int touch(int i, int touched) {
+        if (_seen[i] != _stamp) {
+            _seen[i] = _stamp;
+            _touched[touched++] = i;
+        }
+        return touched;
+    }
+
+    /** Return the weight of the N-gram of plaintext starting at J. */
+    private double window(int j) {
+        int index = 0;
+        for (int k = j; k < j + _n; k += 1) {
+            index = index * _size + _plain[k];
+        }
+        return _weights[index];
+    }
+
+    /** Add position I to the positions leaving the rotors as _out[I]. */
+    private void enter(int i) {
+        int c = _out[i];
+        if (_leaving[c] == null) {
+            _leaving[c] = new int[INITIAL_LEAVING];
+        } else if (_leavingCount[c] == _leaving[c].length) {
+            _leaving[c] = Arrays.copyOf(_leaving[c], 2 * _leavingCount[c]);
+        }
+        _slot[i] = _leavingCount[c];
+        _leaving[c][_leavingCount[c]++] = i;
+    }
+
+    /** Remove position I from the positions leaving the rotors as
+     *  _out[I]. */
+    private void leave(int i) {
+        int c = _out[i];
+        int moved = _leaving[c][--_leavingCount[c]];
+        _leaving[c][_slot[i]] = moved;
+        _slot[moved] = _slot[i];
+    }
+
+    /** Least rise in score that climb takes for an improvement, above
+     *  the rounding error of updating the score incrementally. */
+    static final double GAIN = 1e-9;
+    /** Initial capacity of each list of _leaving. */
+    private static final int INITIAL_LEAVING = 8;
+
+    /** Size of the alphabet. */
+    private final int _size;
+    /** Length of the message. */
+    private final int _length;
+    /** Length of an n-gram. */
+    private final int _n;
+    /** Weight of each n-gram. */
+    private final double[] _weights;
+    /** The ciphertext. */
+    private final int[] _cipher;
+    /** Rotor substitution of position I, at _core[I * _size ...]. */
+    private final char[] _core;
+    /** Partner of each character on the plugboard. */
+    private final int[] _plug;
+    /** Positions of each character in the ciphertext. */
+    private final int[][] _at;
+    /** Character leaving the rotors at each position. */
+    private final int[] _out;
+    /** Plaintext character at each position. */
+    private final int[] _plain;
+    /** Positions leaving the rotors as each character, in the first
+     *  _leavingCount[C] entries of _leaving[C]. */
+    private final int[][] _leaving;
+    /** Number of positions in each list of _leaving. */
+    private final int[] _leavingCount;
+    /** Index of each position in its list of _leaving. */
+    private final int[] _slot;
+    /** Positions rescored by the current change, marked by _stamp. */
+    private final int[] _seen, _touched;
+    /** N-grams rescored by the current change, marked by _stamp. */
+    private final int[] _windowSeen, _windows;
+    /** Mark of the current change. */
+    private int _stamp;
+    /** Current score. */
+    private double _score;
+    /** Characters whose partners the current change sets, with their new
+     *  partners: the first _count of each. */
+    private final int[] _letters = new int[4], _values = new int[4];
+    /** Number of characters in _letters. */
+    private int _count;
+    /** Characters, and their old partners, that undo restores: the first
+     *  _undoCount of each. */
+    private final int[] _undoLetters = new int[4], _undoValues = new int[4];
+    /** Number of characters in _undoLetters. */
+    private int _undoCount;
+}
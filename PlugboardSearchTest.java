@@ -0,0 +1,131 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.Scanner;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the PlugboardSearch class.
+ *  @author Flynn"TheFox"Gray
+ */
+public class PlugboardSearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A configuration for the tests. */
+    private static final Configuration CONFIG =
+        Configuration.read(new Scanner(NAVAL_CONFIG));
+
+    /** Rotor settings of the tests, without a plugboard. */
+    private static final String ROTORS = "* B Beta I II III AXLE";
+
+    /** Text from which the tests take n-gram weights and plaintexts. */
+    private static final String TEXT =
+        "ITWASTHEBESTOFTIMESITWASTHEWORSTOFTIMESITWASTHEAGEOFWISDOMITWAS"
+        + "THEAGEOFFOOLISHNESSITWASTHEEPOCHOFBELIEFITWASTHEEPOCHOFINCREDU"
+        + "LITYITWASTHESEASONOFLIGHTITWASTHESEASONOFDARKNESSITWASTHESPRING"
+        + "OFHOPEITWASTHEWINTEROFDESPAIRWEHADEVERYTHINGBEFOREUSWEHADNOTHIN"
+        + "GBEFOREUSWEWEREALLGOINGDIRECTTOHEAVENWEWEREALLGOINGDIRECTTHEOTH"
+        + "ERWAYINSHORTTHEPERIODWASSOFARLIKETHEPRESENTPERIODTHATSOMEOFITSN"
+        + "OISIESTAUTHORITIESINSISTEDONITSBEINGRECEIVEDFORGOODORFOREVILINT"
+        + "HESUPERLATIVEDEGREEOFCOMPARISONONLY";
+
+    /** Return the indices of the characters of TEXT. */
+    private static int[] indices(String text) {
+        int[] result = new int[text.length()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = CONFIG.alphabet().toInt(text.charAt(i));
+        }
+        return result;
+    }
+
+    /** Return a machine set to ROTORS with plugboard CYCLES. */
+    private static Machine machine(String cycles) {
+        Machine machine = CONFIG.newMachine();
+        Main.setUp(machine, ROTORS + " " + cycles);
+        return machine;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSameAsMachine() {
+        int[] cipher = indices(machine("(AQ) (EP)").convert(TEXT));
+        double[] weights = PlugboardSearch.weights(indices(TEXT), 26, 2);
+        PlugboardSearch search =
+            new PlugboardSearch(machine("(AQ) (EP)"), cipher, weights, 2);
+        assertArrayEquals(indices(TEXT), search.plaintext());
+        Random random = new Random(43);
+        for (int trial = 0; trial < 500; trial += 1) {
+            search.swap(random.nextInt(26), random.nextInt(26));
+            if (random.nextInt(3) == 0) {
+                search.undo();
+            }
+            String cycles = search.cycles(CONFIG.alphabet());
+            for (int c = 0; c < 26; c += 1) {
+                assertEquals(c, search.partner(search.partner(c)));
+            }
+            int[] plain = cipher.clone();
+            machine(cycles).convert(plain, 0, plain.length);
+            assertArrayEquals(plain, search.plaintext());
+            assertEquals(search.score(), search.rescore(), 1e-6);
+        }
+    }
+
+    @Test
+    public void testUndo() {
+        int[] cipher = indices(machine("").convert(TEXT));
+        double[] weights = PlugboardSearch.weights(indices(TEXT), 26, 3);
+        PlugboardSearch search =
+            new PlugboardSearch(machine("(AB) (CD)"), cipher, weights, 3);
+        double start = search.score();
+        int[] plain = search.plaintext();
+        search.swap(0, 2);
+        assertEquals("(AC)", search.cycles(CONFIG.alphabet()));
+        assertEquals(start, search.undo(), 1e-9);
+        assertArrayEquals(plain, search.plaintext());
+        assertEquals("(AB) (CD)", search.cycles(CONFIG.alphabet()));
+        search.swap(0, 1);
+        assertEquals("(CD)", search.cycles(CONFIG.alphabet()));
+        search.swap(3, 3);
+        assertEquals("", search.cycles(CONFIG.alphabet()));
+    }
+
+    @Test
+    public void testClimb() {
+        int[] cipher = indices(machine("(AQ) (EP) (TZ)").convert(TEXT));
+        double[] weights = PlugboardSearch.weights(indices(TEXT), 26, 3);
+        PlugboardSearch search =
+            new PlugboardSearch(machine(""), cipher, weights, 3);
+        double start = search.score();
+        assertTrue(search.climb() > start);
+        assertEquals("(AQ) (EP) (TZ)", search.cycles(CONFIG.alphabet()));
+        assertArrayEquals(indices(TEXT), search.plaintext());
+    }
+
+    @Test
+    public void testErrors() {
+        double[] weights = new double[26 * 26];
+        try {
+            new PlugboardSearch(machine(""), new int[4], weights, 3);
+            fail("wrong number of weights accepted");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+        try {
+            new PlugboardSearch(machine("(ABC)"), new int[4], weights, 2);
+            fail("plugboard of more than pairs accepted");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package enigma;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/** A bounded queue between exactly one producing thread and one
+ *  consuming thread, without locks.  The producer publishes each item
+ *  by advancing its tail index with a release store after filling the
+ *  slot, and the consumer frees the slot by advancing its head index
+ *  likewise, so neither ever writes a field the other writes.  Each side
+ *  keeps its last view of the other's index and only rereads it when
+ *  that view says the queue is full (or empty).  A side that has to
+ *  wait spins briefly and then parks for short intervals, and the time
+ *  it spends waiting is added to its stall time.
+ *  @author Flynn"TheFox"Gray
+ */
+class RingBuffer<T> {
+
+    /** An empty buffer holding up to CAPACITY items, a power of 2. */
+    RingBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity not a power of 2");
+        }
+        _slots = new Object[capacity];
+        _mask = capacity - 1;
+    }
+
+    /** Add ITEM, not null, at the tail, waiting while I am full.  Called
+     *  only by the producer. */
+    void put(T item) {
+        long tail = _tail.get();
+        if (tail - _headSeen == _slots.length) {
+            _headSeen = _head.get();
+            if (tail - _headSeen == _slots.length) {
+                long start = System.nanoTime();
+                for (int spins = 0; tail - _headSeen == _slots.length;
+                     spins += 1) {
+                    pause(spins);
+                    _headSeen = _head.get();
+                }
+                _putStall += System.nanoTime() - start;
+            }
+        }
+        _slots[(int) tail & _mask] = item;
+        _tail.lazySet(tail + 1);
+    }
+
+    /** Remove and return the item at the head, waiting while I am empty.
+     *  Called only by the consumer. */
+    @SuppressWarnings("unchecked")
+    T take() {
+        long head = _head.get();
+        if (head == _tailSeen) {
+            _tailSeen = _tail.get();
+            if (head == _tailSeen) {
+                long start = System.nanoTime();
+                for (int spins = 0; head == _tailSeen; spins += 1) {
+                    pause(spins);
+                    _tailSeen = _tail.get();
+                }
+                _takeStall += System.nanoTime() - start;
+            }
+        }
+        int slot = (int) head & _mask;
+        T item = (T) _slots[slot];
+        _slots[slot] = null;
+        _head.lazySet(head + 1);
+        return item;
+    }
+
+    /** Return the nanoseconds the producer has spent waiting in put.
+     *  Valid once the producer has finished. */
+    long putStall() {
+        return _putStall;
+    }
+
+    /** Return the nanoseconds the consumer has spent waiting in take.
+     *  Valid once the consumer has finished. */
+    long takeStall() {
+        return _takeStall;
+    }
+
+    /** Wait a little, having already waited SPINS times. */
+    private static void pause(int spins) {
+        if (spins < SPINS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /** Number of times a waiting side spins before parking. */
+    private static final int SPINS = 256;
+    /** Nanoseconds a waiting side parks at a time. */
+    private static final long PARK_NANOS = 20_000;
+
+    /** The items, item K being in slot K & _mask. */
+    private final Object[] _slots;
+    /** Capacity - 1. */
+    private final int _mask;
+    /** Index of the next item to take. */
+    private final AtomicLong _head = new AtomicLong();
+    /** Index of the next item to put. */
+    private final AtomicLong _tail = new AtomicLong();
+    /** The producer's last view of _head. */
+    private long _headSeen;
+    /** The consumer's last view of _tail. */
+    private long _tailSeen;
+    /** Nanoseconds spent waiting by the producer and the consumer. */
+    private long _putStall, _takeStall;
+}
@@ -0,0 +1,227 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/** The rotor slots of a machine, from the reflector (slot 0) to the fast
+ *  rotor, compiled into index tables.  A RotorCore performs exactly the
+ *  stepping and substitution that Machine performs with the same rotors,
+ *  but keeps the rotor positions in an array supplied by the caller
+ *  rather than in the Rotor objects, so that it may be freely shared.
+ *  @author Flynn"TheFox"Gray
+ */
+class RotorCore {
+
+    /** A RotorCore for the rotors in SLOTS, which must be distinct. */
+    private RotorCore(Rotor[] slots) {
+        _numRotors = slots.length;
+        _size = slots[0].size();
+        _forward = new int[_numRotors][];
+        _inverse = new int[_numRotors][];
+        _rotates = new boolean[_numRotors];
+        _notches = new boolean[_numRotors][_size];
+        for (int k = 0; k < _numRotors; k += 1) {
+            Rotor r = slots[k];
+            _forward[k] = r.permutation().forwardTable();
+            _inverse[k] = r.permutation().inverseTable();
+            _rotates[k] = r.rotates();
+            String notches = r.notches();
+            for (int i = 0; i < notches.length(); i += 1) {
+                int n = r.alphabet().toInt(notches.charAt(i));
+                if (n >= 0) {
+                    _notches[k][n] = true;
+                }
+            }
+        }
+        _hash = Arrays.deepHashCode(_forward) * 31
+            + Arrays.deepHashCode(_notches) * 7 + Arrays.hashCode(_rotates);
+    }
+
+    /** Return a RotorCore for the rotors in SLOTS, or null if SLOTS
+     *  cannot be compiled: some slot is empty, the rotors do not share
+     *  one alphabet size, or one Rotor fills two slots (and so shares
+     *  its setting between them). */
+    static RotorCore compile(Rotor[] slots) {
+        if (slots.length < 2) {
+            return null;
+        }
+        for (int k = 0; k < slots.length; k += 1) {
+            if (slots[k] == null || slots[k].size() != slots[0].size()) {
+                return null;
+            }
+            for (int j = 0; j < k; j += 1) {
+                if (slots[j] == slots[k]) {
+                    return null;
+                }
+            }
+        }
+        return new RotorCore(slots);
+    }
+
+    /** Return the number of rotor slots I have. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the size of my alphabet. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the forward table of slot K at setting 0.  The result must
+     *  not be modified. */
+    int[] forward(int k) {
+        return _forward[k];
+    }
+
+    /** Return the inverse table of slot K at setting 0.  The result must
+     *  not be modified. */
+    int[] inverse(int k) {
+        return _inverse[k];
+    }
+
+    /** Return true iff the rotor in slot K moves. */
+    boolean rotates(int k) {
+        return _rotates[k];
+    }
+
+    /** Return true iff the rotor in slot K is at a notch at setting P. */
+    boolean atNotch(int k, int p) {
+        return _notches[k][p];
+    }
+
+    /** Return true iff POS holds one valid setting for each of my
+     *  slots. */
+    boolean accepts(int[] pos) {
+        if (pos.length != _numRotors) {
+            return false;
+        }
+        for (int p : pos) {
+            if (p < 0 || p >= _size) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Advance the settings in POS as Machine advances its rotors before
+     *  converting a character. */
+    void step(int[] pos) {
+        boolean fastRotorTurnedAlready = false;
+        for (int k = 1; k < _numRotors - 1; k += 1) {
+            if (_rotates[k] && _notches[k + 1][pos[k + 1]]) {
+                advance(k, pos);
+                advance(k + 1, pos);
+                if (k + 1 == _numRotors - 1) {
+                    fastRotorTurnedAlready = true;
+                }
+                k += 1;
+            }
+        }
+        if (!fastRotorTurnedAlready) {
+            advance(_numRotors - 1, pos);
+        }
+    }
+
+    /** Advance slot K of POS one position, if that rotor moves. */
+    private void advance(int k, int[] pos) {
+        if (_rotates[k]) {
+            pos[k] = pos[k] == _size - 1 ? 0 : pos[k] + 1;
+        }
+    }
+
+    /** Return the result of passing C through all my rotors, forward to
+     *  the reflector and back, with the rotors at settings POS. */
+    int convert(int c, int[] pos) {
+        for (int k = _numRotors - 1; k >= 0; k -= 1) {
+            c = shift(_forward[k], c, pos[k]);
+        }
+        for (int k = 1; k < _numRotors; k += 1) {
+            c = shift(_inverse[k], c, pos[k]);
+        }
+        return c;
+    }
+
+    /** Store convert(C, POS) into DEST[OFF + C] for every index C of my
+     *  alphabet. */
+    void fill(int[] pos, char[] dest, int off) {
+        for (int c = 0; c < _size; c += 1) {
+            dest[off + c] = (char) convert(c, pos);
+        }
+    }
+
+    /** Return TABLE applied to C as seen by a rotor at SETTING. */
+    private int shift(int[] table, int c, int setting) {
+        int i = c + setting;
+        if (i >= _size) {
+            i -= _size;
+        }
+        int r = table[i] - setting;
+        if (r < 0) {
+            r += _size;
+        }
+        return r;
+    }
+
+    /** Return a byte string that identifies my tables and stepping rule,
+     *  followed by the settings START.  Two RotorCores with equal
+     *  descriptors for the same START produce the same keystream. */
+    byte[] descriptor(int[] start) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(_size);
+            out.writeInt(_numRotors);
+            for (int k = 0; k < _numRotors; k += 1) {
+                out.writeBoolean(_rotates[k]);
+                for (int i = 0; i < _size; i += 1) {
+                    out.writeChar(_forward[k][i]);
+                    out.writeBoolean(_notches[k][i]);
+                }
+            }
+            for (int p : start) {
+                out.writeChar(p);
+            }
+        } catch (IOException excp) {
+            throw new IllegalStateException(excp);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof RotorCore)) {
+            return false;
+        }
+        RotorCore other = (RotorCore) obj;
+        return _hash == other._hash && _size == other._size
+            && Arrays.deepEquals(_forward, other._forward)
+            && Arrays.equals(_rotates, other._rotates)
+            && Arrays.deepEquals(_notches, other._notches);
+    }
+
+    @Override
+    public int hashCode() {
+        return _hash;
+    }
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+    /** Size of the alphabet. */
+    private final int _size;
+    /** Forward permutation table of each slot at setting 0. */
+    private final int[][] _forward;
+    /** Inverse permutation table of each slot at setting 0. */
+    private final int[][] _inverse;
+    /** True for the slots whose rotor moves. */
+    private final boolean[] _rotates;
+    /** _notches[K][P] is true iff slot K is at a notch at setting P. */
+    private final boolean[][] _notches;
+    /** Hash of my tables. */
+    private final int _hash;
+}
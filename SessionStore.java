@@ -0,0 +1,333 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static enigma.EnigmaException.*;
+
+/** A store of many long-lived conversion sessions, each with the rotors,
+ *  plugboard and rotor settings of the machine it was opened from, kept
+ *  without a Machine.  A session takes two longs: one numbering its
+ *  profile (the compiled rotors, plugboard and alphabet, shared by every
+ *  session opened with the same ones) and one holding the settings of
+ *  all its rotors but the reflector, packed into as few bits each as
+ *  the alphabet needs.  The longs are kept in pages of PAGE sessions,
+ *  allocated as sessions are opened: 16 MB for a million sessions.
+ *  Each distinct profile in use takes a few hundred bytes more (its
+ *  plugboard table and table entry), so a million sessions that share
+ *  a few profiles fit in about 16 MB, whereas a million that each have
+ *  their own plugboard take a few hundred MB.  A profile is dropped
+ *  when the last session with it closes.  Sessions are numbered from 0;
+ *  the numbers of closed sessions are used again.  Each session is
+ *  guarded by one of STRIPES locks, so that conversions of different
+ *  sessions seldom wait for each other, and converting is a lookup of
+ *  the profile and a walk of its RotorCore.  Safe for use by several
+ *  threads at once.
+ *  @author Flynn"TheFox"Gray
+ */
+class SessionStore {
+
+    /** Number of sessions in a page. */
+    static final int PAGE = 1 << 14;
+    /** Number of locks guarding sessions. */
+    static final int STRIPES = 64;
+
+    /** A store holding up to CAPACITY sessions at once. */
+    SessionStore(int capacity) {
+        _capacity = capacity;
+        _pages = new long[(capacity + PAGE - 1) / PAGE][];
+        _locks = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; i += 1) {
+            _locks[i] = new Object();
+        }
+    }
+
+    /** Open a session converting as M would from its current settings,
+     *  and return its number.  M's rotors must compile into a RotorCore
+     *  and its settings must fit into one long. */
+    int open(Machine M) {
+        RotorCore core = M.core();
+        if (core == null) {
+            throw error("rotors cannot be compiled for a session");
+        }
+        int[] pos = M.positions();
+        if (pos[0] != 0) {
+            throw error("reflector must be at setting 0 for a session");
+        }
+        Profile profile =
+            new Profile(core, M.plugboard().forwardTable(), M.alphabet());
+        if (profile._bits * (pos.length - 1) > Long.SIZE) {
+            throw error("too many rotors to pack a session");
+        }
+        int session;
+        synchronized (this) {
+            if (_free < 0 && _next >= _capacity) {
+                throw error("no room for another session");
+            }
+            Integer id = _profileIds.get(profile);
+            if (id == null) {
+                id = newProfileId();
+                profile = new Profile(core, profile._plugboard.clone(),
+                                      profile._alphabet);
+                _profiles[id] = profile;
+                _profileIds.put(profile, id);
+                _numProfiles += 1;
+            }
+            profile = _profiles[id];
+            profile._sessions += 1;
+            if (_free >= 0) {
+                session = _free;
+                _free = (int) page(session)[slot(session) + 1];
+            } else {
+                session = _next;
+                _next += 1;
+                if (_pages[session / PAGE] == null) {
+                    _pages[session / PAGE] = new long[2 * PAGE];
+                }
+            }
+            _open += 1;
+            synchronized (lock(session)) {
+                long[] page = page(session);
+                page[slot(session)] = id + 1;
+                page[slot(session) + 1] = profile.pack(pos);
+            }
+        }
+        return session;
+    }
+
+    /** Return a free profile number, growing _profiles if there is
+     *  none. */
+    private int newProfileId() {
+        if (_numFreeIds > 0) {
+            _numFreeIds -= 1;
+            return _freeIds[_numFreeIds];
+        }
+        int id = _profileLimit;
+        if (id == _profiles.length) {
+            _profiles = Arrays.copyOf(_profiles, Math.max(16, 2 * id));
+        }
+        _profileLimit += 1;
+        return id;
+    }
+
+    /** Close SESSION, which must be open, dropping its profile if no
+     *  other open session has it. */
+    void close(int session) {
+        synchronized (this) {
+            int id;
+            synchronized (lock(session)) {
+                long[] page = open(session);
+                id = (int) page[slot(session)] - 1;
+                page[slot(session)] = 0;
+                page[slot(session) + 1] = _free;
+            }
+            _free = session;
+            _open -= 1;
+            Profile profile = _profiles[id];
+            profile._sessions -= 1;
+            if (profile._sessions == 0) {
+                _profileIds.remove(profile);
+                _profiles[id] = null;
+                if (_numFreeIds == _freeIds.length) {
+                    _freeIds = Arrays.copyOf(_freeIds,
+                                             Math.max(16, 2 * _numFreeIds));
+                }
+                _freeIds[_numFreeIds] = id;
+                _numFreeIds += 1;
+                _numProfiles -= 1;
+            }
+        }
+    }
+
+    /** Replace each of CHARS[FROM .. TO-1], indices into the alphabet of
+     *  SESSION, which must be open, by its conversion by SESSION, in
+     *  order, advancing its rotors as a Machine would. */
+    void convert(int session, int[] chars, int from, int to) {
+        synchronized (lock(session)) {
+            long[] page = open(session);
+            int at = slot(session);
+            Profile profile = _profiles[(int) page[at] - 1];
+            RotorCore core = profile._core;
+            int[] plugboard = profile._plugboard;
+            int[] pos = profile.unpack(page[at + 1]);
+            for (int i = from; i < to; i += 1) {
+                core.step(pos);
+                chars[i] =
+                    plugboard[core.convert(plugboard[chars[i]], pos)];
+            }
+            page[at + 1] = profile.pack(pos);
+        }
+    }
+
+    /** Return MSG, in the alphabet of SESSION, which must be open,
+     *  converted by SESSION. */
+    String convert(int session, String msg) {
+        Alphabet alphabet = profile(session)._alphabet;
+        int[] chars = new int[msg.length()];
+        for (int i = 0; i < chars.length; i += 1) {
+            chars[i] = alphabet.toInt(msg.charAt(i));
+            if (chars[i] < 0) {
+                throw error("character %c not in alphabet", msg.charAt(i));
+            }
+        }
+        convert(session, chars, 0, chars.length);
+        char[] result = new char[chars.length];
+        for (int i = 0; i < chars.length; i += 1) {
+            result[i] = alphabet.toChar(chars[i]);
+        }
+        return new String(result);
+    }
+
+    /** Return the settings of the rotors of SESSION, which must be open,
+     *  from the reflector to the fast rotor. */
+    int[] positions(int session) {
+        synchronized (lock(session)) {
+            long[] page = open(session);
+            int at = slot(session);
+            return _profiles[(int) page[at] - 1].unpack(page[at + 1]);
+        }
+    }
+
+    /** Return the number of open sessions. */
+    synchronized int size() {
+        return _open;
+    }
+
+    /** Return the number of distinct profiles of the open sessions. */
+    synchronized int profiles() {
+        return _numProfiles;
+    }
+
+    /** Return the number of bytes of pages allocated. */
+    synchronized long bytes() {
+        long pages = (_next + PAGE - 1) / PAGE;
+        return pages * PAGE * 2 * Long.BYTES;
+    }
+
+    /** Return the profile of SESSION, which must be open. */
+    private Profile profile(int session) {
+        synchronized (lock(session)) {
+            return _profiles[(int) open(session)[slot(session)] - 1];
+        }
+    }
+
+    /** Return the lock guarding SESSION, which must be a session number
+     *  below my capacity. */
+    private Object lock(int session) {
+        if (session < 0 || session >= _capacity) {
+            throw error("no session %d", session);
+        }
+        return _locks[session % STRIPES];
+    }
+
+    /** Return the page holding SESSION, which must be open. */
+    private long[] open(int session) {
+        long[] page = page(session);
+        if (page == null || page[slot(session)] == 0) {
+            throw error("no session %d", session);
+        }
+        return page;
+    }
+
+    /** Return the page holding SESSION, or null if it has none. */
+    private long[] page(int session) {
+        return _pages[session / PAGE];
+    }
+
+    /** Return the index in its page of the first long of SESSION. */
+    private static int slot(int session) {
+        return 2 * (session % PAGE);
+    }
+
+    /** What sessions opened from like machines share: compiled rotors,
+     *  plugboard and alphabet. */
+    private static class Profile {
+        /** A profile converting with CORE and the plugboard with forward
+         *  table PLUGBOARD, over ALPHABET.  PLUGBOARD must not change
+         *  while I am in use. */
+        Profile(RotorCore core, int[] plugboard, Alphabet alphabet) {
+            _core = core;
+            _plugboard = plugboard;
+            _alphabet = alphabet;
+            _bits = Math.max(1, Integer.SIZE
+                             - Integer.numberOfLeadingZeros(core.size() - 1));
+        }
+
+        /** Return the settings POS, from the reflector on, packed into a
+         *  long, the reflector's being left out. */
+        long pack(int[] pos) {
+            long packed = 0;
+            for (int k = pos.length - 1; k >= 1; k -= 1) {
+                packed = packed << _bits | pos[k];
+            }
+            return packed;
+        }
+
+        /** Return the settings packed into PACKED by pack. */
+        int[] unpack(long packed) {
+            int[] pos = new int[_core.numRotors()];
+            long mask = (1L << _bits) - 1;
+            for (int k = 1; k < pos.length; k += 1) {
+                pos[k] = (int) (packed & mask);
+                packed >>>= _bits;
+            }
+            return pos;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Profile)) {
+                return false;
+            }
+            Profile other = (Profile) obj;
+            return _alphabet == other._alphabet
+                && Arrays.equals(_plugboard, other._plugboard)
+                && _core.equals(other._core);
+        }
+
+        @Override
+        public int hashCode() {
+            return _core.hashCode() * 31 + Arrays.hashCode(_plugboard);
+        }
+
+        /** Compiled rotors. */
+        private final RotorCore _core;
+        /** Forward table of the plugboard. */
+        private final int[] _plugboard;
+        /** Alphabet of messages. */
+        private final Alphabet _alphabet;
+        /** Number of bits in a packed setting. */
+        private final int _bits;
+        /** Number of open sessions with me as their profile. */
+        private int _sessions;
+    }
+
+    /** Most sessions open at once. */
+    private final int _capacity;
+    /** Two longs for each session: its profile number plus 1 (0 if it is
+     *  closed) and its packed settings (the next closed session, or -1,
+     *  if it is closed); each page allocated when first needed. */
+    private final long[][] _pages;
+    /** Locks guarding sessions: session S by _locks[S % STRIPES]. */
+    private final Object[] _locks;
+    /** The profile numbered K is _profiles[K], or null if K is free;
+     *  replaced by a copy twice the size when full. */
+    private volatile Profile[] _profiles = new Profile[0];
+    /** Profile numbers below this have been used at some time. */
+    private int _profileLimit;
+    /** The number of each profile in _profiles. */
+    private final HashMap<Profile, Integer> _profileIds = new HashMap<>();
+    /** Number of profiles in use. */
+    private int _numProfiles;
+    /** Free profile numbers below _profileLimit, in the first
+     *  _numFreeIds entries. */
+    private int[] _freeIds = new int[0];
+    /** Number of free profile numbers. */
+    private int _numFreeIds;
+    /** The most recently closed session, or -1. */
+    private int _free = -1;
+    /** Sessions below this number have been opened at some time. */
+    private int _next;
+    /** Number of open sessions. */
+    private int _open;
+}
@@ -0,0 +1,196 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.Scanner;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the SessionStore class.
+ *  @author Flynn"TheFox"Gray
+ */
+public class SessionStoreTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A configuration for the tests. */
+    private static final Configuration CONFIG =
+        Configuration.read(new Scanner(NAVAL_CONFIG));
+
+    /** Settings lines for the tests. */
+    private static final String[] SETTINGS = {
+        "* B Beta I II III AAAA (AQ) (EP)",
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)",
+        "* B Beta I II III ZZZZ",
+    };
+
+    /** Return a machine of CONFIG set up by SETTINGS[K]. */
+    private static Machine machine(int k) {
+        Machine M = CONFIG.newMachine();
+        Main.setUp(M, SETTINGS[k]);
+        return M;
+    }
+
+    /** Return a random message of up to 40 letters from RANDOM. */
+    private static String message(Random random) {
+        char[] msg = new char[random.nextInt(40)];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = (char) ('A' + random.nextInt(26));
+        }
+        return new String(msg);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSameAsMachines() {
+        Random random = new Random(49);
+        SessionStore store = new SessionStore(100);
+        Machine[] machines = new Machine[30];
+        int[] sessions = new int[machines.length];
+        for (int i = 0; i < machines.length; i += 1) {
+            machines[i] = machine(i % SETTINGS.length);
+            sessions[i] = store.open(machines[i]);
+        }
+        assertEquals(SETTINGS.length, store.profiles());
+        for (int n = 0; n < 3000; n += 1) {
+            int i = random.nextInt(machines.length);
+            if (random.nextInt(20) == 0) {
+                store.close(sessions[i]);
+                machines[i] = machine(random.nextInt(SETTINGS.length));
+                sessions[i] = store.open(machines[i]);
+            }
+            String msg = message(random);
+            assertEquals(machines[i].convert(msg),
+                         store.convert(sessions[i], msg));
+            assertArrayEquals(machines[i].positions(),
+                              store.positions(sessions[i]));
+        }
+        assertEquals(machines.length, store.size());
+        assertEquals(SETTINGS.length, store.profiles());
+    }
+
+    @Test
+    public void testMany() {
+        SessionStore store = new SessionStore(1 << 20);
+        Machine M = machine(0);
+        for (int i = 0; i < 100000; i += 1) {
+            assertEquals(i, store.open(M));
+        }
+        assertEquals(100000, store.size());
+        assertTrue(store.bytes() < 2 << 20);
+        store.close(5);
+        store.close(7);
+        assertEquals(7, store.open(M));
+        assertEquals(5, store.open(M));
+        assertEquals(100000, store.open(M));
+        assertEquals("IHBDQQMTQZ", store.convert(99999, "HELLOWORLD"));
+    }
+
+    @Test
+    public void testDistinctPlugboards() {
+        SessionStore store = new SessionStore(1 << 20);
+        Machine M = machine(0);
+        int[] rotors = new int[M.numRotors()];
+        for (int k = 0; k < rotors.length; k += 1) {
+            rotors[k] = M.rotorIndex(M.getRotor(k).name());
+        }
+        int[] settings = new int[rotors.length - 1];
+        int[] pairs = new int[6];
+        int n = 0;
+        for (int a = 0; a < 26; a += 2) {
+            for (int b = a + 2; b < 26; b += 2) {
+                for (int c = b + 2; c < 26; c += 2) {
+                    pairs[0] = a;
+                    pairs[1] = a + 1;
+                    pairs[2] = b;
+                    pairs[3] = b + 1;
+                    pairs[4] = c;
+                    pairs[5] = c + 1;
+                    for (int p = 0; p < 26; p += 1) {
+                        settings[3] = p;
+                        M.rekey(rotors, settings, pairs);
+                        assertEquals(n, store.open(M));
+                        n += 1;
+                    }
+                }
+            }
+        }
+        assertEquals(n / 26, store.profiles());
+        for (int i = 0; i < n; i += 1) {
+            if (i % 26 != 0) {
+                store.close(i);
+            }
+        }
+        assertEquals(n / 26, store.profiles());
+        for (int i = 0; i < n; i += 26) {
+            store.close(i);
+        }
+        assertEquals(0, store.size());
+        assertEquals(0, store.profiles());
+        Main.setUp(M, SETTINGS[0]);
+        int session = store.open(M);
+        assertEquals(1, store.profiles());
+        assertEquals("IHBDQQMTQZ", store.convert(session, "HELLOWORLD"));
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        SessionStore store = new SessionStore(1000);
+        int[] sessions = new int[1000];
+        for (int i = 0; i < sessions.length; i += 1) {
+            sessions[i] = store.open(machine(0));
+        }
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t += 1) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < sessions.length; i += 1) {
+                    store.convert(sessions[i], "HELLO");
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Machine M = machine(0);
+        M.convert("HELLOHELLOHELLOHELLO");
+        for (int session : sessions) {
+            assertArrayEquals(M.positions(), store.positions(session));
+        }
+    }
+
+    @Test
+    public void testErrors() {
+        SessionStore store = new SessionStore(2);
+        int a = store.open(machine(0));
+        store.open(machine(1));
+        try {
+            store.open(machine(2));
+            fail("opened too many sessions");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+        store.close(a);
+        try {
+            store.convert(a, "HELLO");
+            fail("converted with a closed session");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+        try {
+            store.positions(-1);
+            fail("found a session never opened");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+}
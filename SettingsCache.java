@@ -0,0 +1,108 @@
+package enigma;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A bounded cache of settings lines that have already been checked by
+ *  Main.setUp, each with the rotors, rotor settings and plugboard it
+ *  sets up.  A line found in the cache sets up a machine without being
+ *  parsed or checked again.  Lines are looked up with their whitespace
+ *  normalized, and the least recently used line is evicted once the
+ *  cache is full.  An entry is good for any machine with the same
+ *  available rotors, so a Configuration keeps one cache for all the
+ *  machines it builds.  Safe for use by several machines at once.
+ *  @author Flynn"TheFox"Gray
+ */
+class SettingsCache {
+
+    /** A cache holding at most CAPACITY settings lines. */
+    SettingsCache(int capacity) {
+        _capacity = capacity;
+    }
+
+    /** Set up M according to the settings line LINE, as
+     *  Main.setUp(M, LINE.split(" ")) would once LINE's whitespace is
+     *  normalized. */
+    void apply(Machine M, String line) {
+        String key = normalize(line);
+        Settings settings;
+        synchronized (this) {
+            settings = _entries.get(key);
+            if (settings != null) {
+                _hits += 1;
+            } else {
+                _misses += 1;
+            }
+        }
+        if (settings == null) {
+            Main.setUp(M, key.split(" "));
+            settings = new Settings(M);
+            synchronized (this) {
+                _entries.put(key, settings);
+                trim();
+            }
+            return;
+        }
+        M.insertRotors(settings._rotors);
+        M.setRotors(settings._setting);
+        M.setPlugboard(settings._plugboard);
+    }
+
+    /** Return LINE with leading and trailing whitespace removed and every
+     *  other run of whitespace replaced by one space. */
+    static String normalize(String line) {
+        return String.join(" ", line.trim().split("\\s+"));
+    }
+
+    /** Evict least recently used lines until I am within capacity. */
+    private void trim() {
+        Iterator<Map.Entry<String, Settings>> lru =
+            _entries.entrySet().iterator();
+        while (_entries.size() > _capacity && lru.hasNext()) {
+            lru.next();
+            lru.remove();
+            _evictions += 1;
+        }
+    }
+
+    /** Return a one-line summary of my counters. */
+    synchronized String stats() {
+        long lookups = _hits + _misses;
+        return String.format("settings cache: %d hits, %d misses, "
+                             + "%d evictions, %d entries, %.1f%% hit rate",
+                             _hits, _misses, _evictions, _entries.size(),
+                             lookups == 0 ? 0.0 : 100.0 * _hits / lookups);
+    }
+
+    /** What a settings line sets up. */
+    private static class Settings {
+        /** The settings of M, just set up. */
+        Settings(Machine M) {
+            _rotors = M.rotorNames();
+            StringBuilder setting = new StringBuilder();
+            for (int k = 1; k < M.numRotors(); k += 1) {
+                setting.append(M.alphabet().toChar(M.getRotor(k).setting()));
+            }
+            _setting = setting.toString();
+            _plugboard = M.plugboard();
+            _plugboard.forwardTable();
+        }
+
+        /** Names of the rotors, reflector first. */
+        private final String[] _rotors;
+        /** Rotor settings, as for Machine.setRotors. */
+        private final String _setting;
+        /** Plugboard. */
+        private final Permutation _plugboard;
+    }
+
+    /** Most lines held. */
+    private final int _capacity;
+    /** Settings by normalized line, in least- to most-recently-used
+     *  order. */
+    private final LinkedHashMap<String, Settings> _entries =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /** Counters. */
+    private long _hits, _misses, _evictions;
+}
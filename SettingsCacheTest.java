@@ -0,0 +1,80 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Scanner;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the SettingsCache class.
+ *  @author Flynn"TheFox"Gray
+ */
+public class SettingsCacheTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A configuration for the tests. */
+    private static final Configuration CONFIG =
+        Configuration.read(new Scanner(NAVAL_CONFIG));
+
+    /** A settings line. */
+    private static final String LINE = "* B Beta I II III AAAA (AQ) (EP)";
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRepeatedLines() {
+        SettingsCache cache = new SettingsCache(4);
+        Machine cached = CONFIG.newMachine();
+        cached.setSettingsCache(cache);
+        Machine plain = CONFIG.newMachine();
+        plain.setSettingsCache(null);
+        for (int i = 0; i < 3; i += 1) {
+            Main.setUp(cached, i == 1 ? "  *  B Beta I II III AAAA (AQ)  (EP) "
+                       : LINE);
+            Main.setUp(plain, LINE);
+            assertEquals(plain.convert("HELLOWORLD"),
+                         cached.convert("HELLOWORLD"));
+        }
+        assertTrue(cache.stats().startsWith(
+            "settings cache: 2 hits, 1 misses, 0 evictions, 1 entries"));
+    }
+
+    @Test
+    public void testEviction() {
+        SettingsCache cache = new SettingsCache(2);
+        Machine machine = CONFIG.newMachine();
+        machine.setSettingsCache(cache);
+        Main.setUp(machine, "* B Beta I II III AAAA");
+        Main.setUp(machine, "* B Beta I II III AAAB");
+        Main.setUp(machine, "* B Beta I II III AAAA");
+        Main.setUp(machine, "* B Beta I II III AAAC");
+        Main.setUp(machine, "* B Beta I II III AAAB");
+        assertTrue(cache.stats().startsWith(
+            "settings cache: 1 hits, 4 misses, 2 evictions, 2 entries"));
+    }
+
+    @Test
+    public void testBadLinesNotCached() {
+        SettingsCache cache = new SettingsCache(2);
+        Machine machine = CONFIG.newMachine();
+        machine.setSettingsCache(cache);
+        for (int i = 0; i < 2; i += 1) {
+            try {
+                Main.setUp(machine, "* B Beta I II XX AAAA");
+                fail("accepted a bad rotor");
+            } catch (EnigmaException excp) {
+                assertEquals("Bad rotor name", excp.getMessage());
+            }
+        }
+        assertTrue(cache.stats().startsWith(
+            "settings cache: 0 hits, 2 misses, 0 evictions, 0 entries"));
+    }
+}
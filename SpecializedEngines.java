@@ -0,0 +1,322 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+/** Engines generated at run time for one particular RotorCore.  The
+ *  generated class has the rotor slots unrolled, the rotor tables in
+ *  static final fields, and stepping code in which only the notches that
+ *  actually exist are tested and the slots that cannot move are never
+ *  advanced.  Its source is compiled in memory with the system Java
+ *  compiler and defined as a hidden class of this package, one per
+ *  distinct RotorCore, of which the MAX_GENERATED most recently used
+ *  are kept.  Where no compiler is available, or generation fails, a
+ *  CoreEngine is used instead.
+ *  @author Flynn"TheFox"Gray
+ */
+class SpecializedEngines {
+
+    /** Most rotor slots for which code is generated. */
+    static final int MAX_ROTORS = 12;
+    /** Largest alphabet for which code is generated.  The tables of
+     *  larger ones would overflow the generated static initializer. */
+    static final int MAX_SIZE = 256;
+
+    /** Return a new Engine for CORE, specialized if possible, with its
+     *  rotor settings at POS. */
+    static Engine create(RotorCore core, int[] pos) {
+        Engine result = null;
+        MethodHandle constructor = constructorFor(core);
+        if (constructor != null) {
+            try {
+                result = (Engine) constructor.invoke();
+            } catch (Throwable excp) {
+                result = null;
+            }
+        }
+        if (result == null) {
+            result = new CoreEngine(core);
+        }
+        result.setPositions(pos);
+        return result;
+    }
+
+    /** Return true iff engines for CORE are generated (as opposed to
+     *  falling back to CoreEngine). */
+    static boolean specializes(RotorCore core) {
+        return constructorFor(core) != null;
+    }
+
+    /** Return true iff code for CORE has already been generated, without
+     *  generating it. */
+    static boolean generated(RotorCore core) {
+        synchronized (GENERATED) {
+            return GENERATED.get(core) instanceof MethodHandle;
+        }
+    }
+
+    /** Return the constructor of the generated class for CORE, generating
+     *  it if need be, or null if it cannot be generated.  Code is
+     *  generated without holding the lock on GENERATED, so two threads
+     *  may both generate it for a new CORE; the first to finish is
+     *  kept. */
+    private static MethodHandle constructorFor(RotorCore core) {
+        if (core.numRotors() > MAX_ROTORS || core.size() > MAX_SIZE) {
+            return null;
+        }
+        Object result;
+        synchronized (GENERATED) {
+            result = GENERATED.get(core);
+        }
+        if (result == null) {
+            result = define(core);
+            synchronized (GENERATED) {
+                Object other = GENERATED.putIfAbsent(core, result);
+                if (other != null) {
+                    result = other;
+                }
+            }
+        }
+        return result instanceof MethodHandle ? (MethodHandle) result : null;
+    }
+
+    /** Return the constructor of a newly generated hidden class for CORE,
+     *  or FAILED. */
+    private static Object define(RotorCore core) {
+        byte[] bytes = compile(source(core));
+        if (bytes == null) {
+            return FAILED;
+        }
+        try {
+            MethodHandles.Lookup lookup =
+                MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return lookup.findConstructor(lookup.lookupClass(),
+                                          MethodType.methodType(void.class));
+        } catch (ReflectiveOperationException | LinkageError excp) {
+            return FAILED;
+        }
+    }
+
+    /** Return the Java source of an Engine specialized for CORE. */
+    static String source(RotorCore core) {
+        int n = core.numRotors();
+        StringBuilder src = new StringBuilder();
+        src.append("package enigma;\n")
+            .append("final class ").append(CLASS_NAME)
+            .append(" extends Engine {\n")
+            .append("    private static final int N = ").append(core.size())
+            .append(";\n");
+        for (int k = 0; k < n; k += 1) {
+            table(src, "F" + k, core.forward(k));
+            table(src, "I" + k, core.inverse(k));
+        }
+        src.append("    private int ").append(list(n, "p%d", ", "))
+            .append(";\n");
+
+        src.append("    @Override void setPositions(int[] pos) {\n");
+        for (int k = 0; k < n; k += 1) {
+            src.append(String.format("        p%d = pos[%d];%n", k, k));
+        }
+        src.append("    }\n");
+        src.append("    @Override void getPositions(int[] pos) {\n");
+        for (int k = 0; k < n; k += 1) {
+            src.append(String.format("        pos[%d] = p%d;%n", k, k));
+        }
+        src.append("    }\n");
+
+        String load = String.format("        int %s;%n",
+                                    list(n, "p%1$d = this.p%1$d", ", "));
+        String store = list(n, "        this.p%1$d = p%1$d;%n", "");
+        src.append("    @Override int convert(int c) {\n").append(load);
+        step(src, core, 1, "        ");
+        substitute(src, core, "        ");
+        src.append(store).append("        return c;\n    }\n");
+
+        src.append("    @Override void convert(int[] chars, int from, "
+                   + "int to) {\n").append(load)
+            .append("        for (int i = from; i < to; i += 1) {\n")
+            .append("            int c = chars[i];\n");
+        step(src, core, 1, "            ");
+        substitute(src, core, "            ");
+        src.append("            chars[i] = c;\n        }\n").append(store)
+            .append("    }\n}\n");
+        return src.toString();
+    }
+
+    /** Append to SRC a static final int[] field NAME holding TABLE. */
+    private static void table(StringBuilder src, String name, int[] table) {
+        src.append("    private static final int[] ").append(name)
+            .append(" = {");
+        for (int i = 0; i < table.length; i += 1) {
+            src.append(i % 16 == 0 ? "\n        " : " ").append(table[i])
+                .append(',');
+        }
+        src.append("\n    };\n");
+    }
+
+    /** Return FORMAT applied to 0 .. N-1, joined by SEPARATOR. */
+    private static String list(int n, String format, String separator) {
+        StringBuilder result = new StringBuilder();
+        for (int k = 0; k < n; k += 1) {
+            if (k > 0) {
+                result.append(separator);
+            }
+            result.append(String.format(format, k));
+        }
+        return result.toString();
+    }
+
+    /** Append to SRC, indented by INDENT, the stepping of CORE from pass K
+     *  of Machine.advanceRotors onward, given that the fast rotor has not
+     *  yet turned. */
+    private static void step(StringBuilder src, RotorCore core, int k,
+                             String indent) {
+        int n = core.numRotors();
+        if (k >= n - 1) {
+            advance(src, core, n - 1, indent);
+            return;
+        }
+        String notch = notchTest(core, k + 1);
+        if (!core.rotates(k) || notch == null) {
+            step(src, core, k + 1, indent);
+            return;
+        }
+        src.append(indent).append("if (").append(notch).append(") {\n");
+        advance(src, core, k, indent + "    ");
+        advance(src, core, k + 1, indent + "    ");
+        if (k + 1 < n - 1) {
+            step(src, core, k + 2, indent + "    ");
+        }
+        src.append(indent).append("} else {\n");
+        step(src, core, k + 1, indent + "    ");
+        src.append(indent).append("}\n");
+    }
+
+    /** Return a Java expression true iff slot K of CORE is at a notch, or
+     *  null if it never is. */
+    private static String notchTest(RotorCore core, int k) {
+        StringBuilder result = new StringBuilder();
+        for (int p = 0; p < core.size(); p += 1) {
+            if (core.atNotch(k, p)) {
+                if (result.length() > 0) {
+                    result.append(" || ");
+                }
+                result.append(String.format("p%d == %d", k, p));
+            }
+        }
+        return result.length() == 0 ? null : result.toString();
+    }
+
+    /** Append to SRC, indented by INDENT, the advance of slot K of CORE,
+     *  if that rotor moves. */
+    private static void advance(StringBuilder src, RotorCore core, int k,
+                                String indent) {
+        if (core.rotates(k)) {
+            src.append(String.format("%sp%d = p%d == N - 1 ? 0 : p%d + 1;%n",
+                                     indent, k, k, k));
+        }
+    }
+
+    /** Append to SRC, indented by INDENT, the passage of c through the
+     *  rotors of CORE and back. */
+    private static void substitute(StringBuilder src, RotorCore core,
+                                   String indent) {
+        int n = core.numRotors();
+        for (int k = n - 1; k >= 0; k -= 1) {
+            shift(src, "F" + k, k, indent);
+        }
+        for (int k = 1; k < n; k += 1) {
+            shift(src, "I" + k, k, indent);
+        }
+    }
+
+    /** Append to SRC, indented by INDENT, the conversion of c by TABLE as
+     *  seen by slot K at its setting. */
+    private static void shift(StringBuilder src, String table, int k,
+                              String indent) {
+        src.append(String.format(
+            "%1$sc += p%2$d;%n%1$sif (c >= N) {%n%1$s    c -= N;%n%1$s}%n"
+            + "%1$sc = %3$s[c] - p%2$d;%n%1$sif (c < 0) {%n"
+            + "%1$s    c += N;%n%1$s}%n", indent, k, table));
+    }
+
+    /** Return the class file compiled from SRC, or null if there is no
+     *  compiler or SRC does not compile. */
+    private static byte[] compile(String src) {
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null) {
+            return null;
+        }
+        ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+        JavaFileObject source =
+            new SimpleJavaFileObject(URI.create("string:///enigma/"
+                                                + CLASS_NAME + ".java"),
+                                     JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignore) {
+                    return src;
+                }
+            };
+        JavaFileManager files =
+            new ForwardingJavaFileManager<JavaFileManager>(
+                javac.getStandardFileManager(null, null, null)) {
+                @Override
+                public JavaFileObject getJavaFileForOutput(
+                    Location location, String name, JavaFileObject.Kind kind,
+                    FileObject sibling) {
+                    return new SimpleJavaFileObject(
+                        URI.create("bytes:///" + name + ".class"), kind) {
+                        @Override
+                        public OutputStream openOutputStream() {
+                            return classFile;
+                        }
+                    };
+                }
+            };
+        List<String> options =
+            List.of("-classpath", System.getProperty("java.class.path"),
+                    "-g:none", "-nowarn");
+        Boolean ok = javac.getTask(null, files, diagnostic -> { }, options,
+                                   null, Collections.singletonList(source))
+            .call();
+        return ok ? classFile.toByteArray() : null;
+    }
+
+    /** Name of every generated class (before hidden-class renaming). */
+    private static final String CLASS_NAME = "SpecializedEngine";
+
+    /** Marks a RotorCore for which generation failed. */
+    private static final Object FAILED = new Object();
+
+    /** Most RotorCores whose generated classes (or failures) are kept. */
+    static final int MAX_GENERATED = 32;
+
+    /** Generated constructors (or FAILED) by RotorCore, for the
+     *  MAX_GENERATED cores most recently used.  Hidden classes are
+     *  defined without ClassOption.STRONG, so the class of an evicted
+     *  core is unloaded once no engine of it remains. */
+    private static final Map<RotorCore, Object> GENERATED =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<RotorCore, Object> eldest) {
+                return size() > MAX_GENERATED;
+            }
+        };
+}
@@ -0,0 +1,110 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the SpecializedEngines class.
+ *  @author Flynn"TheFox"Gray
+ */
+public class SpecializedEnginesTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a naval machine with rotors ROTORS at SETTING. */
+    private Machine navalMachine(String[] rotors, String setting) {
+        ArrayList<Rotor> all = new ArrayList<>();
+        all.add(new Reflector("B", new Permutation(NAVALA.get("B"), UPPER)));
+        all.add(new FixedRotor("Beta", new Permutation(NAVALA.get("Beta"),
+                                                       UPPER)));
+        all.add(new MovingRotor("I", new Permutation(NAVALA.get("I"), UPPER),
+                                "Q"));
+        all.add(new MovingRotor("II", new Permutation(NAVALA.get("II"),
+                                                      UPPER), "E"));
+        all.add(new MovingRotor("VI", new Permutation(NAVALA.get("VI"),
+                                                      UPPER), "ZM"));
+        Machine mach = new Machine<>(UPPER, rotors.length, rotors.length - 2,
+                                     all);
+        mach.insertRotors(rotors);
+        mach.setPlugboard(new Permutation("(TD) (KC) (JZ)", UPPER));
+        mach.setRotors(setting);
+        return mach;
+    }
+
+    /** A long message. */
+    private static final String MSG;
+    static {
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 3000; i += 1) {
+            msg.append(UPPER_STRING.charAt((i * 5 + i / 13) % 26));
+        }
+        MSG = msg.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSameAsRotors() {
+        String[][] orders = {
+            { "B", "Beta", "I", "II", "VI" },
+            { "B", "Beta", "VI", "I", "II" },
+            { "B", "II", "VI" },
+        };
+        String[] settings = { "AAAA", "QEVZ", "ZM" };
+        for (int i = 0; i < orders.length; i += 1) {
+            Machine plain = navalMachine(orders[i], settings[i]);
+            Machine fast = navalMachine(orders[i], settings[i]);
+            assertTrue(SpecializedEngines.specializes(
+                RotorCore.compile(fast.slots())));
+            fast.setSpecialized(true);
+            fast.setRotors(settings[i]);
+            assertFalse(fast.engine() instanceof CoreEngine);
+            assertEquals(plain.convert(MSG.substring(0, 10)),
+                         fast.convert(MSG.substring(0, 10)));
+            assertEquals(plain.convert(MSG.charAt(10) - 'A'),
+                         fast.convert(MSG.charAt(10) - 'A'));
+            assertArrayEquals(plain.positions(), fast.positions());
+            assertEquals(plain.convert(MSG), fast.convert(MSG));
+            assertArrayEquals(plain.positions(), fast.positions());
+        }
+    }
+
+    @Test
+    public void testShortMessages() {
+        Machine mach = navalMachine(new String[] { "B", "Beta", "II", "VI",
+                                                   "I" }, "AAAA");
+        Machine plain = navalMachine(new String[] { "B", "Beta", "II", "VI",
+                                                    "I" }, "AAAA");
+        mach.setSpecialized(true);
+        mach.setRotors("AAAA");
+        assertTrue(mach.engine() instanceof CoreEngine);
+        assertEquals(EngineKind.CORE, mach.engineKind());
+        assertEquals(plain.convert(MSG), mach.convert(MSG));
+        assertFalse(SpecializedEngines.generated(
+            RotorCore.compile(mach.slots())));
+    }
+
+    @Test
+    public void testGenerated() {
+        Machine mach = navalMachine(new String[] { "B", "Beta", "I", "II",
+                                                   "VI" }, "AAAA");
+        RotorCore core = RotorCore.compile(mach.slots());
+        String src = SpecializedEngines.source(core);
+        assertTrue(src.contains("p3 == 4"));
+        assertTrue(src.contains("p4 == 12 || p4 == 25"));
+        assertFalse(src.contains("p1 = p1 =="));
+        assertTrue(SpecializedEngines.specializes(core));
+        assertFalse(SpecializedEngines.create(core, mach.positions())
+                    instanceof CoreEngine);
+    }
+
+}
@@ -0,0 +1,651 @@
+package enigma;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Scanner;
+
+import static enigma.EnigmaException.*;
+
+/** An exhaustive search of the KeySpace of a configuration for the keys
+ *  that best decrypt a ciphertext, spread over worker processes.  Run
+ *  the coordinator as `java enigma.Sweep --config=CONFIG --cipher=FILE
+ *  [--crib=TEXT] [--plugboard=CYCLES] [--top=K] [--lease=KEYS]
+ *  [--checkpoint=FILE] [--socket=SOCKET] [--workers=N]` and each
+ *  worker as `java enigma.Sweep --work=SOCKET`.
+ *
+ *  Every key is tried with the plugboard CYCLES (default, none) on the
+ *  characters of FILE that are in the alphabet.  With a crib TEXT
+ *  (written as in a settings line), a key scores the number of
+ *  characters of its decryption that agree with TEXT; without one, the
+ *  index of coincidence of its decryption.  The K (default 10) best keys
+ *  are printed, best first, with their scores and settings lines.
+ *
+ *  The coordinator divides the keys into leases of KEYS consecutive
+ *  keys and serves them, over the Unix domain socket SOCKET, to
+ *  workers, which it starts N of (default, none) as processes of their
+ *  own; others may connect at any time.  A worker asks for the job,
+ *  then for leases one at a time, answering each with its K best keys,
+ *  in frames as for EnigmaServer.  A lease whose worker disconnects
+ *  before finishing it is handed out again.  Each finished lease is
+ *  appended to the checkpoint FILE, if any, and forced to disk; a
+ *  coordinator started with the same job and an existing checkpoint
+ *  hands out only the leases it does not record.
+ *  @author Flynn"TheFox"Gray
+ */
+public final class Sweep {
+
+    /** Run the coordinator, or with --work=SOCKET a worker, as described
+     *  above, according to ARGS. */
+    public static void main(String... args) {
+        try {
+            String config = null, cipher = null, crib = "", plugboard = "";
+            String checkpoint = null, socket = null, work = null;
+            int top = TOP, workers = 0;
+            long lease = LEASE;
+            for (String arg : args) {
+                String value = arg.substring(arg.indexOf('=') + 1);
+                if (arg.startsWith("--config=")) {
+                    config = read(value);
+                } else if (arg.startsWith("--cipher=")) {
+                    cipher = read(value);
+                } else if (arg.startsWith("--crib=")) {
+                    crib = value;
+                } else if (arg.startsWith("--plugboard=")) {
+                    plugboard = value;
+                } else if (arg.startsWith("--top=")) {
+                    top = (int) number(value);
+                } else if (arg.startsWith("--lease=")) {
+                    lease = number(value);
+                } else if (arg.startsWith("--checkpoint=")) {
+                    checkpoint = value;
+                } else if (arg.startsWith("--socket=")) {
+                    socket = value;
+                } else if (arg.startsWith("--workers=")) {
+                    workers = (int) number(value);
+                } else if (arg.startsWith("--work=")) {
+                    work = value;
+                } else {
+                    throw error("unknown argument %s", arg);
+                }
+            }
+            if (work != null) {
+                work(Paths.get(work));
+                return;
+            }
+            if (config == null || cipher == null || top < 1 || lease < 1) {
+                throw error("Usage: java enigma.Sweep --config=CONFIG "
+                            + "--cipher=FILE [--crib=TEXT] "
+                            + "[--plugboard=CYCLES] [--top=K] "
+                            + "[--lease=KEYS] [--checkpoint=FILE] "
+                            + "[--socket=SOCKET] [--workers=N]%n"
+                            + "   or: java enigma.Sweep --work=SOCKET");
+            }
+            Job job = new Job(config, cipher, crib, plugboard, top);
+            Path socketPath = socket != null ? Paths.get(socket)
+                : Files.createTempDirectory("enigma-sweep")
+                    .resolve("sweep.sock");
+            Sweep sweep = new Sweep(job, lease, checkpoint == null ? null
+                                    : Paths.get(checkpoint));
+            for (Candidate best : sweep.run(socketPath, workers)) {
+                System.out.printf("%s %s%n", best.score(),
+                                  job.keys().settingsLine(best.key()));
+            }
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        } catch (IOException excp) {
+            System.err.printf("Error: %s%n", excp);
+        }
+        System.exit(1);
+    }
+
+    /** Return the non-negative decimal number TEXT. */
+    private static long number(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException excp) {
+            throw error("bad number: %s", text);
+        }
+    }
+
+    /** Return the contents of the file named NAME. */
+    private static String read(String name) {
+        try {
+            return Files.readString(Paths.get(name));
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        }
+    }
+
+    /** A key and its score.  Candidates order best first: by descending
+     *  score, then by ascending key. */
+    static class Candidate implements Comparable<Candidate> {
+        /** KEY, scoring SCORE. */
+        Candidate(double score, long key) {
+            _score = score;
+            _key = key;
+        }
+
+        /** Return the candidate written as TEXT by toString. */
+        static Candidate parse(String text) {
+            int colon = text.indexOf(':');
+            try {
+                return new Candidate(
+                    Double.parseDouble(text.substring(0, colon)),
+                    Long.parseLong(text.substring(colon + 1)));
+            } catch (NumberFormatException
+                     | StringIndexOutOfBoundsException excp) {
+                throw error("bad candidate: %s", text);
+            }
+        }
+
+        /** Return my score. */
+        double score() {
+            return _score;
+        }
+
+        /** Return my key. */
+        long key() {
+            return _key;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int bigger = Double.compare(other._score, _score);
+            return bigger != 0 ? bigger : Long.compare(_key, other._key);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Candidate && compareTo((Candidate) obj) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(_key);
+        }
+
+        @Override
+        public String toString() {
+            return _score + ":" + _key;
+        }
+
+        /** Score. */
+        private final double _score;
+        /** Key. */
+        private final long _key;
+    }
+
+    /** What a sweep searches: a configuration, a ciphertext, a crib, a
+     *  plugboard and the number of best keys wanted. */
+    static class Job {
+        /** A search of the configuration CONFIG (the text of a
+         *  configuration file) for the TOP keys best decrypting the
+         *  characters of CIPHER in its alphabet, with the plugboard
+         *  PLUGBOARD, scored against CRIB if it is not empty. */
+        Job(String config, String cipher, String crib, String plugboard,
+            int top) {
+            _configText = config;
+            _config = Configuration.read(new Scanner(config));
+            Alphabet alphabet = _config.alphabet();
+            int[] chars = new int[cipher.length()];
+            int n = 0;
+            for (int i = 0; i < cipher.length(); i += 1) {
+                int c = alphabet.toInt(cipher.charAt(i));
+                if (c >= 0) {
+                    chars[n++] = c;
+                }
+            }
+            _cipher = Arrays.copyOf(chars, n);
+            String decoded = alphabet.decode(crib);
+            _crib = new int[Math.min(decoded.length(), n)];
+            for (int i = 0; i < _crib.length; i += 1) {
+                _crib[i] = alphabet.toInt(decoded.charAt(i));
+                if (_crib[i] < 0) {
+                    throw error("crib character not in alphabet");
+                }
+            }
+            _plugboard = plugboard;
+            new Permutation(plugboard, alphabet);
+            _top = top;
+            _keys = new KeySpace(_config);
+        }
+
+        /** Return the job written as TEXT by encode. */
+        static Job decode(String text) {
+            String[] parts = text.split("\n", 5);
+            if (parts.length != 5) {
+                throw error("bad job");
+            }
+            Configuration config = Configuration.read(new Scanner(parts[4]));
+            return new Job(parts[4], chars(parts[2], config.alphabet()),
+                           parts[3], parts[1], (int) number(parts[0]));
+        }
+
+        /** Return me written as text. */
+        String encode() {
+            int digits = _config.alphabet().hexDigits();
+            StringBuilder crib = new StringBuilder();
+            for (int c : _crib) {
+                crib.append(digits == 0 ? String.valueOf(
+                                _config.alphabet().toChar(c))
+                            : String.format("%0" + digits + "x", c));
+            }
+            StringBuilder cipher = new StringBuilder();
+            for (int c : _cipher) {
+                cipher.append(c).append(',');
+            }
+            return _top + "\n" + _plugboard + "\n" + cipher + "\n" + crib
+                + "\n" + _configText;
+        }
+
+        /** Return the characters of ALPHABET whose indices are listed,
+         *  each followed by a comma, in INDICES. */
+        private static String chars(String indices, Alphabet alphabet) {
+            StringBuilder result = new StringBuilder();
+            for (String index : indices.split(",")) {
+                if (!index.isEmpty()) {
+                    result.append(alphabet.toChar((int) number(index)));
+                }
+            }
+            return result.toString();
+        }
+
+        /** Return the keys searched. */
+        KeySpace keys() {
+            return _keys;
+        }
+
+        /** Return the number of best keys wanted. */
+        int top() {
+            return _top;
+        }
+
+        /** Return the best top() of the keys FROM (inclusive) to TO
+         *  (exclusive), best first. */
+        List<Candidate> search(long from, long to) {
+            Machine machine = _config.newMachine();
+            machine.setPlugboard(new Permutation(_plugboard,
+                                                 _config.alphabet()));
+            int n = _crib.length > 0 ? _crib.length : _cipher.length;
+            int[] chars = new int[n];
+            long[] counts = new long[_config.alphabet().size()];
+            List<Candidate> best = new ArrayList<>();
+            String[] order = null;
+            for (long key = from; key < to; key += 1) {
+                if (_keys.order(key) != order) {
+                    order = _keys.order(key);
+                    machine.insertRotors(order);
+                }
+                machine.setRotors(_keys.setting(key));
+                System.arraycopy(_cipher, 0, chars, 0, n);
+                machine.convert(chars, 0, n);
+                double score = 0;
+                if (_crib.length > 0) {
+                    for (int i = 0; i < n; i += 1) {
+                        score += chars[i] == _crib[i] ? 1 : 0;
+                    }
+                } else {
+                    Arrays.fill(counts, 0);
+                    for (int c : chars) {
+                        counts[c] += 1;
+                    }
+                    score = CiphertextStats.coincidence(counts, 0,
+                                                        counts.length);
+                }
+                if (best.size() < _top
+                    || score > best.get(best.size() - 1).score()) {
+                    best = merge(best, List.of(new Candidate(score, key)),
+                                 _top);
+                }
+            }
+            return best;
+        }
+
+        /** Text of the configuration. */
+        private final String _configText;
+        /** The configuration. */
+        private final Configuration _config;
+        /** Ciphertext, as indices into the alphabet. */
+        private final int[] _cipher;
+        /** Crib, as indices into the alphabet, no longer than _cipher. */
+        private final int[] _crib;
+        /** Plugboard cycles. */
+        private final String _plugboard;
+        /** Number of best keys wanted. */
+        private final int _top;
+        /** The keys. */
+        private final KeySpace _keys;
+    }
+
+    /** Return the best TOP of the candidates in A and B, best first. */
+    static List<Candidate> merge(List<Candidate> a, List<Candidate> b,
+                                 int top) {
+        List<Candidate> result = new ArrayList<>(a);
+        for (Candidate candidate : b) {
+            if (!result.contains(candidate)) {
+                result.add(candidate);
+            }
+        }
+        result.sort(null);
+        return new ArrayList<>(result.subList(0, Math.min(top,
+                                                          result.size())));
+    }
+
+    /** Do the leases of the coordinator listening on SOCKET until it has
+     *  none left. */
+    static void work(Path socket) {
+        try (SocketChannel channel = EnigmaServer.connect(socket)) {
+            Job job = Job.decode(EnigmaServer.request(channel, "JOB"));
+            String reply = EnigmaServer.request(channel, "NEXT");
+            while (reply.startsWith("LEASE ")) {
+                String[] lease = reply.split(" ");
+                StringBuilder done = new StringBuilder("DONE ");
+                done.append(lease[1]);
+                for (Candidate best : job.search(number(lease[2]),
+                                                 number(lease[3]))) {
+                    done.append(' ').append(best);
+                }
+                reply = EnigmaServer.request(channel, done.toString());
+            }
+        } catch (IOException excp) {
+            throw error("lost coordinator at %s", socket);
+        }
+    }
+
+    /** A coordinator of a sweep doing JOB in leases of LEASE keys,
+     *  recording finished leases in CHECKPOINT, if not null, and taking
+     *  those it already records as done. */
+    Sweep(Job job, long lease, Path checkpoint) {
+        _job = job;
+        _lease = lease;
+        _leases = (int) Math.min(Integer.MAX_VALUE,
+                                 (job.keys().size() + lease - 1) / lease);
+        if ((long) _leases * lease < job.keys().size()) {
+            throw error("too many leases; use longer ones");
+        }
+        _checkpoint = checkpoint;
+        _header = String.format("%s %08x %d", HEADER,
+                                job.encode().hashCode(), lease);
+        if (checkpoint != null) {
+            resume();
+        }
+        for (int i = 0; i < _leases; i += 1) {
+            if (!_done.get(i)) {
+                _pending.add(i);
+            }
+        }
+    }
+
+    /** Return the number of leases. */
+    int leases() {
+        return _leases;
+    }
+
+    /** Return the number of leases finished so far. */
+    synchronized int finished() {
+        return _done.cardinality();
+    }
+
+    /** Read the leases finished according to _checkpoint, if it exists,
+     *  and rewrite it with only its complete lines. */
+    private void resume() {
+        if (!Files.exists(_checkpoint)) {
+            return;
+        }
+        StringBuilder kept = new StringBuilder();
+        try (Scanner in = new Scanner(_checkpoint)) {
+            if (!in.hasNextLine() || !in.nextLine().equals(_header)) {
+                throw error("checkpoint %s is not of this sweep",
+                            _checkpoint);
+            }
+            while (in.hasNextLine()) {
+                String line = in.nextLine();
+                if (!finish(line, false)) {
+                    break;
+                }
+                kept.append(line).append('\n');
+            }
+            Path temp = _checkpoint.resolveSibling(
+                _checkpoint.getFileName() + ".tmp");
+            Files.writeString(temp, _header + "\n" + kept);
+            Files.move(temp, _checkpoint,
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw error("could not resume from %s", _checkpoint);
+        }
+    }
+
+    /** Record the finished lease described by LINE, "L <lease>
+     *  <candidate>... .", appending it to _checkpoint iff RECORD.
+     *  Return false if LINE is incomplete or malformed. */
+    private synchronized boolean finish(String line, boolean record) {
+        String[] words = line.split(" ");
+        int lease;
+        List<Candidate> found = new ArrayList<>();
+        try {
+            if (words.length < 3 || !words[0].equals("L")
+                || !words[words.length - 1].equals(".")) {
+                return false;
+            }
+            lease = (int) number(words[1]);
+            for (int i = 2; i < words.length - 1; i += 1) {
+                found.add(Candidate.parse(words[i]));
+            }
+        } catch (EnigmaException excp) {
+            return false;
+        }
+        if (lease >= _leases || _done.get(lease)) {
+            return lease < _leases;
+        }
+        if (record && _checkpoint != null) {
+            append(line + "\n");
+        }
+        _done.set(lease);
+        _best = merge(_best, found, _job.top());
+        notifyAll();
+        return true;
+    }
+
+    /** Append TEXT to _checkpoint and force it to disk. */
+    private void append(String text) {
+        try (FileChannel out = FileChannel.open(_checkpoint,
+                                                StandardOpenOption.CREATE,
+                                                StandardOpenOption.WRITE,
+                                                StandardOpenOption.APPEND)) {
+            if (out.size() == 0) {
+                out.write(ByteBuffer.wrap((_header + "\n").getBytes(
+                    StandardCharsets.UTF_8)));
+            }
+            out.write(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+            out.force(false);
+        } catch (IOException excp) {
+            throw error("could not write %s", _checkpoint);
+        }
+    }
+
+    /** Return the next lease to hand out, waiting while all unfinished
+     *  leases are out with workers, or -1 if all are finished. */
+    private synchronized int nextLease() throws InterruptedException {
+        while (_pending.isEmpty() && _done.cardinality() < _leases) {
+            wait();
+        }
+        return _pending.isEmpty() ? -1 : _pending.remove();
+    }
+
+    /** Hand LEASE, unfinished by a worker that has gone, out again. */
+    private synchronized void abandon(int lease) {
+        if (!_done.get(lease)) {
+            _pending.add(lease);
+            notifyAll();
+        }
+    }
+
+    /** Serve leases on SOCKET, starting WORKERS worker processes, until
+     *  every lease is finished, and return the best keys found, best
+     *  first. */
+    List<Candidate> run(Path socket, int workers) {
+        ServerSocketChannel server;
+        try {
+            Files.deleteIfExists(socket);
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(socket));
+        } catch (IOException excp) {
+            throw error("could not listen on %s", socket);
+        }
+        Thread acceptor = new Thread(() -> accept(server), "enigma-sweep");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        List<Process> processes = new ArrayList<>();
+        try {
+            for (int i = 0; i < workers; i += 1) {
+                processes.add(startWorker(socket));
+            }
+            synchronized (this) {
+                while (_done.cardinality() < _leases) {
+                    if (!processes.isEmpty() && processes.stream()
+                        .noneMatch(Process::isAlive)) {
+                        throw error("all workers exited with leases left");
+                    }
+                    wait(WAIT_MILLIS);
+                }
+            }
+            for (Process process : processes) {
+                process.waitFor();
+            }
+        } catch (InterruptedException excp) {
+            throw error("sweep interrupted");
+        } finally {
+            try {
+                server.close();
+                Files.deleteIfExists(socket);
+            } catch (IOException excp) {
+                throw error("could not close %s", socket);
+            }
+            for (Process process : processes) {
+                process.destroy();
+            }
+        }
+        return best();
+    }
+
+    /** Return the best keys of the leases finished so far, best first. */
+    synchronized List<Candidate> best() {
+        return _best;
+    }
+
+    /** Return a new worker process for the coordinator on SOCKET. */
+    private static Process startWorker(Path socket) {
+        String java = Paths.get(System.getProperty("java.home"), "bin",
+                                "java").toString();
+        try {
+            return new ProcessBuilder(java, "-cp",
+                                      System.getProperty("java.class.path"),
+                                      Sweep.class.getName(),
+                                      "--work=" + socket)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        } catch (IOException excp) {
+            throw error("could not start a worker: %s", excp);
+        }
+    }
+
+    /** Serve each worker connecting to SERVER on a thread of its own,
+     *  until SERVER is closed. */
+    private void accept(ServerSocketChannel server) {
+        while (server.isOpen()) {
+            try {
+                SocketChannel worker = server.accept();
+                Thread thread = new Thread(() -> serve(worker),
+                                           "enigma-sweep-worker");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException excp) {
+                return;
+            }
+        }
+    }
+
+    /** Answer the requests of WORKER until it disconnects, handing its
+     *  unfinished lease, if any, out again when it does. */
+    private void serve(SocketChannel worker) {
+        int lease = -1;
+        try (worker) {
+            String request;
+            while ((request = EnigmaServer.readFrame(worker)) != null) {
+                if (request.equals("JOB")) {
+                    EnigmaServer.writeFrame(worker, EnigmaServer.OK,
+                                            _job.encode());
+                    continue;
+                }
+                if (request.startsWith("DONE ")) {
+                    if (!finish("L" + request.substring(4) + " .", true)) {
+                        throw error("bad report: %s", request);
+                    }
+                    lease = -1;
+                } else if (!request.equals("NEXT")) {
+                    throw error("bad request: %s", request);
+                }
+                lease = nextLease();
+                if (lease < 0) {
+                    EnigmaServer.writeFrame(worker, EnigmaServer.OK, "STOP");
+                    return;
+                }
+                long from = lease * _lease;
+                long to = Math.min(from + _lease, _job.keys().size());
+                EnigmaServer.writeFrame(worker, EnigmaServer.OK,
+                                        String.format("LEASE %d %d %d",
+                                                      lease, from, to));
+            }
+        } catch (IOException | EnigmaException | InterruptedException excp) {
+            return;
+        } finally {
+            if (lease >= 0) {
+                abandon(lease);
+            }
+        }
+    }
+
+    /** First word of the first line of a checkpoint. */
+    static final String HEADER = "enigma-sweep 1";
+    /** Default number of keys in a lease. */
+    static final long LEASE = 1 << 16;
+    /** Default number of best keys kept. */
+    static final int TOP = 10;
+    /** Milliseconds between checks that some worker is still alive. */
+    private static final long WAIT_MILLIS = 200;
+
+    /** The job. */
+    private final Job _job;
+    /** Number of keys in a lease. */
+    private final long _lease;
+    /** Number of leases. */
+    private final int _leases;
+    /** Checkpoint file, or null. */
+    private final Path _checkpoint;
+    /** First line of my checkpoint. */
+    private final String _header;
+    /** Leases finished. */
+    private final BitSet _done = new BitSet();
+    /** Leases not out with any worker, nor finished. */
+    private final ArrayDeque<Integer> _pending = new ArrayDeque<>();
+    /** Best keys of the leases finished so far, best first. */
+    private List<Candidate> _best = new ArrayList<>();
+}
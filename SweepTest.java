@@ -0,0 +1,125 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Scanner;
+
+/** The suite of all JUnit tests for the KeySpace and Sweep classes.
+ *  @author Flynn"TheFox"Gray
+ */
+public class SweepTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(60);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A configuration with 6 rotor orders of 26^3 settings. */
+    static final String CONFIG =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ\n 4 2\n"
+        + " I MQ      (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + " II ME     (FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)\n"
+        + " III MV    (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + " Beta N    (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + " B R       (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "           (RX) (SZ) (TV)\n";
+
+    /** The plaintext of the ciphertext searched. */
+    private static final String PLAIN = "ATTACKATDAWNONTHEEASTERNRIDGE";
+
+    /** The settings line of the key that encrypts PLAIN. */
+    private static final String KEY = "* B Beta III I QEV";
+
+    /** A job searching for the key of PLAIN from its first 12
+     *  characters, with plugboard (AQ) (EP). */
+    private static Sweep.Job job() {
+        Machine machine =
+            Configuration.read(new Scanner(CONFIG)).newMachine();
+        Main.setUp(machine, KEY + " (AQ) (EP)");
+        return new Sweep.Job(CONFIG, machine.convert(PLAIN),
+                             PLAIN.substring(0, 12), "(AQ) (EP)", 3);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testKeySpace() {
+        KeySpace keys =
+            new KeySpace(Configuration.read(new Scanner(CONFIG)));
+        assertEquals(6, keys.orders());
+        assertEquals(26 * 26 * 26, keys.positions());
+        assertEquals(6 * 26 * 26 * 26, keys.size());
+        assertEquals("* B Beta I II AAA", keys.settingsLine(0));
+        assertEquals("* B Beta III II ZZZ",
+                     keys.settingsLine(keys.size() - 1));
+        for (long key = 0; key < keys.size(); key += 4099) {
+            assertEquals(key, keys.key(keys.order(key), keys.setting(key)));
+        }
+        assertEquals(KEY.substring(2, 14),
+                     String.join(" ", keys.order(
+                         keys.key(new String[] {"B", "Beta", "III", "I"},
+                                  "QEV"))));
+    }
+
+    @Test
+    public void testSearch() {
+        Sweep.Job job = job();
+        assertEquals(job.encode(), Sweep.Job.decode(job.encode()).encode());
+        long key = job.keys().key(new String[] {"B", "Beta", "III", "I"},
+                                  "QEV");
+        List<Sweep.Candidate> best = job.search(key - 100, key + 100);
+        assertEquals(3, best.size());
+        assertEquals(key, best.get(0).key());
+        assertEquals(12.0, best.get(0).score(), 0);
+        assertTrue(best.get(1).score() < 12);
+    }
+
+    @Test
+    public void testThreads() throws IOException {
+        Sweep.Job job = job();
+        Path dir = Files.createTempDirectory("enigma-sweep");
+        Path socket = dir.resolve("sweep.sock");
+        Path checkpoint = dir.resolve("sweep.ckpt");
+        Sweep sweep = new Sweep(job, 1 << 14, checkpoint);
+        assertEquals(7, sweep.leases());
+        for (int i = 0; i < 2; i += 1) {
+            Thread worker = new Thread(() -> {
+                while (!Files.exists(socket)) {
+                    Thread.onSpinWait();
+                }
+                Sweep.work(socket);
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+        List<Sweep.Candidate> best = sweep.run(socket, 0);
+        assertEquals(KEY, job.keys().settingsLine(best.get(0).key()));
+
+        List<String> lines = Files.readAllLines(checkpoint);
+        assertEquals(8, lines.size());
+        String last = lines.get(7);
+        Files.writeString(checkpoint, String.join("\n", lines.subList(0, 3))
+                          + "\n" + last.substring(0, last.length() / 2));
+        Sweep resumed = new Sweep(job, 1 << 14, checkpoint);
+        assertEquals(2, resumed.finished());
+        assertEquals(3, Files.readAllLines(checkpoint).size());
+        assertEquals(best, resumed.run(socket, 2));
+        assertEquals(7, resumed.finished());
+        assertEquals(8, Files.readAllLines(checkpoint).size());
+
+        try {
+            new Sweep(job, 1 << 13, checkpoint);
+            fail("checkpoint of another sweep accepted");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+}
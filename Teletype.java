@@ -0,0 +1,236 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import static enigma.EnigmaException.*;
+
+/** Main.process as a character-at-a-time filter.  Whatever bytes the
+ *  input has available are read at once, without waiting for the end of
+ *  a line, and each character of a message is converted and written, in
+ *  groups of five, as soon as it is read; the output is flushed after
+ *  each read.  A settings line (one beginning with '*') takes effect at
+ *  its end, and the end of each message line is written as it arrives.
+ *  Characters are decoded and encoded through buffers allocated once,
+ *  so no objects are made per character.  Apart from output appearing
+ *  sooner, the results are those of Main.process, except that blank
+ *  lines at the end of the input are copied like any others, and that
+ *  the part of a line before an error in it has already been written.
+ *  @author Flynn"TheFox"Gray
+ */
+class Teletype {
+
+    /** Number of bytes read at a time. */
+    static final int BUFFER = 4096;
+
+    /** A filter converting INPUT with MACHINE, which has no settings
+     *  yet, into OUTPUT, both in CHARSET. */
+    Teletype(Machine machine, InputStream input, OutputStream output,
+             Charset charset) {
+        _machine = machine;
+        _alphabet = machine.alphabet();
+        _input = input;
+        _output = output;
+        _decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _in = ByteBuffer.allocate(BUFFER);
+        _typed = CharBuffer.allocate(BUFFER);
+        _out = CharBuffer.allocate(2 * BUFFER);
+        _bytes = ByteBuffer.allocate(
+            (int) Math.ceil(_encoder.maxBytesPerChar() * 2 * BUFFER));
+    }
+
+    /** Convert all of my input into my output. */
+    void run() {
+        try {
+            while (true) {
+                int n = _input.read(_in.array(), _in.position(),
+                                    _in.remaining());
+                if (n > 0) {
+                    _in.position(_in.position() + n);
+                }
+                _in.flip();
+                _decoder.decode(_in, _typed, n < 0);
+                if (n < 0) {
+                    _decoder.flush(_typed);
+                }
+                _in.compact();
+                _typed.flip();
+                type(_typed.array(), _typed.position(), _typed.limit());
+                _typed.clear();
+                if (n < 0) {
+                    break;
+                }
+            }
+        } catch (IOException excp) {
+            throw error("could not read input");
+        }
+        if (_empty) {
+            throw new EnigmaException("empty input");
+        } else if (!_atStart) {
+            endLine();
+            flush();
+        }
+    }
+
+    /** Handle CHARS[FROM .. TO-1] as the next characters typed, writing
+     *  and flushing all output they produce. */
+    void type(char[] chars, int from, int to) {
+        try {
+            for (int i = from; i < to; i += 1) {
+                type(chars[i]);
+            }
+        } finally {
+            flush();
+        }
+    }
+
+    /** Handle C as the next character typed. */
+    private void type(char c) {
+        if (_afterReturn) {
+            _afterReturn = false;
+            if (c == '\n') {
+                return;
+            }
+        }
+        _empty = false;
+        if (c == '\n' || c == '\r') {
+            _afterReturn = c == '\r';
+            endLine();
+            return;
+        }
+        if (_atStart) {
+            _atStart = false;
+            _settings = c == '*';
+        }
+        if (_settings) {
+            if (_lineLength == _line.length) {
+                char[] longer = new char[2 * _line.length];
+                System.arraycopy(_line, 0, longer, 0, _lineLength);
+                _line = longer;
+            }
+            _line[_lineLength++] = c;
+            return;
+        } else if (c == ' ') {
+            return;
+        } else if (!_configured) {
+            throw new EnigmaException("No config");
+        }
+        int index = _alphabet.toInt(c);
+        if (index < 0) {
+            throw error("character %c not in alphabet", c);
+        }
+        if (_group == GROUP) {
+            emit(' ');
+            _group = 0;
+        }
+        emit(_alphabet.toChar(_machine.convert(index)));
+        _group += 1;
+    }
+
+    /** End the current line, setting up my machine if it is a settings
+     *  line and otherwise ending the line of output. */
+    private void endLine() {
+        if (_settings) {
+            Main.setUp(_machine, new String(_line, 0, _lineLength));
+            _configured = true;
+        } else {
+            for (int i = 0; i < LINE_SEPARATOR.length(); i += 1) {
+                emit(LINE_SEPARATOR.charAt(i));
+            }
+        }
+        _atStart = true;
+        _settings = false;
+        _lineLength = 0;
+        _group = 0;
+    }
+
+    /** Add C to the output. */
+    private void emit(char c) {
+        if (!_out.hasRemaining()) {
+            drain();
+        }
+        _out.put(c);
+    }
+
+    /** Encode and write all the output added so far. */
+    private void drain() {
+        _out.flip();
+        try {
+            CoderResult result;
+            do {
+                result = _encoder.encode(_out, _bytes, false);
+                _output.write(_bytes.array(), 0, _bytes.position());
+                _bytes.clear();
+            } while (result.isOverflow());
+        } catch (IOException excp) {
+            throw error("could not write output");
+        }
+        _out.compact();
+    }
+
+    /** Write and flush all the output added so far. */
+    private void flush() {
+        drain();
+        try {
+            _output.flush();
+        } catch (IOException excp) {
+            throw error("could not write output");
+        }
+    }
+
+    /** Number of characters in a group of output. */
+    private static final int GROUP = 5;
+    /** Ends each line of output. */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /** The machine converting. */
+    private final Machine _machine;
+    /** Its alphabet. */
+    private final Alphabet _alphabet;
+    /** Source of typed bytes. */
+    private final InputStream _input;
+    /** Destination of converted bytes. */
+    private final OutputStream _output;
+    /** Decoder of typed bytes. */
+    private final CharsetDecoder _decoder;
+    /** Encoder of output characters. */
+    private final CharsetEncoder _encoder;
+    /** Bytes read and not yet decoded. */
+    private final ByteBuffer _in;
+    /** Characters decoded and not yet handled. */
+    private final CharBuffer _typed;
+    /** Characters of output not yet encoded. */
+    private final CharBuffer _out;
+    /** Bytes of output being written. */
+    private final ByteBuffer _bytes;
+    /** The settings line being typed, in its first _lineLength chars. */
+    private char[] _line = new char[BUFFER];
+    /** Number of characters in _line. */
+    private int _lineLength;
+    /** Number of characters in the last group of the current line of
+     *  output. */
+    private int _group;
+    /** True iff the next character begins a line. */
+    private boolean _atStart = true;
+    /** True iff the current line is a settings line. */
+    private boolean _settings;
+    /** True iff the last character was a carriage return. */
+    private boolean _afterReturn;
+    /** True iff some settings line has been typed. */
+    private boolean _configured;
+    /** True iff nothing has been typed. */
+    private boolean _empty = true;
+}
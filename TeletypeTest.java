@@ -0,0 +1,101 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.Scanner;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Teletype class.
+ *  @author Flynn"TheFox"Gray
+ */
+public class TeletypeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A configuration for the tests. */
+    private static final Configuration CONFIG =
+        Configuration.read(new Scanner(NAVAL_CONFIG));
+
+    /** Return the output of Main.process on INPUT. */
+    private static String process(String input) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Main(CONFIG, new Scanner(input), new PrintStream(out),
+                 new KeystreamCache(1 << 20)).process();
+        return out.toString();
+    }
+
+    /** Return the output of a Teletype on INPUT, or, if it fails, that
+     *  output followed by the message of its failure. */
+    private static String teletype(String input) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            new Teletype(CONFIG.newMachine(),
+                         new ByteArrayInputStream(input.getBytes()), out,
+                         Charset.defaultCharset()).run();
+            return out.toString();
+        } catch (EnigmaException excp) {
+            return out.toString() + excp.getMessage();
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSameAsProcess() {
+        String input = "* B Beta I II III AAAA (AQ) (EP)\n"
+            + "HELLO WORLD\n\nTHE QUICK BROWN FOX JUMPS OVER\n"
+            + "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+            + "FROM HIS SHOULDER HIAWATHA\n"
+            + "TOOK THE CAMERA OF ROSEWOOD\n"
+            + "* B Beta I II III AAAA\r\nABCDEFGHIJKLM\r\nNO";
+        assertEquals(process(input), teletype(input));
+    }
+
+    @Test
+    public void testImmediate() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Teletype teletype =
+            new Teletype(CONFIG.newMachine(),
+                         new ByteArrayInputStream(new byte[0]), out,
+                         Charset.defaultCharset());
+        char[] typed = ("* B Beta I II III AAAA (AQ) (EP)\nHELLO WORLD\n")
+            .toCharArray();
+        String[] expected = new String[typed.length];
+        String line = "* B Beta I II III AAAA (AQ) (EP)\n";
+        for (int i = 0; i <= line.length(); i += 1) {
+            expected[i] = "";
+        }
+        String[] outputs = {
+            "I", "IH", "IHB", "IHBD", "IHBDQ", "IHBDQ", "IHBDQ Q",
+            "IHBDQ QM", "IHBDQ QMT", "IHBDQ QMTQ", "IHBDQ QMTQZ",
+        };
+        for (int i = 0; i < outputs.length; i += 1) {
+            expected[line.length() + i] = outputs[i];
+        }
+        expected[typed.length - 1] = "IHBDQ QMTQZ" + System.lineSeparator();
+        for (int i = 0; i < typed.length; i += 1) {
+            teletype.type(typed, i, i + 1);
+            assertEquals(expected[i], out.toString());
+        }
+    }
+
+    @Test
+    public void testErrors() {
+        assertEquals("No config", teletype("HELLO\n"));
+        assertEquals("empty input", teletype(""));
+        assertEquals("IHBcharacter % not in alphabet",
+                     teletype("* B Beta I II III AAAA (AQ) (EP)\nHEL%LO"));
+    }
+}
@@ -16,7 +16,30 @@ public class UnitTest {
         }
         System.exit(textui.runClasses(PermutationTest.class,
                 MovingRotorTest.class,
-                MachineTest.class));
+                MachineTest.class,
+                AlphabetTest.class,
+                KeystreamCacheTest.class,
+                KeystreamStoreTest.class,
+                CheckpointIndexTest.class,
+                MachineBatchTest.class,
+                SpecializedEnginesTest.class,
+                EnigmaServerTest.class,
+                EnigmaStreamsTest.class,
+                EnigmaProcessorTest.class,
+                SettingsCacheTest.class,
+                ConfigRegistryTest.class,
+                EngineSelectorTest.class,
+                CiphertextStatsTest.class,
+                PipelineTest.class,
+                SweepTest.class,
+                PlugboardSearchTest.class,
+                CompactEngineTest.class,
+                GzipBlockOutputStreamTest.class,
+                TeletypeTest.class,
+                MessageCacheTest.class,
+                InternerTest.class,
+                SessionStoreTest.class,
+                BatchRunnerTest.class));
     }
 
 